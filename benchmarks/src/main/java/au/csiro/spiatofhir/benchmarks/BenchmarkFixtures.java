@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.benchmarks;
+
+import au.csiro.spiatofhir.WarmContexts;
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
+import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.utils.Verhoeff;
+import java.lang.reflect.Proxy;
+import org.fhir.ucum.UcumException;
+import org.fhir.ucum.UcumService;
+import org.hl7.fhir.dstu3.model.Parameters;
+
+/**
+ * Collaborators and codes shared by the benchmarks, so that they measure the code under test
+ * rather than network requests or logging.
+ *
+ * @author John Grimes
+ */
+public class BenchmarkFixtures {
+
+  /**
+   * Returns a terminology client which reports every code as active, without making any
+   * requests.
+   */
+  public static TerminologyClient stubTerminologyClient() {
+    return (TerminologyClient) Proxy.newProxyInstance(TerminologyClient.class.getClassLoader(),
+        new Class<?>[]{TerminologyClient.class}, (proxy, method, args) -> {
+          if (method.getName().equals("lookup")) {
+            return new Parameters();
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  public static UcumService ucumService() throws UcumException {
+    return WarmContexts.getUcumService();
+  }
+
+  /**
+   * Returns a sink which discards all diagnostics.
+   */
+  public static DiagnosticsSink discardDiagnostics() {
+    return (sheet, rowIndex, columnIndex, severity, type, value, detail) -> {
+    };
+  }
+
+  /**
+   * Returns a valid SNOMED CT concept identifier (short format, with a Verhoeff check digit) for
+   * the supplied item identifier.
+   */
+  public static String snomedCode(long itemId) {
+    String withoutCheckDigit = itemId + "00";
+    for (int checkDigit = 0; checkDigit < 10; checkDigit++) {
+      String candidate = withoutCheckDigit + checkDigit;
+      if (Verhoeff.validateVerhoeff(candidate)) {
+        return candidate;
+      }
+    }
+    throw new AssertionError("No Verhoeff check digit found for " + withoutCheckDigit);
+  }
+
+  /**
+   * Returns a valid LOINC code (with a mod 10 check digit) for the supplied numeric identifier.
+   */
+  public static String loincCode(int id) {
+    String idString = Integer.toString(id);
+    int sum = 0;
+    for (int i = 0; i < idString.length(); i++) {
+      int digit = idString.charAt(idString.length() - i - 1) - '0';
+      sum += i % 2 == 0 ? (2 * digit) - (digit / 5) * 9 : digit;
+    }
+    sum = Math.abs(sum) + 10;
+    return idString + "-" + (10 - (sum % 10)) % 10;
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.benchmarks;
+
+import au.csiro.spiatofhir.WarmContexts;
+import au.csiro.spiatofhir.binary.BinaryBundle;
+import au.csiro.spiatofhir.binary.BinaryBundleReader;
+import au.csiro.spiatofhir.binary.BinaryBundleWriter;
+import au.csiro.spiatofhir.loinc.Loinc;
+import au.csiro.spiatofhir.ucum.Ucum;
+import ca.uhn.fhir.context.FhirContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.ConceptMap;
+import org.hl7.fhir.dstu3.model.Enumerations.ConceptMapEquivalence;
+import org.hl7.fhir.dstu3.model.ValueSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the time taken to load a Bundle from the binary format against parsing the equivalent
+ * JSON using HAPI.
+ *
+ * @author John Grimes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BinaryBundleBenchmark {
+
+  private static final String[] UNITS = {"mmol/L", "g/L", "U/L", "%", "umol/L"};
+
+  @Param({"20000"})
+  public int concepts;
+
+  private FhirContext fhirContext;
+  private byte[] json;
+  private byte[] binary;
+
+  @Setup
+  public void setUp() throws Exception {
+    fhirContext = WarmContexts.getFhirContext();
+    Bundle bundle = buildBundle(concepts);
+    json = fhirContext.newJsonParser().encodeResourceToString(bundle)
+        .getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream binaryOutput = new ByteArrayOutputStream();
+    new BinaryBundleWriter().write(bundle, binaryOutput);
+    binary = binaryOutput.toByteArray();
+  }
+
+  @Benchmark
+  public Bundle parseJson() {
+    return fhirContext.newJsonParser().parseResource(Bundle.class, new ByteArrayInputStream(json));
+  }
+
+  @Benchmark
+  public BinaryBundle readBinary() throws IOException {
+    return new BinaryBundleReader().read(new ByteArrayInputStream(binary));
+  }
+
+  private static Bundle buildBundle(int concepts) {
+    ValueSet valueSet = new ValueSet();
+    valueSet.setId("benchmark-refset");
+    valueSet.setUrl("https://www.rcpa.edu.au/fhir/ValueSet/benchmark-refset");
+    ValueSet.ConceptSetComponent include = valueSet.getCompose().addInclude();
+    include.setSystem(Loinc.SYSTEM_URI);
+    ConceptMap conceptMap = new ConceptMap();
+    conceptMap.setId("benchmark-unit-map");
+    conceptMap.setUrl("https://www.rcpa.edu.au/fhir/ConceptMap/benchmark-unit-map");
+    ConceptMap.ConceptMapGroupComponent group = conceptMap.addGroup();
+    group.setSource(Loinc.SYSTEM_URI);
+    group.setTarget(Ucum.SYSTEM_URI);
+    for (int i = 0; i < concepts; i++) {
+      String code = BenchmarkFixtures.loincCode(i + 1000);
+      ValueSet.ConceptReferenceComponent concept = include.addConcept();
+      concept.setCode(code);
+      concept.setDisplay("Preferred term " + i);
+      if (i % 3 == 0) {
+        concept.addDesignation().setValue("Synonym " + i);
+      }
+      group.addElement().setCode(code).addTarget().setCode(UNITS[i % UNITS.length])
+          .setEquivalence(ConceptMapEquivalence.RELATEDTO);
+    }
+    Bundle bundle = new Bundle();
+    bundle.setType(Bundle.BundleType.COLLECTION);
+    bundle.addEntry().setResource(valueSet);
+    bundle.addEntry().setResource(conceptMap);
+    return bundle;
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.benchmarks;
+
+import au.csiro.spiatofhir.snomed.BulkSctidValidator;
+import au.csiro.spiatofhir.snomed.SnomedCodeValidator;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of validating the identifiers within a SNOMED CT extract, comparing the
+ * bulk validation of a long array with the validation of each identifier as a string.
+ *
+ * @author John Grimes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BulkSctidBenchmark {
+
+  private static final int IDENTIFIERS = 500000;
+  private final SnomedCodeValidator snomedCodeValidator = new SnomedCodeValidator();
+  private long[] sctids;
+  private String[] sctidStrings;
+
+  @Setup
+  public void setUp() {
+    // Mostly valid identifiers, with one in ten having an invalid check digit.
+    Random random = new Random(42);
+    sctids = new long[IDENTIFIERS];
+    sctidStrings = new String[IDENTIFIERS];
+    for (int i = 0; i < IDENTIFIERS; i++) {
+      long sctid = Long.parseLong(
+          BenchmarkFixtures.snomedCode(100000 + (random.nextLong() >>> 20) % 1000000000000L));
+      if (random.nextInt(10) == 0) {
+        sctid = sctid / 10 * 10 + (sctid + 1) % 10;
+      }
+      sctids[i] = sctid;
+      sctidStrings[i] = Long.toString(sctid);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IDENTIFIERS)
+  public BitSet bulk() {
+    return BulkSctidValidator.validate(sctids);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IDENTIFIERS)
+  public BitSet perLong() {
+    BitSet valid = new BitSet(IDENTIFIERS);
+    for (int i = 0; i < IDENTIFIERS; i++) {
+      if (BulkSctidValidator.isValid(sctids[i])) {
+        valid.set(i);
+      }
+    }
+    return valid;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IDENTIFIERS)
+  public BitSet perString() {
+    BitSet valid = new BitSet(IDENTIFIERS);
+    for (int i = 0; i < IDENTIFIERS; i++) {
+      if (snomedCodeValidator.validate(sctidStrings[i])) {
+        valid.set(i);
+      }
+    }
+    return valid;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IDENTIFIERS)
+  public BitSet perLongAsString() {
+    BitSet valid = new BitSet(IDENTIFIERS);
+    for (int i = 0; i < IDENTIFIERS; i++) {
+      if (snomedCodeValidator.validate(Long.toString(sctids[i]))) {
+        valid.set(i);
+      }
+    }
+    return valid;
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.benchmarks;
+
+import au.csiro.spiatofhir.WarmContexts;
+import au.csiro.spiatofhir.fhir.ContentHash;
+import au.csiro.spiatofhir.fhir.SpiaFhirBundle;
+import au.csiro.spiatofhir.spia.Refset;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import au.csiro.spiatofhir.spia.StringTable;
+import ca.uhn.fhir.context.FhirContext;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encoding of a complete Bundle to JSON, built from synthetic workbooks for every
+ * entry within the distribution.
+ *
+ * @author John Grimes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BundleEncodingBenchmark {
+
+  @Param({"1000"})
+  public int rows;
+
+  private FhirContext fhirContext;
+  private Bundle bundle;
+  private List<Resource> resources;
+
+  @Setup
+  public void setUp() throws Exception {
+    fhirContext = WarmContexts.getFhirContext();
+    resources = new ArrayList<>();
+    StringTable strings = new StringTable();
+    for (DistributionEntry entry : DistributionEntry.values()) {
+      Refset refset = entry.getParser()
+          .parse(SyntheticWorkbooks.create(entry, rows, 42),
+              BenchmarkFixtures.stubTerminologyClient(), BenchmarkFixtures.ucumService(),
+              BenchmarkFixtures.discardDiagnostics(), strings);
+      resources.addAll(SpiaFhirBundle.buildResources(entry, refset, new Date(0), false));
+    }
+    resources.addAll(SpiaFhirBundle.loadSupportingResources(fhirContext));
+    bundle = new Bundle();
+    bundle.setType(Bundle.BundleType.COLLECTION);
+    for (Resource resource : resources) {
+      ContentHash.apply(fhirContext, resource);
+      bundle.addEntry().setResource(resource);
+    }
+  }
+
+  /**
+   * Encodes the whole Bundle in one go, as the original single-threaded transform did.
+   */
+  @Benchmark
+  public String encodeBundle() {
+    return fhirContext.newJsonParser().encodeResourceToString(bundle);
+  }
+
+  /**
+   * Hashes and encodes each resource separately, as the encode stage of the pipeline does.
+   */
+  @Benchmark
+  public int hashAndEncodeResources() {
+    int length = 0;
+    for (Resource resource : resources) {
+      ContentHash.apply(fhirContext, resource);
+      length += fhirContext.newJsonParser().encodeResourceToString(resource).length();
+    }
+    return length;
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.benchmarks;
+
+import au.csiro.spiatofhir.loinc.LoincCodeValidator;
+import au.csiro.spiatofhir.snomed.SnomedCodeValidator;
+import au.csiro.spiatofhir.utils.Verhoeff;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the structural validation of SNOMED CT and LOINC codes, which is performed for every
+ * row of every reference set.
+ *
+ * @author John Grimes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodeValidatorBenchmark {
+
+  // A power of two, so that the next code can be selected using a mask.
+  private static final int CODES = 1024;
+  private final SnomedCodeValidator snomedCodeValidator = new SnomedCodeValidator();
+  private final LoincCodeValidator loincCodeValidator = new LoincCodeValidator();
+  private String[] snomedCodes;
+  private String[] loincCodes;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    snomedCodes = new String[CODES];
+    loincCodes = new String[CODES];
+    for (int i = 0; i < CODES; i++) {
+      snomedCodes[i] = BenchmarkFixtures.snomedCode(100000 + i * 7919L);
+      loincCodes[i] = BenchmarkFixtures.loincCode(1000 + i * 97);
+    }
+  }
+
+  @Benchmark
+  public boolean snomedValidate() {
+    return snomedCodeValidator.validate(snomedCodes[next++ & (CODES - 1)]);
+  }
+
+  @Benchmark
+  public boolean verhoeffValidate() {
+    return Verhoeff.validateVerhoeff(snomedCodes[next++ & (CODES - 1)]);
+  }
+
+  @Benchmark
+  public boolean loincValidate() {
+    return loincCodeValidator.validate(loincCodes[next++ & (CODES - 1)]);
+  }
+
+}
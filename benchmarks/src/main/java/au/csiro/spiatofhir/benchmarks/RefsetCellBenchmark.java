@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.benchmarks;
+
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
+import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.spia.Refset;
+import au.csiro.spiatofhir.spia.StringTable;
+import au.csiro.spiatofhir.spia.ValidationException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.fhir.ucum.UcumService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the extraction of multi-valued cells, which is performed for the synonyms and units of
+ * every row of the laboratory reference sets.
+ *
+ * @author John Grimes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefsetCellBenchmark {
+
+  @Benchmark
+  public Set<String> delimitedStrings(SynonymsCell cell) throws Exception {
+    return cell.cellReader.delimitedStrings(cell.row, 0);
+  }
+
+  @Benchmark
+  public Set<String> ucumCodes(UnitsCell cell) throws Exception {
+    return cell.cellReader.ucumCodes(cell.row, 0);
+  }
+
+  @State(Scope.Thread)
+  public static class SynonymsCell {
+
+    @Param({"Serum sodium", "Serum sodium; Sodium ;Na"})
+    public String value;
+
+    private CellReader cellReader;
+    private Row row;
+
+    @Setup
+    public void setUp() throws Exception {
+      cellReader = CellReader.create();
+      row = CellReader.createRow(value);
+    }
+
+  }
+
+  @State(Scope.Thread)
+  public static class UnitsCell {
+
+    @Param({"mmol/L", "mmol/L;mg/dL", "No unit"})
+    public String value;
+
+    private CellReader cellReader;
+    private Row row;
+
+    @Setup
+    public void setUp() throws Exception {
+      cellReader = CellReader.create();
+      row = CellReader.createRow(value);
+    }
+
+  }
+
+  /**
+   * Exposes the cell extraction methods of {@link Refset}, without parsing anything.
+   */
+  private static class CellReader extends Refset {
+
+    private CellReader(Workbook workbook, TerminologyClient terminologyClient,
+        UcumService ucumService, DiagnosticsSink diagnostics) throws ValidationException {
+      super(workbook, terminologyClient, ucumService, diagnostics, new StringTable());
+    }
+
+    private static CellReader create() throws Exception {
+      return new CellReader(new XSSFWorkbook(), BenchmarkFixtures.stubTerminologyClient(),
+          BenchmarkFixtures.ucumService(), BenchmarkFixtures.discardDiagnostics());
+    }
+
+    /**
+     * Returns a row with the supplied value in its first cell.
+     */
+    private static Row createRow(String value) {
+      Sheet sheet = new XSSFWorkbook().createSheet("Cells");
+      Row row = sheet.createRow(1);
+      row.createCell(0).setCellValue(value);
+      return row;
+    }
+
+    private Set<String> delimitedStrings(Row row, int cellNumber) throws ValidationException {
+      return getDelimitedStringsFromCell(row, cellNumber);
+    }
+
+    private Set<String> ucumCodes(Row row, int cellNumber) throws Exception {
+      return getUcumCodesFromCell(ucumService, row, cellNumber);
+    }
+
+  }
+
+}
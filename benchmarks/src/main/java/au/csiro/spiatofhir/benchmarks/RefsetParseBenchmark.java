@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.benchmarks;
+
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
+import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.spia.Refset;
+import au.csiro.spiatofhir.spia.RefsetParser;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import au.csiro.spiatofhir.spia.StringTable;
+import java.util.concurrent.TimeUnit;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.fhir.ucum.UcumService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the parsing of each of the reference sets from a synthetic workbook which has already
+ * been read into memory. Terminology lookups are answered by a stub, so only the decoding and
+ * validation of the rows is measured.
+ *
+ * @author John Grimes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RefsetParseBenchmark {
+
+  @Param({"REQUESTING", "CHEMICAL", "HAEMATOLOGY", "IMMUNOPATHOLOGY",
+      "MICROBIOLOGY_SEROLOGY_MOLECULAR", "MICROBIOLOGY_ORGANISMS", "PREFERRED_UNITS"})
+  public DistributionEntry entry;
+
+  @Param({"1000"})
+  public int rows;
+
+  private Workbook workbook;
+  private RefsetParser parser;
+  private TerminologyClient terminologyClient;
+  private UcumService ucumService;
+  private DiagnosticsSink diagnostics;
+
+  @Setup
+  public void setUp() throws Exception {
+    workbook = SyntheticWorkbooks.create(entry, rows, 42);
+    parser = entry.getParser();
+    terminologyClient = BenchmarkFixtures.stubTerminologyClient();
+    ucumService = BenchmarkFixtures.ucumService();
+    diagnostics = BenchmarkFixtures.discardDiagnostics();
+  }
+
+  @Benchmark
+  public Refset parse() throws Exception {
+    return parser.parse(workbook, terminologyClient, ucumService, diagnostics, new StringTable());
+  }
+
+}
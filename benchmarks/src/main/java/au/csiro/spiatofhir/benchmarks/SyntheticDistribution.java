@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.benchmarks;
+
+import au.csiro.spiatofhir.spia.SpiaDistribution;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * Writes a structurally valid SPIA distribution made up of synthetic workbooks, for measuring the
+ * throughput of parsing and transforming at a multiple of the size of the real distribution.
+ * <p>
+ * The distribution is written as a ZIP file if the output path ends with `.zip`, otherwise the
+ * spreadsheets are written into a directory.
+ *
+ * @author John Grimes
+ */
+public class SyntheticDistribution {
+
+  /**
+   * The approximate number of rows within each spreadsheet of the real distribution.
+   */
+  private static final Map<DistributionEntry, Integer> BASE_ROWS = new EnumMap<>(
+      DistributionEntry.class);
+
+  static {
+    BASE_ROWS.put(DistributionEntry.REQUESTING, 1200);
+    BASE_ROWS.put(DistributionEntry.CHEMICAL, 700);
+    BASE_ROWS.put(DistributionEntry.HAEMATOLOGY, 150);
+    BASE_ROWS.put(DistributionEntry.IMMUNOPATHOLOGY, 300);
+    BASE_ROWS.put(DistributionEntry.MICROBIOLOGY_SEROLOGY_MOLECULAR, 900);
+    BASE_ROWS.put(DistributionEntry.MICROBIOLOGY_ORGANISMS, 2000);
+    BASE_ROWS.put(DistributionEntry.PREFERRED_UNITS, 200);
+  }
+
+  /**
+   * Usage: `SyntheticDistribution [output path] [scale]`, where scale is a multiple of the number
+   * of rows within the real distribution (default 1).
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("Usage: SyntheticDistribution [output path] [scale]");
+      System.exit(1);
+    }
+    int scale = args.length == 2 ? Integer.parseInt(args[1]) : 1;
+    long start = System.nanoTime();
+    write(new File(args[0]), scale, 42);
+    System.out.println("Wrote " + getRows(scale) + " rows to " + args[0] + " in "
+        + (System.nanoTime() - start) / 1000000 + " ms");
+  }
+
+  /**
+   * Writes a distribution with the rows of each spreadsheet multiplied by `scale`. The same seed
+   * will always produce the same distribution.
+   */
+  public static void write(File output, int scale, long seed) throws IOException {
+    if (scale < 1) {
+      throw new IllegalArgumentException("Scale must be at least 1: " + scale);
+    }
+    if (output.getName().endsWith(".zip")) {
+      try (ZipOutputStream zipOutputStream = new ZipOutputStream(
+          new FileOutputStream(output))) {
+        for (DistributionEntry entry : DistributionEntry.values()) {
+          zipOutputStream.putNextEntry(new ZipEntry(SpiaDistribution.getFileName(entry)));
+          writeWorkbook(entry, scale, seed, zipOutputStream);
+          zipOutputStream.closeEntry();
+        }
+      }
+    } else {
+      if (!output.isDirectory() && !output.mkdirs()) {
+        throw new IOException("Unable to create directory: " + output);
+      }
+      for (DistributionEntry entry : DistributionEntry.values()) {
+        try (OutputStream outputStream = new FileOutputStream(
+            new File(output, SpiaDistribution.getFileName(entry)))) {
+          writeWorkbook(entry, scale, seed, outputStream);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the total number of rows within a distribution of the specified scale.
+   */
+  public static int getRows(int scale) {
+    return BASE_ROWS.values().stream().mapToInt(rows -> rows * scale).sum();
+  }
+
+  private static void writeWorkbook(DistributionEntry entry, int scale, long seed,
+      OutputStream outputStream) throws IOException {
+    // Each workbook gets its own seed, so that they do not all share the same sequence.
+    try (Workbook workbook = SyntheticWorkbooks
+        .create(entry, BASE_ROWS.get(entry) * scale, seed + entry.ordinal())) {
+      workbook.write(outputStream);
+    }
+  }
+
+}
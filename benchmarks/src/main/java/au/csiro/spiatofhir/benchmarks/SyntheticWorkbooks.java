@@ -0,0 +1,246 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.benchmarks;
+
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Builds in-memory workbooks with the same sheets and columns as each of the spreadsheets within
+ * the SPIA distribution, populated with valid codes and a mixture of synonyms, units and blank
+ * cells.
+ * <p>
+ * Roughly one row in three has synonyms, one in fifty has no code (and is excluded by the parser),
+ * one in twenty has no unit and one in ten has more than one unit. A small proportion of cells
+ * have extraneous whitespace, which is reported as a warning.
+ *
+ * @author John Grimes
+ */
+public class SyntheticWorkbooks {
+
+  private static final String[] LABORATORY_HEADERS = {"RCPA Preferred term", "RCPA Synonyms",
+      "Usage guidance", "Subgroup_1", "Subgroup_2", "Length", "Specimen", "Unit", "UCUM", "LOINC",
+      "Component", "Property", "Timing", "System", "Scale", "Method", "LongName", "Version",
+      "History"};
+  private static final String[] UNITS = {"mmol/L", "umol/L", "g/L", "mg/L", "U/L", "%", "fL",
+      "10*9/L", "10*12/L", "mL/min/{1.73_m2}", "mmol/mol", "nmol/L", "pmol/L", "mU/L", "kU/L",
+      "No unit"};
+  private static final String[] FLAGS = {"Red", "Green", "Orange"};
+  private static final String[] ANALYTES = {"Sodium", "Potassium", "Chloride", "Bicarbonate",
+      "Urea", "Creatinine", "Glucose", "Calcium", "Magnesium", "Phosphate", "Albumin",
+      "Total protein", "Bilirubin", "Alkaline phosphatase", "Gamma glutamyl transferase",
+      "Alanine aminotransferase", "Haemoglobin", "Ferritin", "Troponin I", "C-reactive protein"};
+  private static final String[] SPECIMENS = {"serum", "plasma", "urine", "blood",
+      "cerebrospinal fluid", "synovial fluid"};
+  private static final String[] GENERA = {"Staphylococcus", "Streptococcus", "Escherichia",
+      "Klebsiella", "Pseudomonas", "Enterococcus", "Candida", "Clostridioides", "Salmonella",
+      "Mycobacterium"};
+  private static final String[] SYNONYM_FORMS = {"%s level", "%s concentration",
+      "%s measurement"};
+
+  /**
+   * Creates a workbook for the supplied entry containing the specified number of data rows. The
+   * same seed will always produce the same workbook.
+   */
+  public static Workbook create(DistributionEntry entry, int rows, long seed) {
+    Layout layout = Layout.of(entry);
+    Random random = new Random(seed);
+    Workbook workbook = new XSSFWorkbook();
+    Sheet sheet = workbook.createSheet(layout.sheetName);
+    Row headerRow = sheet.createRow(0);
+    for (int i = 0; i < layout.headers.length; i++) {
+      headerRow.createCell(i).setCellValue(layout.headers[i]);
+    }
+    for (int rowIndex = 1; rowIndex <= rows; rowIndex++) {
+      Row row = sheet.createRow(rowIndex);
+      if (layout.groupHeaderRows.contains(rowIndex)) {
+        row.createCell(0).setCellValue("Group " + rowIndex);
+        continue;
+      }
+      // The preferred units table uses the unit itself as the display.
+      String term = layout.codeColumn < 0
+          ? preferredUnit(rowIndex)
+          : term(layout, rowIndex, random);
+      row.createCell(layout.termColumn)
+          .setCellValue(random.nextInt(200) == 0 ? term + " " : term);
+      if (layout.synonymsColumn >= 0 && random.nextInt(3) == 0) {
+        row.createCell(layout.synonymsColumn)
+            .setCellValue(synonyms(term, 1 + random.nextInt(3), random));
+      }
+      if (layout.codeColumn >= 0 && random.nextInt(50) != 0) {
+        String code = layout.snomed
+            ? snomedCell(rowIndex, term, random)
+            : BenchmarkFixtures.loincCode(10000 + rowIndex);
+        row.createCell(layout.codeColumn).setCellValue(code);
+      }
+      if (layout.unitColumn >= 0 && (layout.codeColumn < 0 || random.nextInt(20) != 0)) {
+        String units = layout.codeColumn < 0
+            ? preferredUnit(rowIndex)
+            : units(random);
+        row.createCell(layout.unitColumn).setCellValue(units);
+      }
+      if (layout.flagColumn >= 0 && random.nextInt(4) == 0) {
+        row.createCell(layout.flagColumn).setCellValue(FLAGS[random.nextInt(FLAGS.length)]);
+      }
+      // Populate most of the descriptive columns, which are read but not used.
+      for (int column = 0; column < layout.headers.length; column++) {
+        if (!layout.isUsed(column) && random.nextInt(3) != 0) {
+          row.createCell(column).setCellValue(layout.headers[column].trim() + " " + rowIndex % 37);
+        }
+      }
+    }
+    return workbook;
+  }
+
+  private static String term(Layout layout, int rowIndex, Random random) {
+    if (layout.organisms) {
+      return GENERA[random.nextInt(GENERA.length)] + " species " + rowIndex;
+    }
+    return ANALYTES[random.nextInt(ANALYTES.length)] + " in "
+        + SPECIMENS[random.nextInt(SPECIMENS.length)] + " " + rowIndex;
+  }
+
+  private static String synonyms(String term, int count, Random random) {
+    // Most multi-valued cells are delimited without whitespace, though some have a space after
+    // the delimiter.
+    String delimiter = random.nextInt(10) == 0 ? "; " : ";";
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        builder.append(delimiter);
+      }
+      builder.append(String.format(SYNONYM_FORMS[i], term));
+    }
+    return builder.toString();
+  }
+
+  private static String snomedCell(int rowIndex, String term, Random random) {
+    String code = BenchmarkFixtures.snomedCode(100000 + rowIndex);
+    // Some cells contain the preferred term after the identifier.
+    return random.nextBoolean() ? code : code + " |" + term + "|";
+  }
+
+  private static String units(Random random) {
+    String unit = UNITS[random.nextInt(UNITS.length)];
+    return random.nextInt(10) == 0 && !unit.equals("No unit")
+        ? unit + ";" + UNITS[random.nextInt(UNITS.length - 1)]
+        : unit;
+  }
+
+  /**
+   * Returns a distinct, valid unit for each row of the preferred units table. Once the common
+   * units have been exhausted, UCUM annotations are used to make the remainder distinct.
+   */
+  private static String preferredUnit(int rowIndex) {
+    int commonUnits = UNITS.length - 1;
+    String unit = UNITS[(rowIndex - 1) % commonUnits];
+    return rowIndex <= commonUnits
+        ? unit
+        : unit + "{" + rowIndex + "}";
+  }
+
+  /**
+   * The position of the columns within the spreadsheet for each entry.
+   */
+  private static class Layout {
+
+    private final String sheetName;
+    private final String[] headers;
+    private final boolean organisms;
+    private final int termColumn;
+    private final int synonymsColumn;
+    private final int codeColumn;
+    private final boolean snomed;
+    private final int unitColumn;
+    private final int flagColumn;
+    private final Set<Integer> groupHeaderRows;
+
+    private Layout(String sheetName, String[] headers, boolean organisms, int termColumn,
+        int synonymsColumn, int codeColumn, boolean snomed, int unitColumn, int flagColumn,
+        Set<Integer> groupHeaderRows) {
+      this.sheetName = sheetName;
+      this.headers = headers;
+      this.organisms = organisms;
+      this.termColumn = termColumn;
+      this.synonymsColumn = synonymsColumn;
+      this.codeColumn = codeColumn;
+      this.snomed = snomed;
+      this.unitColumn = unitColumn;
+      this.flagColumn = flagColumn;
+      this.groupHeaderRows = groupHeaderRows;
+    }
+
+    private boolean isUsed(int column) {
+      return column == termColumn || column == synonymsColumn || column == codeColumn
+          || column == unitColumn || column == flagColumn;
+    }
+
+    private static Layout of(DistributionEntry entry) {
+      switch (entry) {
+        case REQUESTING:
+          return new Layout("SPIA Requesting terms v3.1",
+              new String[]{"RCPA Preferred term", "RCPA Synonyms", "Usage guidance", "Length",
+                  "Discipline", "SNOMED ", "Subgroup", "SNOMED", "Specimen",
+                  "Terminology binding (SNOMED CT-AU)", "Version", "History"},
+              false, 0, 1, 9, true, -1, -1, Collections.emptySet());
+        case CHEMICAL:
+          String[] chemicalHeaders = Arrays.copyOf(LABORATORY_HEADERS, 20);
+          chemicalHeaders[17] = "Combining Results Flag";
+          chemicalHeaders[18] = "Version";
+          chemicalHeaders[19] = "History";
+          return new Layout("Chemical Pathology Terms v3.1", chemicalHeaders, false, 0, 1,
+              9, false, 8, 17, Collections.singleton(203));
+        case HAEMATOLOGY:
+          return new Layout("Haem Term Ref Set v3.1", LABORATORY_HEADERS, false, 0, 1, 9,
+              false, 8, -1, Collections.emptySet());
+        case IMMUNOPATHOLOGY:
+          return new Layout("Immunopathology Terms v3.1", LABORATORY_HEADERS, false, 0, 1,
+              9, false, 8, -1,
+              new HashSet<>(Arrays.asList(1, 133, 170, 171, 180, 190, 202, 213, 224)));
+        case MICROBIOLOGY_SEROLOGY_MOLECULAR:
+          return new Layout("Term Micro Sero Molec v3.1",
+              new String[]{"RCPA Preferred term", "RCPA Synonyms", "Usage guidance", "Subgroup_1",
+                  "Subgroup_2", "Length", "Specimen", "DURATION", "Unit", "UCUM", "LOINC",
+                  "Component", "Property", "Timing", "System", "Scale", "Method", "LongName",
+                  "Version", "History"},
+              false, 0, 1, 10, false, 9, -1, Collections.emptySet());
+        case MICROBIOLOGY_ORGANISMS:
+          return new Layout("Organisms v3.1",
+              new String[]{"RCPA Preferred Organism name", "RCPA Synonyms", "Length",
+                  "Terminology binding (SNOMED CT-AU)", "Version", "History"},
+              true, 0, 1, 3, true, -1, -1, Collections.emptySet());
+        case PREFERRED_UNITS:
+          return new Layout("Preferred units v1.1",
+              new String[]{"Description", "Preferred Display ", "UCUM Unit", "Version",
+                  "History"},
+              false, 1, -1, -1, false, 2, -1, Collections.emptySet());
+        default:
+          throw new IllegalArgumentException("Unknown entry: " + entry);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.benchmarks;
+
+import au.csiro.spiatofhir.WarmContexts;
+import au.csiro.spiatofhir.diagnostics.DiagnosticsCollector;
+import au.csiro.spiatofhir.pipeline.PipelineSettings;
+import au.csiro.spiatofhir.pipeline.TransformPipeline;
+import au.csiro.spiatofhir.spia.SpiaDistribution;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the complete transform of a synthetic distribution, from reading the ZIP file through
+ * to writing the Bundle, at multiples of the size of the real distribution. Larger multiples can
+ * be run using `-p scale=100`, given enough heap.
+ *
+ * @author John Grimes
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TransformBenchmark {
+
+  @Param({"1", "10"})
+  public int scale;
+
+  private File distribution;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    distribution = File.createTempFile("spia-synthetic-", ".zip");
+    SyntheticDistribution.write(distribution, scale, 42);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(distribution.toPath());
+  }
+
+  @Benchmark
+  public int transform() throws Exception {
+    CountingWriter writer = new CountingWriter();
+    // Diagnostics are handed off to a collector, rather than logged on the parsing threads.
+    try (
+        DiagnosticsCollector diagnosticsCollector = new DiagnosticsCollector(null);
+        SpiaDistribution spiaDistribution = SpiaDistribution
+            .open(distribution, BenchmarkFixtures.stubTerminologyClient(),
+                BenchmarkFixtures.ucumService(), diagnosticsCollector)) {
+      new TransformPipeline(WarmContexts.getFhirContext(), spiaDistribution, new Date(0), false,
+          PipelineSettings.defaults()).run(EnumSet.allOf(DistributionEntry.class), writer);
+    }
+    return writer.count;
+  }
+
+  /**
+   * Discards the Bundle, counting the characters written to it.
+   */
+  private static class CountingWriter extends Writer {
+
+    private int count;
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      count += length;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+  }
+
+}
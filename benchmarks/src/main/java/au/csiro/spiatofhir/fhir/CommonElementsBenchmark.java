@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.dstu3.model.ConceptMap;
+import org.hl7.fhir.dstu3.model.ValueSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the population of the elements that are common to all ValueSets and ConceptMaps,
+ * including the rendering of the description into the narrative. This lives within the same
+ * package as {@link SpiaFhirValueSet}, as the methods under test are package-private.
+ *
+ * @author John Grimes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommonElementsBenchmark {
+
+  private static final String TITLE = "RCPA - SPIA Requesting Pathology Terminology Reference Set";
+  private static final String DESCRIPTION =
+      "Standard codes for use in requesting pathology tests in Australia, based on the SPIA "
+          + "Requesting Pathology Reference Set (v3.1).";
+
+  @Benchmark
+  public ValueSet valueSet() {
+    ValueSet valueSet = new ValueSet();
+    valueSet.setTitle(TITLE);
+    valueSet.setDescription(DESCRIPTION);
+    SpiaFhirValueSet.addCommonElementsToValueSet(valueSet);
+    return valueSet;
+  }
+
+  @Benchmark
+  public ConceptMap conceptMap() {
+    ConceptMap conceptMap = new ConceptMap();
+    conceptMap.setTitle(TITLE);
+    conceptMap.setDescription(DESCRIPTION);
+    SpiaFhirConceptMap.addCommonElementsToConceptMap(conceptMap);
+    return conceptMap;
+  }
+
+}
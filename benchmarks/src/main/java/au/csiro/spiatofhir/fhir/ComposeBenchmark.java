@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import au.csiro.spiatofhir.benchmarks.BenchmarkFixtures;
+import au.csiro.spiatofhir.loinc.Loinc;
+import au.csiro.spiatofhir.spia.RefsetEntries;
+import au.csiro.spiatofhir.spia.StringTable;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.dstu3.model.ValueSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the building of a ValueSet compose from reference set entries. This lives within the
+ * same package as {@link SpiaFhirValueSet}, as the method under test is package-private.
+ *
+ * @author John Grimes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComposeBenchmark {
+
+  @Param({"100", "1000"})
+  public int entries;
+
+  private RefsetEntries refsetEntries;
+
+  @Setup
+  public void setUp() {
+    RefsetEntries.Builder builder = new RefsetEntries.Builder(new StringTable());
+    for (int i = 0; i < entries; i++) {
+      Set<String> synonyms = new TreeSet<>();
+      if (i % 3 == 0) {
+        synonyms.add("Synonym A " + i);
+        synonyms.add("Synonym B " + i);
+      }
+      builder.add(BenchmarkFixtures.loincCode(10000 + i), "Term " + i, synonyms, null, null);
+    }
+    refsetEntries = builder.build();
+  }
+
+  @Benchmark
+  public ValueSet.ValueSetComposeComponent buildCompose() {
+    return SpiaFhirValueSet.buildComposeFromEntries(refsetEntries, Loinc.SYSTEM_URI);
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir;
+
+import au.csiro.spiatofhir.batch.BatchTransform;
+import au.csiro.spiatofhir.batch.BatchTransform.Release;
+import au.csiro.spiatofhir.batch.ReleaseResult;
+import au.csiro.spiatofhir.fhir.TerminologyLookupCache;
+import au.csiro.spiatofhir.pipeline.PipelineSettings;
+import au.csiro.spiatofhir.ucum.CachingUcumService;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transforms a number of SPIA releases within the one execution, sharing the contexts and
+ * terminology lookups between them.
+ * <p>
+ * The releases are specified using three lists of equal length - the input paths, publication
+ * dates and output paths.
+ *
+ * @author John Grimes
+ * @see BatchTransform
+ */
+@Mojo(name = "batch", requiresProject = false)
+public class SpiaToFhirBatchMojo extends AbstractMojo {
+
+  private static final Logger logger = LoggerFactory.getLogger(SpiaToFhirBatchMojo.class);
+  private static final String PUBLICATION_DATE_PATTERN = "yyyy-MM-dd";
+
+  @Parameter(property = "inputPaths", required = true)
+  private List<String> inputPaths;
+
+  @Parameter(property = "publicationDates", required = true)
+  private List<String> publicationDates;
+
+  @Parameter(property = "outputPaths", required = true)
+  private List<String> outputPaths;
+
+  @Parameter(property = "terminologyServerUrl", required = true)
+  private String terminologyServerUrl;
+
+  @Parameter(property = "includeExpansions", defaultValue = "false")
+  private boolean includeExpansions;
+
+  @Parameter(property = "concurrency", defaultValue = "2")
+  private int concurrency;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    if (inputPaths.size() != publicationDates.size() || inputPaths.size() != outputPaths
+        .size()) {
+      throw new MojoExecutionException(
+          "inputPaths, publicationDates and outputPaths must contain the same number of values");
+    }
+    List<ReleaseResult> results;
+    try {
+      SimpleDateFormat publicationDateFormat = new SimpleDateFormat(PUBLICATION_DATE_PATTERN);
+      List<Release> releases = new ArrayList<>();
+      for (int i = 0; i < inputPaths.size(); i++) {
+        releases.add(new Release(inputPaths.get(i),
+            publicationDateFormat.parse(publicationDates.get(i)), outputPaths.get(i)));
+      }
+      long start = System.nanoTime();
+      BatchTransform batchTransform = new BatchTransform(terminologyServerUrl, includeExpansions,
+          PipelineSettings.defaults(), concurrency);
+      results = batchTransform.run(releases);
+
+      // Report the time taken for each release, along with the effectiveness of the shared
+      // lookup and UCUM caches.
+      StringBuilder report = new StringBuilder();
+      for (ReleaseResult result : results) {
+        report.append("\n  ").append(result);
+      }
+      TerminologyLookupCache lookupCache = WarmContexts.getLookupCache(terminologyServerUrl);
+      CachingUcumService ucumCache = WarmContexts.getUcumService();
+      logger.info("Transformed " + results.size() + " releases in "
+          + (System.nanoTime() - start) / 1000000 + " ms:" + report + "\nLookup cache: "
+          + lookupCache.getHitCount() + " hits, " + lookupCache.getMissCount() + " misses"
+          + "\nUCUM cache: " + ucumCache.getHitCount() + " hits, " + ucumCache.getMissCount()
+          + " misses");
+    } catch (Exception e) {
+      logger.error("Error occurred during execution: ", e);
+      throw new MojoExecutionException("Error occurred during execution: ", e);
+    }
+    long failures = results.stream().filter(result -> !result.isSuccessful()).count();
+    if (failures > 0) {
+      throw new MojoExecutionException(failures + " of " + results.size()
+          + " releases failed to transform");
+    }
+  }
+
+}
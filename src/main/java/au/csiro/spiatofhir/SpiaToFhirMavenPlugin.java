@@ -16,20 +16,48 @@
 
 package au.csiro.spiatofhir;
 
-import au.csiro.spiatofhir.fhir.SpiaFhirBundle;
+import au.csiro.spiatofhir.binary.BinaryBundleWriter;
+import au.csiro.spiatofhir.diagnostics.DiagnosticsCollector;
+import au.csiro.spiatofhir.fhir.FhirPublisher;
+import au.csiro.spiatofhir.fhir.SpiaFhirDelta;
+import au.csiro.spiatofhir.fhir.SpiaFhirResourceRegistry;
 import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.instrumentation.FlightRecording;
+import au.csiro.spiatofhir.instrumentation.RunMetrics;
+import au.csiro.spiatofhir.instrumentation.RunMetrics.Phase;
+import au.csiro.spiatofhir.instrumentation.ThreadUsage;
+import au.csiro.spiatofhir.pipeline.Checkpoint;
+import au.csiro.spiatofhir.pipeline.PipelineSettings;
+import au.csiro.spiatofhir.pipeline.StageSettings;
+import au.csiro.spiatofhir.pipeline.TransformPipeline;
 import au.csiro.spiatofhir.spia.SpiaDistribution;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import au.csiro.spiatofhir.ucum.CachingUcumService;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.fhir.ucum.UcumEssenceService;
-import org.fhir.ucum.UcumService;
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,52 +77,244 @@ public class SpiaToFhirMavenPlugin extends AbstractMojo {
   private static final Logger logger = LoggerFactory.getLogger(SpiaToFhirMavenPlugin.class);
   private static final String PUBLICATION_DATE_PATTERN = "yyyy-MM-dd";
 
+  @Parameter(defaultValue = "${plugin.version}", readonly = true)
+  private String pluginVersion;
+
   @Parameter(property = "inputPath", required = true)
   private String inputPath;
 
   @Parameter(property = "outputPath", required = true)
   private String outputPath;
 
+  @Parameter(property = "binaryOutputPath")
+  private String binaryOutputPath;
+
   @Parameter(property = "terminologyServerUrl", required = true)
   private String terminologyServerUrl;
 
   @Parameter(property = "publicationDate", required = true)
   private String publicationDate;
 
+  @Parameter(property = "includeExpansions", defaultValue = "false")
+  private boolean includeExpansions;
+
+  @Parameter(property = "includeResources")
+  private List<String> includeResources;
+
+  @Parameter(property = "diagnosticsReportPath")
+  private String diagnosticsReportPath;
+
+  @Parameter(property = "metricsReportPath")
+  private String metricsReportPath;
+
+  @Parameter(property = "flightRecording", defaultValue = "false")
+  private boolean flightRecording;
+
+  @Parameter(property = "readParallelism", defaultValue = "1")
+  private int readParallelism;
+
+  @Parameter(property = "readQueueDepth", defaultValue = "2")
+  private int readQueueDepth;
+
+  @Parameter(property = "parseParallelism", defaultValue = "2")
+  private int parseParallelism;
+
+  @Parameter(property = "parseQueueDepth", defaultValue = "2")
+  private int parseQueueDepth;
+
+  @Parameter(property = "buildParallelism", defaultValue = "2")
+  private int buildParallelism;
+
+  @Parameter(property = "buildQueueDepth", defaultValue = "4")
+  private int buildQueueDepth;
+
+  @Parameter(property = "encodeParallelism", defaultValue = "2")
+  private int encodeParallelism;
+
+  @Parameter(property = "encodeQueueDepth", defaultValue = "8")
+  private int encodeQueueDepth;
+
+  @Parameter(property = "previousBundlePath")
+  private String previousBundlePath;
+
+  @Parameter(property = "deltaOutputPath")
+  private String deltaOutputPath;
+
+  @Parameter(property = "changeSummaryPath")
+  private String changeSummaryPath;
+
+  @Parameter(property = "publishServerUrl")
+  private String publishServerUrl;
+
+  @Parameter(property = "publishConcurrency", defaultValue = "4")
+  private int publishConcurrency;
+
+  @Parameter(property = "publishChunkBytes", defaultValue = "5242880")
+  private int publishChunkBytes;
+
+  @Parameter(property = "publishRetries", defaultValue = "3")
+  private int publishRetries;
+
+  @Parameter(property = "workDirectory")
+  private String workDirectory;
+
+  @Parameter(property = "resume", defaultValue = "false")
+  private boolean resume;
+
   @Override
   public void execute() throws MojoExecutionException {
+    if (previousBundlePath != null && deltaOutputPath == null) {
+      throw new MojoExecutionException(
+          "deltaOutputPath must be specified when previousBundlePath is specified");
+    }
+    if (resume && workDirectory == null) {
+      throw new MojoExecutionException("workDirectory must be specified when resume is true");
+    }
+    // The recording is written next to the output, even if the transform fails.
+    FlightRecording recording = null;
     try {
-      FhirContext fhirContext = FhirContext.forDstu3();
-      TerminologyClient terminologyClient = fhirContext
-          .newRestfulClient(TerminologyClient.class, terminologyServerUrl);
-      UcumService ucumService = new UcumEssenceService(Thread.currentThread()
-          .getContextClassLoader()
-          .getResourceAsStream("ucum-essence.xml"));
+      if (flightRecording) {
+        recording = FlightRecording.start(Paths.get(outputPath + ".jfr"));
+      }
+      // Get the contexts that are shared across executions, reporting how long each took to
+      // obtain (which will be negligible if they have already been initialised).
+      long start = System.nanoTime();
+      FhirContext fhirContext = WarmContexts.getFhirContext();
+      long afterFhirContext = System.nanoTime();
+      CachingUcumService ucumService = WarmContexts.getUcumService();
+      long afterUcum = System.nanoTime();
+      TerminologyClient terminologyClient = WarmContexts
+          .getTerminologyClient(terminologyServerUrl);
+      long afterClient = System.nanoTime();
+      logger.info("Startup: FHIR context " + (afterFhirContext - start) / 1000000
+          + " ms, UCUM service " + (afterUcum - afterFhirContext) / 1000000
+          + " ms, terminology client " + (afterClient - afterUcum) / 1000000 + " ms");
       File inputFile = new File(inputPath);
       SimpleDateFormat publicationDateFormat = new SimpleDateFormat(PUBLICATION_DATE_PATTERN);
 
-      // Parse RCPA distribution.
-      SpiaDistribution spiaDistribution = new SpiaDistribution(inputFile, terminologyClient,
-          ucumService);
-
-      // Convert distribution into a FHIR Bundle.
-      SpiaFhirBundle spiaFhirBundle = new SpiaFhirBundle(
-          fhirContext,
-          spiaDistribution,
-          publicationDateFormat.parse(publicationDate)
-      );
-      Bundle transformed = spiaFhirBundle.getBundle();
-
-      // Encode the Bundle to JSON and write to the output path.
-      IParser jsonParser = fhirContext.newJsonParser();
-      String json = jsonParser.encodeResourceToString(transformed);
-      try (FileWriter fileWriter = new FileWriter(outputPath)) {
-        fileWriter.write(json);
+      // Open the RCPA distribution, then parse and convert it into a FHIR Bundle using a pipeline
+      // of concurrent stages, writing the Bundle to the output path as JSON.
+      PipelineSettings pipelineSettings = new PipelineSettings(
+          new StageSettings(readParallelism, readQueueDepth),
+          new StageSettings(parseParallelism, parseQueueDepth),
+          new StageSettings(buildParallelism, buildQueueDepth),
+          new StageSettings(encodeParallelism, encodeQueueDepth));
+      // If only some of the resources have been requested, only the workbooks that they are built
+      // from are read and parsed.
+      Set<String> selectedResources = null;
+      Set<DistributionEntry> entries = EnumSet.allOf(DistributionEntry.class);
+      if (includeResources != null && !includeResources.isEmpty()) {
+        selectedResources = new LinkedHashSet<>(includeResources);
+        entries = SpiaFhirResourceRegistry.getDefault().getEntries(selectedResources);
+      }
+      RunMetrics runMetrics = new RunMetrics();
+      long ucumHitsBefore = ucumService.getHitCount();
+      long ucumMissesBefore = ucumService.getMissCount();
+      Bundle transformed;
+      ThreadUsage openStart = ThreadUsage.now();
+      // Issues within the rows of the spreadsheets are collected and reported in the background.
+      try (
+          DiagnosticsCollector diagnosticsCollector = new DiagnosticsCollector(
+              diagnosticsReportPath == null ? null : Paths.get(diagnosticsReportPath));
+          SpiaDistribution spiaDistribution = SpiaDistribution.open(inputFile, terminologyClient,
+              ucumService, diagnosticsCollector);
+          Writer writer = new BufferedWriter(
+              new OutputStreamWriter(new FileOutputStream(outputPath), StandardCharsets.UTF_8));
+          // If a work directory has been supplied, the resources and terminology lookups are
+          // checkpointed as they are completed, so that a failed run can be resumed.
+          Checkpoint checkpoint = workDirectory == null
+              ? null
+              : Checkpoint.open(fhirContext, Paths.get(workDirectory), spiaDistribution,
+                  checkpointOptions(), resume)) {
+        runMetrics.get(Phase.OPEN, inputFile.getName()).addSince(openStart, 1);
+        TransformPipeline pipeline = new TransformPipeline(fhirContext, spiaDistribution,
+            publicationDateFormat.parse(publicationDate), includeExpansions, pipelineSettings,
+            runMetrics, selectedResources);
+        if (checkpoint == null) {
+          transformed = pipeline.run(entries, writer);
+        } else {
+          checkpoint.attach(WarmContexts.getLookupCache(terminologyServerUrl));
+          transformed = pipeline.run(entries, EnumSet.noneOf(DistributionEntry.class),
+              checkpoint.getResourceCache(), writer);
+        }
+      }
+
+      // Report the time and memory used by each phase of the transform.
+      logger.info("Transform metrics:\n" + runMetrics.toTable());
+      logger.info(ucumCacheSummary(ucumService.getHitCount() - ucumHitsBefore,
+          ucumService.getMissCount() - ucumMissesBefore));
+      if (metricsReportPath != null) {
+        Files.write(Paths.get(metricsReportPath),
+            runMetrics.toJson().getBytes(StandardCharsets.UTF_8));
+      }
+
+      // Write the compact binary encoding of the Bundle, if requested.
+      if (binaryOutputPath != null) {
+        try (OutputStream outputStream = new FileOutputStream(binaryOutputPath)) {
+          new BinaryBundleWriter().write(transformed, outputStream);
+        }
+      }
+
+      // If a previous Bundle has been supplied, write out a transaction Bundle containing only the
+      // resources that have changed, along with a summary of the changes.
+      if (previousBundlePath != null) {
+        IParser jsonParser = fhirContext.newJsonParser();
+        Bundle previousBundle;
+        try (FileReader fileReader = new FileReader(previousBundlePath)) {
+          previousBundle = jsonParser.parseResource(Bundle.class, fileReader);
+        }
+        SpiaFhirDelta delta = new SpiaFhirDelta(fhirContext, previousBundle, transformed);
+        try (FileWriter fileWriter = new FileWriter(deltaOutputPath)) {
+          fileWriter.write(jsonParser.encodeResourceToString(delta.getTransaction()));
+        }
+        String summary = delta.getSummary();
+        if (changeSummaryPath != null) {
+          try (FileWriter fileWriter = new FileWriter(changeSummaryPath)) {
+            fileWriter.write(summary);
+          }
+        }
+        logger.info("Changes since previous Bundle:\n" + summary);
+      }
+
+      // If a target server has been supplied, upload each of the resources to it.
+      if (publishServerUrl != null) {
+        IGenericClient publishClient = fhirContext.newRestfulGenericClient(publishServerUrl);
+        FhirPublisher publisher = new FhirPublisher(fhirContext, publishClient,
+            publishConcurrency, publishChunkBytes, publishRetries);
+        publisher.publish(transformed);
       }
     } catch (Exception e) {
       logger.error("Error occurred during execution: ", e);
       throw new MojoExecutionException("Error occurred during execution: ", e);
+    } finally {
+      if (recording != null) {
+        try {
+          recording.close();
+        } catch (IOException e) {
+          throw new MojoExecutionException("Error writing flight recording: ", e);
+        }
+      }
     }
   }
 
+  /**
+   * Returns the options that affect the content of the resources, which need to be the same for
+   * a run to be resumed from a checkpoint.
+   */
+  private Properties checkpointOptions() {
+    Properties options = new Properties();
+    // Resources built by a different version of the plugin are not reused.
+    options.setProperty("pluginVersion", String.valueOf(pluginVersion));
+    options.setProperty("publicationDate", publicationDate);
+    options.setProperty("includeExpansions", Boolean.toString(includeExpansions));
+    options.setProperty("terminologyServerUrl", terminologyServerUrl);
+    return options;
+  }
+
+  private static String ucumCacheSummary(long hits, long misses) {
+    long total = hits + misses;
+    return "UCUM cache: " + hits + " hits, " + misses + " misses ("
+        + (total == 0 ? 0 : hits * 100 / total) + "% hit rate)";
+  }
+
 }
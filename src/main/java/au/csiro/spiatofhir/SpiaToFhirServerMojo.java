@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir;
+
+import au.csiro.spiatofhir.pipeline.PipelineSettings;
+import au.csiro.spiatofhir.server.TransformServer;
+import java.util.concurrent.CountDownLatch;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a long-lived HTTP server which accepts SPIA distributions via `POST /transform` and
+ * responds with the transformed FHIR Bundle. The server runs until the process is stopped.
+ *
+ * @author John Grimes
+ * @see TransformServer
+ */
+@Mojo(name = "serve", requiresProject = false)
+public class SpiaToFhirServerMojo extends AbstractMojo {
+
+  private static final Logger logger = LoggerFactory.getLogger(SpiaToFhirServerMojo.class);
+
+  @Parameter(property = "host", defaultValue = "localhost")
+  private String host;
+
+  @Parameter(property = "port", defaultValue = "8080")
+  private int port;
+
+  @Parameter(property = "terminologyServerUrl", required = true)
+  private String terminologyServerUrl;
+
+  @Parameter(property = "concurrency", defaultValue = "2")
+  private int concurrency;
+
+  @Parameter(property = "maxRequestBytes", defaultValue = "104857600")
+  private long maxRequestBytes;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    try {
+      TransformServer server = new TransformServer(host, port, terminologyServerUrl, concurrency,
+          maxRequestBytes, PipelineSettings.defaults());
+      CountDownLatch stopped = new CountDownLatch(1);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        server.close();
+        stopped.countDown();
+      }));
+      server.start();
+      stopped.await();
+    } catch (Exception e) {
+      logger.error("Error occurred during execution: ", e);
+      throw new MojoExecutionException("Error occurred during execution: ", e);
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir;
+
+import au.csiro.spiatofhir.pipeline.PipelineSettings;
+import au.csiro.spiatofhir.watch.DistributionWatcher;
+import java.io.File;
+import java.text.SimpleDateFormat;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transforms a SPIA distribution, then watches it and transforms it again each time that it
+ * changes. The input can be either the ZIP file, or a directory containing its extracted contents.
+ *
+ * @author John Grimes
+ * @see DistributionWatcher
+ */
+@Mojo(name = "watch", requiresProject = false)
+public class SpiaToFhirWatchMojo extends AbstractMojo {
+
+  private static final Logger logger = LoggerFactory.getLogger(SpiaToFhirWatchMojo.class);
+  private static final String PUBLICATION_DATE_PATTERN = "yyyy-MM-dd";
+
+  @Parameter(property = "inputPath", required = true)
+  private String inputPath;
+
+  @Parameter(property = "outputPath", required = true)
+  private String outputPath;
+
+  @Parameter(property = "terminologyServerUrl", required = true)
+  private String terminologyServerUrl;
+
+  @Parameter(property = "publicationDate", required = true)
+  private String publicationDate;
+
+  @Parameter(property = "includeExpansions", defaultValue = "false")
+  private boolean includeExpansions;
+
+  @Parameter(property = "debounceMillis", defaultValue = "500")
+  private long debounceMillis;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    try {
+      SimpleDateFormat publicationDateFormat = new SimpleDateFormat(PUBLICATION_DATE_PATTERN);
+      DistributionWatcher watcher = new DistributionWatcher(new File(inputPath),
+          new File(outputPath), terminologyServerUrl, publicationDateFormat.parse(publicationDate),
+          includeExpansions, PipelineSettings.defaults(), debounceMillis);
+      watcher.run();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      logger.error("Error occurred during execution: ", e);
+      throw new MojoExecutionException("Error occurred during execution: ", e);
+    }
+  }
+
+}
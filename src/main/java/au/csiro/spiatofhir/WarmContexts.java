@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir;
+
+import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.fhir.TerminologyLookupCache;
+import au.csiro.spiatofhir.instrumentation.CacheCounts;
+import au.csiro.spiatofhir.ucum.CachingUcumService;
+import au.csiro.spiatofhir.ucum.UcumModelService;
+import au.csiro.spiatofhir.ucum.UcumSnapshot;
+import ca.uhn.fhir.context.FhirContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.fhir.ucum.UcumEssenceService;
+import org.fhir.ucum.UcumException;
+import org.fhir.ucum.UcumService;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.CapabilityStatement;
+import org.hl7.fhir.dstu3.model.CodeSystem;
+import org.hl7.fhir.dstu3.model.ConceptMap;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.hl7.fhir.dstu3.model.Parameters;
+import org.hl7.fhir.dstu3.model.ValueSet;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the contexts that are expensive to create (the FHIR context, UCUM service and terminology
+ * clients), so that they are only created once per process and then reused across executions.
+ *
+ * @author John Grimes
+ */
+public abstract class WarmContexts {
+
+  private static final Logger logger = LoggerFactory.getLogger(WarmContexts.class);
+  private static final Map<String, TerminologyClient> terminologyClients =
+      new ConcurrentHashMap<>();
+  private static final Map<String, TerminologyLookupCache> lookupCaches =
+      new ConcurrentHashMap<>();
+  private static volatile FhirContext fhirContext;
+  private static volatile CachingUcumService ucumService;
+
+  /**
+   * Returns a DSTU3 FHIR context, within which the definitions of the resource types used by this
+   * plugin have already been scanned. Along with the types that are produced, this includes those
+   * that the REST client needs to read from a server (CapabilityStatement and OperationOutcome).
+   */
+  public static FhirContext getFhirContext() {
+    if (fhirContext == null) {
+      synchronized (WarmContexts.class) {
+        if (fhirContext == null) {
+          long start = System.nanoTime();
+          FhirContext context = FhirContext.forDstu3();
+          for (Class<? extends IBaseResource> resourceType : Arrays.asList(Bundle.class,
+              ValueSet.class, ConceptMap.class, CodeSystem.class, Parameters.class,
+              CapabilityStatement.class, OperationOutcome.class)) {
+            context.getResourceDefinition(resourceType);
+          }
+          fhirContext = context;
+          logger.info("Initialised FHIR context in " + elapsedMillis(start) + " ms");
+        }
+      }
+    }
+    return fhirContext;
+  }
+
+  /**
+   * Returns a UCUM service, built from the snapshot of the UCUM essence file that is generated
+   * when this plugin is built. If the snapshot cannot be used, the service is built from the UCUM
+   * essence file itself. The service is safe to share between threads, and caches the results of
+   * validation for the life of the process.
+   */
+  public static CachingUcumService getUcumService() throws UcumException {
+    if (ucumService == null) {
+      synchronized (WarmContexts.class) {
+        if (ucumService == null) {
+          long start = System.nanoTime();
+          UcumService loaded = loadUcumSnapshot();
+          if (loaded == null) {
+            loaded = loadUcumEssence();
+          }
+          ucumService = new CachingUcumService(loaded);
+          logger.info("Initialised UCUM service in " + elapsedMillis(start) + " ms");
+        }
+      }
+    }
+    return ucumService;
+  }
+
+  private static UcumService loadUcumEssence() throws UcumException {
+    try (InputStream ucumEssence = WarmContexts.class.getClassLoader()
+        .getResourceAsStream("ucum-essence.xml")) {
+      return new UcumEssenceService(ucumEssence);
+    } catch (IOException e) {
+      throw new UcumException("Error reading UCUM essence file", e);
+    }
+  }
+
+  /**
+   * Returns a UCUM service built from the snapshot, or null if the snapshot cannot be used.
+   */
+  static UcumService loadUcumSnapshot() {
+    try (InputStream snapshot = WarmContexts.class.getClassLoader()
+        .getResourceAsStream(UcumSnapshot.RESOURCE_NAME)) {
+      if (snapshot == null) {
+        logger.warn("UCUM snapshot not found, falling back to UCUM essence file");
+        return null;
+      }
+      return new UcumModelService(UcumSnapshot.read(snapshot));
+    } catch (IOException | UcumException | RuntimeException e) {
+      // A snapshot that is corrupt or out of step with the UCUM library can fail with unchecked
+      // exceptions while it is being read.
+      logger.warn("Unable to load UCUM snapshot, falling back to UCUM essence file", e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns a client for the terminology server at the specified URL, the lookups of which are
+   * cached for the life of the process.
+   */
+  public static TerminologyClient getTerminologyClient(String terminologyServerUrl) {
+    return getTerminologyClient(terminologyServerUrl, null);
+  }
+
+  /**
+   * Returns a client for the terminology server at the specified URL, as per {@link
+   * #getTerminologyClient(String)}. The cache hits and misses of the lookups made through the
+   * client are also added to the supplied counts.
+   */
+  public static TerminologyClient getTerminologyClient(String terminologyServerUrl,
+      CacheCounts counts) {
+    TerminologyClient restClient = terminologyClients.computeIfAbsent(terminologyServerUrl,
+        url -> {
+          long start = System.nanoTime();
+          TerminologyClient client = getFhirContext()
+              .newRestfulClient(TerminologyClient.class, url);
+          logger.info("Initialised terminology client for " + url + " in "
+              + elapsedMillis(start) + " ms");
+          return client;
+        });
+    return getLookupCache(terminologyServerUrl).wrap(restClient, counts);
+  }
+
+  /**
+   * Returns the cache of lookups made against the terminology server at the specified URL.
+   */
+  public static TerminologyLookupCache getLookupCache(String terminologyServerUrl) {
+    return lookupCaches.computeIfAbsent(terminologyServerUrl, url -> new TerminologyLookupCache());
+  }
+
+  private static long elapsedMillis(long startNanos) {
+    return (System.nanoTime() - startNanos) / 1000000;
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.batch;
+
+import au.csiro.spiatofhir.WarmContexts;
+import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.pipeline.PipelineSettings;
+import au.csiro.spiatofhir.pipeline.TransformPipeline;
+import au.csiro.spiatofhir.spia.SpiaDistribution;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import ca.uhn.fhir.context.FhirContext;
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.fhir.ucum.UcumService;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transforms a number of SPIA releases concurrently within the one process, sharing the FHIR
+ * context, UCUM service and terminology lookup cache between them. As most codes are common to
+ * all releases, only the first release to encounter each code needs to look it up.
+ *
+ * @author John Grimes
+ */
+public class BatchTransform {
+
+  private static final Logger logger = LoggerFactory.getLogger(BatchTransform.class);
+  private final String terminologyServerUrl;
+  private final boolean includeExpansions;
+  private final PipelineSettings pipelineSettings;
+  private final int concurrency;
+
+  /**
+   * @param concurrency the maximum number of releases that will be transformed at once
+   */
+  public BatchTransform(String terminologyServerUrl, boolean includeExpansions,
+      PipelineSettings pipelineSettings, int concurrency) {
+    this.terminologyServerUrl = terminologyServerUrl;
+    this.includeExpansions = includeExpansions;
+    this.pipelineSettings = pipelineSettings;
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * Transforms each of the supplied releases, returning a result for each in the same order. A
+   * failure to transform one release does not prevent the others from being transformed.
+   */
+  public List<ReleaseResult> run(List<Release> releases)
+      throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    try {
+      List<Future<ReleaseResult>> futures = new ArrayList<>();
+      for (Release release : releases) {
+        futures.add(executor.submit(() -> transform(release)));
+      }
+      List<ReleaseResult> results = new ArrayList<>();
+      for (Future<ReleaseResult> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private ReleaseResult transform(Release release) {
+    ReleaseResult result = new ReleaseResult(release.getInputPath(), release.getOutputPath());
+    long start = System.nanoTime();
+    try {
+      FhirContext fhirContext = WarmContexts.getFhirContext();
+      UcumService ucumService = WarmContexts.getUcumService();
+      TerminologyClient terminologyClient = WarmContexts
+          .getTerminologyClient(terminologyServerUrl);
+      try (
+          SpiaDistribution spiaDistribution = SpiaDistribution
+              .open(new File(release.getInputPath()), terminologyClient, ucumService);
+          Writer writer = Files
+              .newBufferedWriter(Paths.get(release.getOutputPath()), StandardCharsets.UTF_8)) {
+        TransformPipeline pipeline = new TransformPipeline(fhirContext, spiaDistribution,
+            release.getPublicationDate(), includeExpansions, pipelineSettings);
+        Bundle bundle = pipeline.run(EnumSet.allOf(DistributionEntry.class), writer);
+        result.setResources(bundle.getEntry().size());
+      }
+    } catch (Exception e) {
+      logger.error("Error transforming " + release.getInputPath(), e);
+      result.setError(e);
+    }
+    result.setDurationMillis((System.nanoTime() - start) / 1000000);
+    logger.info(result.toString());
+    return result;
+  }
+
+  /**
+   * A single release to be transformed as part of a batch.
+   */
+  public static class Release {
+
+    private final String inputPath;
+    private final Date publicationDate;
+    private final String outputPath;
+
+    public Release(String inputPath, Date publicationDate, String outputPath) {
+      this.inputPath = inputPath;
+      this.publicationDate = publicationDate;
+      this.outputPath = outputPath;
+    }
+
+    public String getInputPath() {
+      return inputPath;
+    }
+
+    public Date getPublicationDate() {
+      return publicationDate;
+    }
+
+    public String getOutputPath() {
+      return outputPath;
+    }
+
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.batch;
+
+/**
+ * The outcome of transforming a single release within a batch.
+ *
+ * @author John Grimes
+ */
+public class ReleaseResult {
+
+  private final String inputPath;
+  private final String outputPath;
+  private int resources;
+  private long durationMillis;
+  private Exception error;
+
+  ReleaseResult(String inputPath, String outputPath) {
+    this.inputPath = inputPath;
+    this.outputPath = outputPath;
+  }
+
+  public boolean isSuccessful() {
+    return error == null;
+  }
+
+  @Override
+  public String toString() {
+    String outcome = isSuccessful()
+        ? resources + " resources written to " + outputPath
+        : "failed: " + error.getMessage();
+    return inputPath + ": " + durationMillis + " ms, " + outcome;
+  }
+
+  public String getInputPath() {
+    return inputPath;
+  }
+
+  public String getOutputPath() {
+    return outputPath;
+  }
+
+  public int getResources() {
+    return resources;
+  }
+
+  void setResources(int resources) {
+    this.resources = resources;
+  }
+
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  void setDurationMillis(long durationMillis) {
+    this.durationMillis = durationMillis;
+  }
+
+  public Exception getError() {
+    return error;
+  }
+
+  void setError(Exception error) {
+    this.error = error;
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.binary;
+
+import java.util.List;
+
+/**
+ * The content of a generated Bundle in the compact binary format: the concepts of each ValueSet
+ * and the elements of each ConceptMap. This is deliberately a plain object model with no
+ * dependency upon HAPI, so that it can be loaded quickly by downstream lookup services.
+ *
+ * @author John Grimes
+ */
+public class BinaryBundle {
+
+  static final int MAGIC = 0x53504941; // "SPIA"
+  static final int FORMAT_VERSION = 1;
+  static final byte VALUE_SET = 1;
+  static final byte CONCEPT_MAP = 2;
+
+  private final List<ValueSetContent> valueSets;
+  private final List<ConceptMapContent> conceptMaps;
+
+  public BinaryBundle(List<ValueSetContent> valueSets, List<ConceptMapContent> conceptMaps) {
+    this.valueSets = valueSets;
+    this.conceptMaps = conceptMaps;
+  }
+
+  public List<ValueSetContent> getValueSets() {
+    return valueSets;
+  }
+
+  public List<ConceptMapContent> getConceptMaps() {
+    return conceptMaps;
+  }
+
+  /**
+   * The identifying information common to each resource.
+   */
+  public abstract static class ResourceContent {
+
+    private final String id;
+    private final String url;
+    private final String version;
+
+    ResourceContent(String id, String url, String version) {
+      this.id = id;
+      this.url = url;
+      this.version = version;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getUrl() {
+      return url;
+    }
+
+    public String getVersion() {
+      return version;
+    }
+
+  }
+
+  public static class ValueSetContent extends ResourceContent {
+
+    private final List<Concept> concepts;
+
+    public ValueSetContent(String id, String url, String version, List<Concept> concepts) {
+      super(id, url, version);
+      this.concepts = concepts;
+    }
+
+    public List<Concept> getConcepts() {
+      return concepts;
+    }
+
+  }
+
+  public static class Concept {
+
+    private final String system;
+    private final String code;
+    private final String display;
+    private final List<String> synonyms;
+
+    public Concept(String system, String code, String display, List<String> synonyms) {
+      this.system = system;
+      this.code = code;
+      this.display = display;
+      this.synonyms = synonyms;
+    }
+
+    public String getSystem() {
+      return system;
+    }
+
+    public String getCode() {
+      return code;
+    }
+
+    public String getDisplay() {
+      return display;
+    }
+
+    public List<String> getSynonyms() {
+      return synonyms;
+    }
+
+  }
+
+  public static class ConceptMapContent extends ResourceContent {
+
+    private final List<Mapping> mappings;
+
+    public ConceptMapContent(String id, String url, String version, List<Mapping> mappings) {
+      super(id, url, version);
+      this.mappings = mappings;
+    }
+
+    public List<Mapping> getMappings() {
+      return mappings;
+    }
+
+  }
+
+  /**
+   * A single source element within a ConceptMap group, along with its target codes.
+   */
+  public static class Mapping {
+
+    private final String sourceSystem;
+    private final String sourceCode;
+    private final String targetSystem;
+    private final List<String> targetCodes;
+    private final List<String> equivalences;
+
+    public Mapping(String sourceSystem, String sourceCode, String targetSystem,
+        List<String> targetCodes, List<String> equivalences) {
+      this.sourceSystem = sourceSystem;
+      this.sourceCode = sourceCode;
+      this.targetSystem = targetSystem;
+      this.targetCodes = targetCodes;
+      this.equivalences = equivalences;
+    }
+
+    public String getSourceSystem() {
+      return sourceSystem;
+    }
+
+    public String getSourceCode() {
+      return sourceCode;
+    }
+
+    public String getTargetSystem() {
+      return targetSystem;
+    }
+
+    public List<String> getTargetCodes() {
+      return targetCodes;
+    }
+
+    public List<String> getEquivalences() {
+      return equivalences;
+    }
+
+  }
+
+}
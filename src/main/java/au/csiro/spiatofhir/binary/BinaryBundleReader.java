@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.binary;
+
+import au.csiro.spiatofhir.binary.BinaryBundle.Concept;
+import au.csiro.spiatofhir.binary.BinaryBundle.ConceptMapContent;
+import au.csiro.spiatofhir.binary.BinaryBundle.Mapping;
+import au.csiro.spiatofhir.binary.BinaryBundle.ValueSetContent;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a Bundle written by {@link BinaryBundleWriter}. This has no dependency upon HAPI, and does
+ * not use reflection.
+ *
+ * @author John Grimes
+ */
+public class BinaryBundleReader {
+
+  private String[] strings;
+
+  public BinaryBundle read(InputStream inputStream) throws IOException {
+    DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+    if (input.readInt() != BinaryBundle.MAGIC) {
+      throw new IOException("Input is not a binary SPIA bundle");
+    }
+    int formatVersion = input.readInt();
+    if (formatVersion != BinaryBundle.FORMAT_VERSION) {
+      throw new IOException("Unsupported binary SPIA bundle version: " + formatVersion);
+    }
+
+    // Read the string table.
+    strings = new String[input.readInt()];
+    byte[] buffer = new byte[256];
+    for (int i = 0; i < strings.length; i++) {
+      int length = input.readInt();
+      if (length > buffer.length) {
+        buffer = new byte[Math.max(length, buffer.length * 2)];
+      }
+      input.readFully(buffer, 0, length);
+      strings[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Read the resources.
+    int resourceCount = input.readInt();
+    List<ValueSetContent> valueSets = new ArrayList<>();
+    List<ConceptMapContent> conceptMaps = new ArrayList<>();
+    for (int i = 0; i < resourceCount; i++) {
+      byte type = input.readByte();
+      if (type == BinaryBundle.VALUE_SET) {
+        valueSets.add(readValueSet(input));
+      } else if (type == BinaryBundle.CONCEPT_MAP) {
+        conceptMaps.add(readConceptMap(input));
+      } else {
+        throw new IOException("Unexpected resource type in binary SPIA bundle: " + type);
+      }
+    }
+    return new BinaryBundle(valueSets, conceptMaps);
+  }
+
+  private ValueSetContent readValueSet(DataInputStream input) throws IOException {
+    String id = readString(input);
+    String url = readString(input);
+    String version = readString(input);
+    int count = input.readInt();
+    List<Concept> concepts = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String system = readString(input);
+      String code = readString(input);
+      String display = readString(input);
+      concepts.add(new Concept(system, code, display, readStrings(input)));
+    }
+    return new ValueSetContent(id, url, version, concepts);
+  }
+
+  private ConceptMapContent readConceptMap(DataInputStream input) throws IOException {
+    String id = readString(input);
+    String url = readString(input);
+    String version = readString(input);
+    int count = input.readInt();
+    List<Mapping> mappings = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String sourceSystem = readString(input);
+      String sourceCode = readString(input);
+      String targetSystem = readString(input);
+      int targetCount = input.readInt();
+      List<String> targetCodes = new ArrayList<>(targetCount);
+      List<String> equivalences = new ArrayList<>(targetCount);
+      for (int j = 0; j < targetCount; j++) {
+        targetCodes.add(readString(input));
+        equivalences.add(readString(input));
+      }
+      mappings.add(new Mapping(sourceSystem, sourceCode, targetSystem, targetCodes, equivalences));
+    }
+    return new ConceptMapContent(id, url, version, mappings);
+  }
+
+  private List<String> readStrings(DataInputStream input) throws IOException {
+    int count = input.readInt();
+    if (count == 0) {
+      return Collections.emptyList();
+    }
+    List<String> values = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      values.add(readString(input));
+    }
+    return values;
+  }
+
+  private String readString(DataInputStream input) throws IOException {
+    int index = input.readInt();
+    return index < 0 ? null : strings[index];
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.ConceptMap;
+import org.hl7.fhir.dstu3.model.ConceptMap.ConceptMapGroupComponent;
+import org.hl7.fhir.dstu3.model.ConceptMap.SourceElementComponent;
+import org.hl7.fhir.dstu3.model.ConceptMap.TargetElementComponent;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.hl7.fhir.dstu3.model.ValueSet;
+import org.hl7.fhir.dstu3.model.ValueSet.ConceptReferenceComponent;
+import org.hl7.fhir.dstu3.model.ValueSet.ConceptReferenceDesignationComponent;
+import org.hl7.fhir.dstu3.model.ValueSet.ConceptSetComponent;
+
+/**
+ * Writes the ValueSet concepts and ConceptMap elements from a generated Bundle in a compact binary
+ * format, for fast loading by {@link BinaryBundleReader}.
+ * <p>
+ * The format consists of a header (magic number and format version), a table of all distinct
+ * strings, then the resources. Every string within the resources is written as an index into the
+ * string table (or -1 for null), and every list is prefixed by its length.
+ *
+ * @author John Grimes
+ */
+public class BinaryBundleWriter {
+
+  private final Map<String, Integer> stringIndex = new HashMap<>();
+  private final List<String> strings = new ArrayList<>();
+
+  public void write(Bundle bundle, OutputStream outputStream) throws IOException {
+    stringIndex.clear();
+    strings.clear();
+
+    // Encode the resources first, so that the string table can be built along the way.
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream bodyOutput = new DataOutputStream(body);
+    List<Resource> resources = new ArrayList<>();
+    for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+      Resource resource = entry.getResource();
+      if (resource instanceof ValueSet || resource instanceof ConceptMap) {
+        resources.add(resource);
+      }
+    }
+    bodyOutput.writeInt(resources.size());
+    for (Resource resource : resources) {
+      if (resource instanceof ValueSet) {
+        writeValueSet((ValueSet) resource, bodyOutput);
+      } else {
+        writeConceptMap((ConceptMap) resource, bodyOutput);
+      }
+    }
+    bodyOutput.flush();
+
+    DataOutputStream output = new DataOutputStream(outputStream);
+    output.writeInt(BinaryBundle.MAGIC);
+    output.writeInt(BinaryBundle.FORMAT_VERSION);
+    output.writeInt(strings.size());
+    for (String string : strings) {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+    body.writeTo(output);
+    output.flush();
+  }
+
+  private void writeValueSet(ValueSet valueSet, DataOutputStream output) throws IOException {
+    output.writeByte(BinaryBundle.VALUE_SET);
+    writeResourceHeader(valueSet.getIdElement().getIdPart(), valueSet.getUrl(),
+        valueSet.getVersion(), output);
+    int count = 0;
+    for (ConceptSetComponent include : valueSet.getCompose().getInclude()) {
+      count += include.getConcept().size();
+    }
+    output.writeInt(count);
+    for (ConceptSetComponent include : valueSet.getCompose().getInclude()) {
+      for (ConceptReferenceComponent concept : include.getConcept()) {
+        writeString(include.getSystem(), output);
+        writeString(concept.getCode(), output);
+        writeString(concept.getDisplay(), output);
+        output.writeInt(concept.getDesignation().size());
+        for (ConceptReferenceDesignationComponent designation : concept.getDesignation()) {
+          writeString(designation.getValue(), output);
+        }
+      }
+    }
+  }
+
+  private void writeConceptMap(ConceptMap conceptMap, DataOutputStream output)
+      throws IOException {
+    output.writeByte(BinaryBundle.CONCEPT_MAP);
+    writeResourceHeader(conceptMap.getIdElement().getIdPart(), conceptMap.getUrl(),
+        conceptMap.getVersion(), output);
+    int count = 0;
+    for (ConceptMapGroupComponent group : conceptMap.getGroup()) {
+      count += group.getElement().size();
+    }
+    output.writeInt(count);
+    for (ConceptMapGroupComponent group : conceptMap.getGroup()) {
+      for (SourceElementComponent element : group.getElement()) {
+        writeString(group.getSource(), output);
+        writeString(element.getCode(), output);
+        writeString(group.getTarget(), output);
+        output.writeInt(element.getTarget().size());
+        for (TargetElementComponent target : element.getTarget()) {
+          writeString(target.getCode(), output);
+          writeString(target.hasEquivalence() ? target.getEquivalence().toCode() : null, output);
+        }
+      }
+    }
+  }
+
+  private void writeResourceHeader(String id, String url, String version,
+      DataOutputStream output) throws IOException {
+    writeString(id, output);
+    writeString(url, output);
+    writeString(version, output);
+  }
+
+  private void writeString(String value, DataOutputStream output) throws IOException {
+    if (value == null) {
+      output.writeInt(-1);
+      return;
+    }
+    Integer index = stringIndex.get(value);
+    if (index == null) {
+      index = strings.size();
+      strings.add(value);
+      stringIndex.put(value, index);
+    }
+    output.writeInt(index);
+  }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.diagnostics;
+
+import static au.csiro.spiatofhir.spia.ValidationException.messageWithCoords;
+
+import au.csiro.spiatofhir.utils.Json;
+
+/**
+ * An issue encountered within a single cell of a SPIA spreadsheet, such as a blank or invalid
+ * code.
+ * <p>
+ * The human readable message is only built when it is asked for, so that recording a diagnostic
+ * is cheap.
+ *
+ * @author John Grimes
+ */
+public class Diagnostic {
+
+  private final String workbook;
+  private final String sheet;
+  private final int rowIndex;
+  private final int columnIndex;
+  private final Severity severity;
+  private final Type type;
+  private final String value;
+  private final String detail;
+
+  /**
+   * @param value the content of the cell that caused the issue (may be null)
+   * @param detail further explanation of the issue, such as the message returned by a validator
+   * (may be null)
+   */
+  public Diagnostic(String workbook, String sheet, int rowIndex, int columnIndex,
+      Severity severity, Type type, String value, String detail) {
+    this.workbook = workbook;
+    this.sheet = sheet;
+    this.rowIndex = rowIndex;
+    this.columnIndex = columnIndex;
+    this.severity = severity;
+    this.type = type;
+    this.value = value;
+    this.detail = detail;
+  }
+
+  public String getWorkbook() {
+    return workbook;
+  }
+
+  public String getSheet() {
+    return sheet;
+  }
+
+  public int getRowIndex() {
+    return rowIndex;
+  }
+
+  public int getColumnIndex() {
+    return columnIndex;
+  }
+
+  public Severity getSeverity() {
+    return severity;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public String getDetail() {
+    return detail;
+  }
+
+  public String getMessage() {
+    return messageWithCoords(describe(type, value, detail), rowIndex, columnIndex);
+  }
+
+  /**
+   * Returns a description of an issue of the specified type, including the value and detail if
+   * present.
+   */
+  public static String describe(Type type, String value, String detail) {
+    String description = value == null
+        ? type.getDescription()
+        : type.getDescription() + ": \"" + value + "\"";
+    return detail == null
+        ? description
+        : description + " (" + detail + ")";
+  }
+
+  String toJson() {
+    return "{\"workbook\":" + Json.quote(workbook) + ",\"sheet\":" + Json.quote(sheet)
+        + ",\"row\":" + (rowIndex + 1) + ",\"column\":" + (columnIndex + 1) + ",\"severity\":"
+        + Json.quote(severity.name()) + ",\"type\":" + Json.quote(type.name()) + ",\"value\":"
+        + Json.quote(value) + ",\"detail\":" + Json.quote(detail) + ",\"message\":"
+        + Json.quote(getMessage()) + "}";
+  }
+
+  String toCsv() {
+    return csvField(workbook) + "," + csvField(sheet) + "," + (rowIndex + 1) + ","
+        + (columnIndex + 1) + "," + severity + "," + type + "," + csvField(value) + ","
+        + csvField(detail);
+  }
+
+  static String csvHeader() {
+    return "workbook,sheet,row,column,severity,type,value,detail";
+  }
+
+  private static String csvField(String value) {
+    if (value == null) {
+      return "";
+    }
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+
+  public enum Severity {
+    /**
+     * The row was still included within the output.
+     */
+    WARNING,
+    /**
+     * The row was excluded from the output.
+     */
+    ERROR
+  }
+
+  public enum Type {
+    CELL_WHITESPACE("Encountered cell with leading or trailing whitespace"),
+    DELIMITED_VALUE_WHITESPACE("Encountered delimited value with leading or trailing whitespace"),
+    BLANK_SNOMED_CODE("Blank SNOMED code encountered"),
+    INVALID_SNOMED_CODE("Invalid SNOMED code encountered"),
+    INACTIVE_SNOMED_CODE("Inactive SNOMED code encountered"),
+    BLANK_LOINC_CODE("Blank LOINC code encountered"),
+    INVALID_LOINC_CODE("Invalid LOINC code encountered"),
+    INACTIVE_LOINC_CODE("Inactive LOINC code encountered"),
+    BLANK_UCUM_CODE("Blank UCUM code encountered"),
+    INVALID_UCUM_CODE("UCUM code validation failed"),
+    MULTIPLE_UNITS("More than one code encountered in Preferred Units row");
+
+    private final String description;
+
+    Type(String description) {
+      this.description = description;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+  }
+
+}
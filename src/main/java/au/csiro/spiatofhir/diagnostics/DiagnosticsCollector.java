@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.diagnostics;
+
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Severity;
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Type;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the diagnostics from all of the workbooks within a distribution.
+ * <p>
+ * Recording a diagnostic only adds it to a lock-free queue. A background thread drains the queue,
+ * logging each diagnostic and writing it to the report file (if there is one). The report is a
+ * JSON array if the path ends with `.json`, otherwise it is CSV. A summary of the number of each
+ * type of issue within each workbook is logged when the collector is closed.
+ *
+ * @author John Grimes
+ */
+public class DiagnosticsCollector implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(Diagnostic.class);
+  private static final long FLUSH_INTERVAL_MILLIS = 200;
+  private final Queue<Diagnostic> queue = new ConcurrentLinkedQueue<>();
+  private final Writer reportWriter;
+  private final boolean json;
+  private final Thread flusher;
+  // These are only accessed by the flushing thread, until it has finished.
+  private final Map<String, Map<Type, Integer>> counts = new TreeMap<>();
+  private final Map<Severity, Integer> severityCounts = new EnumMap<>(Severity.class);
+  private long written = 0;
+  private volatile boolean closed = false;
+  private IOException flushError;
+
+  /**
+   * @param reportPath the path of the report file to write, or null if only logging is required
+   */
+  public DiagnosticsCollector(Path reportPath) throws IOException {
+    if (reportPath != null) {
+      reportWriter = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8);
+      json = reportPath.getFileName().toString().endsWith(".json");
+      reportWriter.write(json ? "[" : Diagnostic.csvHeader() + "\n");
+    } else {
+      reportWriter = null;
+      json = false;
+    }
+    flusher = new Thread(this::flushUntilClosed, "diagnostics-flusher");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  /**
+   * Returns a sink which records diagnostics against the specified workbook.
+   */
+  public DiagnosticsSink forWorkbook(String workbook) {
+    return (sheet, rowIndex, columnIndex, severity, type, value, detail) -> queue
+        .add(new Diagnostic(workbook, sheet, rowIndex, columnIndex, severity, type, value,
+            detail));
+  }
+
+  private void flushUntilClosed() {
+    while (!closed) {
+      flush();
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS));
+    }
+    // Pick up anything that was recorded between the last flush and the close.
+    flush();
+  }
+
+  private void flush() {
+    Diagnostic diagnostic;
+    while ((diagnostic = queue.poll()) != null) {
+      logger.warn(diagnostic.getWorkbook() + ": " + diagnostic.getMessage());
+      counts.computeIfAbsent(diagnostic.getWorkbook(), workbook -> new EnumMap<>(Type.class))
+          .merge(diagnostic.getType(), 1, Integer::sum);
+      severityCounts.merge(diagnostic.getSeverity(), 1, Integer::sum);
+      if (reportWriter != null && flushError == null) {
+        try {
+          if (json) {
+            reportWriter.write((written > 0 ? ",\n" : "\n") + diagnostic.toJson());
+          } else {
+            reportWriter.write(diagnostic.toCsv() + "\n");
+          }
+        } catch (IOException e) {
+          flushError = e;
+        }
+      }
+      written++;
+    }
+  }
+
+  /**
+   * Returns a summary of the number of each type of issue within each workbook. This must only be
+   * called once the flushing thread has finished, as the counts are not otherwise synchronised.
+   */
+  private String getSummary() {
+    StringBuilder summary = new StringBuilder();
+    summary.append(severityCounts.getOrDefault(Severity.ERROR, 0))
+        .append(" rows excluded, ")
+        .append(severityCounts.getOrDefault(Severity.WARNING, 0))
+        .append(" warnings");
+    for (Map.Entry<String, Map<Type, Integer>> workbook : counts.entrySet()) {
+      summary.append("\n  ").append(workbook.getKey());
+      for (Map.Entry<Type, Integer> count : workbook.getValue().entrySet()) {
+        summary.append("\n    ").append(count.getKey()).append(": ").append(count.getValue());
+      }
+    }
+    return summary.toString();
+  }
+
+  /**
+   * Waits for all recorded diagnostics to be flushed, then finishes the report and logs a
+   * summary.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    LockSupport.unpark(flusher);
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (reportWriter != null) {
+      if (json) {
+        reportWriter.write("\n]\n");
+      }
+      reportWriter.close();
+    }
+    logger.info("Diagnostics: " + getSummary());
+    if (flushError != null) {
+      throw flushError;
+    }
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.diagnostics;
+
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Severity;
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives the diagnostics encountered while parsing a single workbook.
+ *
+ * @author John Grimes
+ */
+@FunctionalInterface
+public interface DiagnosticsSink {
+
+  /**
+   * @param value the content of the cell that caused the issue (may be null)
+   * @param detail further explanation of the issue, such as the message returned by a validator
+   * (may be null)
+   */
+  void record(String sheet, int rowIndex, int columnIndex, Severity severity, Type type,
+      String value, String detail);
+
+  /**
+   * @param value the content of the cell that caused the issue (may be null)
+   */
+  default void record(String sheet, int rowIndex, int columnIndex, Severity severity, Type type,
+      String value) {
+    record(sheet, rowIndex, columnIndex, severity, type, value, null);
+  }
+
+  /**
+   * Returns a sink which logs each diagnostic immediately, on the calling thread.
+   */
+  static DiagnosticsSink logging() {
+    Logger logger = LoggerFactory.getLogger(Diagnostic.class);
+    return (sheet, rowIndex, columnIndex, severity, type, value, detail) -> logger.warn(
+        new Diagnostic(null, sheet, rowIndex, columnIndex, severity, type, value, detail)
+            .getMessage());
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import static org.hl7.fhir.dstu3.model.ContactPoint.ContactPointSystem.EMAIL;
+import static org.hl7.fhir.dstu3.model.Narrative.NarrativeStatus.GENERATED;
+
+import au.csiro.spiatofhir.utils.Markdown;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.hl7.fhir.dstu3.model.CodeableConcept;
+import org.hl7.fhir.dstu3.model.Coding;
+import org.hl7.fhir.dstu3.model.ContactDetail;
+import org.hl7.fhir.dstu3.model.ContactPoint;
+import org.hl7.fhir.dstu3.model.Meta;
+import org.hl7.fhir.dstu3.model.Narrative;
+import org.hl7.fhir.dstu3.model.UriType;
+import org.hl7.fhir.utilities.xhtml.NodeType;
+import org.hl7.fhir.utilities.xhtml.XhtmlNode;
+
+/**
+ * Prebuilt templates for the elements that are common to all of the ValueSets and ConceptMaps,
+ * and a cache of the narratives rendered from their titles and descriptions.
+ * <p>
+ * The templates are never handed out directly. A copy is made for each resource, as resources may
+ * be modified after they have been built (e.g. {@link ContentHash} sets `meta.versionId`).
+ *
+ * @author John Grimes
+ */
+abstract class CommonElements {
+
+  static final String PUBLISHER = "Australian Digital Health Agency";
+  static final String COPYRIGHT =
+      "Copyright © The Royal College of Pathologists of Australasia - All rights reserved. "
+          + "This content is licensed under a Creative Commons Attribution 4.0 International "
+          + "License. See https://creativecommons.org/licenses/by/4.0/.";
+  // Guards against unbounded growth, should resources with varying descriptions ever be built.
+  private static final int MAX_CACHED_NARRATIVES = 256;
+  private static final Meta valueSetMeta = buildMeta(
+      "http://hl7.org/fhir/StructureDefinition/shareablevalueset",
+      "https://healthterminologies.gov.au/fhir/StructureDefinition/composed-value-set-2");
+  private static final Meta conceptMapMeta = buildMeta(
+      "https://healthterminologies.gov.au/fhir/StructureDefinition/general-concept-map-2");
+  private static final ContactDetail contact = buildContact();
+  private static final CodeableConcept jurisdiction = buildJurisdiction();
+  private static final Map<String, XhtmlNode> narratives = new ConcurrentHashMap<>();
+
+  static Meta getValueSetMeta() {
+    return valueSetMeta.copy();
+  }
+
+  static Meta getConceptMapMeta() {
+    return conceptMapMeta.copy();
+  }
+
+  static List<ContactDetail> getContact() {
+    List<ContactDetail> result = new ArrayList<>(1);
+    result.add(contact.copy());
+    return result;
+  }
+
+  static List<CodeableConcept> getJurisdiction() {
+    List<CodeableConcept> result = new ArrayList<>(1);
+    result.add(jurisdiction.copy());
+    return result;
+  }
+
+  /**
+   * Returns a narrative containing the title, followed by the description rendered from Markdown
+   * into HTML. The rendered narrative is cached, so that it is only parsed once for each title and
+   * description.
+   */
+  static Narrative getNarrative(String title, String description) {
+    String key = title + "\u0000" + description;
+    XhtmlNode div = narratives.get(key);
+    if (div == null) {
+      div = buildDiv(title, description);
+      if (narratives.size() < MAX_CACHED_NARRATIVES) {
+        narratives.putIfAbsent(key, div);
+      }
+    }
+    Narrative text = new Narrative();
+    text.setStatus(GENERATED);
+    text.setDiv(div.copy());
+    return text;
+  }
+
+  private static XhtmlNode buildDiv(String title, String description) {
+    XhtmlNode div = new XhtmlNode(NodeType.Element, "div");
+    div.setValueAsString(
+        "<div><h1>" + title + "</h1>" + Markdown.toHtml(description) + "</div>");
+    return div;
+  }
+
+  private static Meta buildMeta(String... profiles) {
+    Meta meta = new Meta();
+    List<UriType> profile = new ArrayList<>();
+    for (String url : profiles) {
+      profile.add(new UriType(url));
+    }
+    meta.setProfile(profile);
+    return meta;
+  }
+
+  private static ContactDetail buildContact() {
+    ContactDetail contactDetail = new ContactDetail();
+    ContactPoint contactPoint = new ContactPoint();
+    contactPoint.setSystem(EMAIL);
+    contactPoint.setValue("help@digitalhealth.gov.au");
+    contactDetail.addTelecom(contactPoint);
+    return contactDetail;
+  }
+
+  private static CodeableConcept buildJurisdiction() {
+    CodeableConcept jurisdictionCodeableConcept = new CodeableConcept();
+    Coding jurisdictionCoding = new Coding();
+    jurisdictionCoding.setSystem("urn:iso:std:iso:3166");
+    jurisdictionCoding.setCode("AU");
+    jurisdictionCoding.setDisplay("Australia");
+    jurisdictionCodeableConcept.addCoding(jurisdictionCoding);
+    return jurisdictionCodeableConcept;
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import ca.uhn.fhir.context.FhirContext;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.hl7.fhir.dstu3.model.CodeSystem;
+import org.hl7.fhir.dstu3.model.ConceptMap;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.hl7.fhir.dstu3.model.ValueSet;
+
+/**
+ * Computes a stable hash of the content of a FHIR resource, which is recorded within
+ * `meta.versionId` so that downstream consumers can tell whether a resource has changed without
+ * needing to compare its content.
+ *
+ * The elements which are derived from the publication date rather than from the content of the
+ * release are excluded from the hash, so that it only changes when the content does: the `date`
+ * of ValueSets, ConceptMaps and CodeSystems, and the `timestamp` and `identifier` of any ValueSet
+ * expansion.
+ *
+ * @author John Grimes
+ */
+public abstract class ContentHash {
+
+  private static final String ALGORITHM = "SHA-256";
+
+  /**
+   * Returns the hex-encoded SHA-256 hash of the canonical JSON encoding of the resource, excluding
+   * any existing `meta.versionId` and the elements derived from the publication date.
+   */
+  public static String compute(FhirContext fhirContext, Resource resource) {
+    Resource copy = resource.copy();
+    if (copy.hasMeta()) {
+      copy.getMeta().setVersionId(null);
+    }
+    excludePublicationElements(copy);
+    String json = fhirContext.newJsonParser().setPrettyPrint(false).encodeResourceToString(copy);
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("Hash algorithm not available: " + ALGORITHM, e);
+    }
+    byte[] hash = digest.digest(json.getBytes(StandardCharsets.UTF_8));
+    StringBuilder hex = new StringBuilder(hash.length * 2);
+    for (byte b : hash) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+      hex.append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  private static void excludePublicationElements(Resource resource) {
+    if (resource instanceof ValueSet) {
+      ValueSet valueSet = (ValueSet) resource;
+      valueSet.setDate(null);
+      if (valueSet.hasExpansion()) {
+        valueSet.getExpansion().setTimestamp(null);
+        valueSet.getExpansion().setIdentifier(null);
+      }
+    } else if (resource instanceof ConceptMap) {
+      ((ConceptMap) resource).setDate(null);
+    } else if (resource instanceof CodeSystem) {
+      ((CodeSystem) resource).setDate(null);
+    }
+  }
+
+  /**
+   * Computes the content hash of the resource and records it within `meta.versionId`.
+   */
+  public static void apply(FhirContext fhirContext, Resource resource) {
+    String hash = compute(fhirContext, resource);
+    resource.getMeta().setVersionId(hash);
+  }
+
+}
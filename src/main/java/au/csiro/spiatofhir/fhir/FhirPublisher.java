@@ -0,0 +1,335 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.dstu3.model.Bundle.HTTPVerb;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uploads the resources within a generated Bundle to a FHIR server, using their generated ids.
+ * <p>
+ * Resources that are unchanged on the server are skipped. The remainder are grouped into batch
+ * Bundles no larger than the configured chunk size, each of which is submitted with a bounded
+ * level of concurrency. Updates are made conditional upon the version (ETag) of the resource read
+ * from the server. Entries that fail with a transient error (a server error, throttling, or no
+ * response) are retried, while any other failure (such as a conflicting concurrent modification)
+ * fails the publish immediately.
+ *
+ * @author John Grimes
+ */
+public class FhirPublisher {
+
+  private static final Logger logger = LoggerFactory.getLogger(FhirPublisher.class);
+  private static final long RETRY_BACKOFF_MILLIS = 1000;
+  private final FhirContext fhirContext;
+  private final IGenericClient client;
+  private final int concurrency;
+  private final int maxChunkBytes;
+  private final int maxRetries;
+
+  public FhirPublisher(FhirContext fhirContext, IGenericClient client, int concurrency,
+      int maxChunkBytes, int maxRetries) {
+    this.fhirContext = fhirContext;
+    this.client = client;
+    this.concurrency = concurrency;
+    this.maxChunkBytes = maxChunkBytes;
+    this.maxRetries = maxRetries;
+  }
+
+  /**
+   * Publishes each resource within the supplied Bundle, returning a summary of the outcome.
+   */
+  public PublishResult publish(Bundle bundle) throws PublishException {
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    try {
+      // Read the current version of each resource from the server, to work out which have changed.
+      List<Future<BundleEntryComponent>> reads = new ArrayList<>();
+      for (BundleEntryComponent entry : bundle.getEntry()) {
+        reads.add(executor.submit(() -> buildUpdateEntry(entry.getResource())));
+      }
+      List<BundleEntryComponent> updates = new ArrayList<>();
+      for (Future<BundleEntryComponent> read : reads) {
+        BundleEntryComponent update = read.get();
+        if (update != null) {
+          updates.add(update);
+        }
+      }
+      int skipped = bundle.getEntry().size() - updates.size();
+
+      // Upload the changed resources in chunks.
+      AtomicInteger uploaded = new AtomicInteger();
+      List<Future<?>> uploads = new ArrayList<>();
+      for (Bundle chunk : chunk(updates)) {
+        uploads.add(executor.submit(() -> {
+          uploadWithRetry(chunk);
+          uploaded.addAndGet(chunk.getEntry().size());
+          return null;
+        }));
+      }
+      for (Future<?> upload : uploads) {
+        upload.get();
+      }
+      logger.info("Published " + uploaded.get() + " resources, skipped " + skipped
+          + " unchanged resources");
+      return new PublishResult(uploaded.get(), skipped);
+    } catch (ExecutionException e) {
+      throw new PublishException("Error publishing resources", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PublishException("Interrupted while publishing resources", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns a batch entry which will update the resource, or null if the resource on the server
+   * already has the same content.
+   */
+  private BundleEntryComponent buildUpdateEntry(Resource resource) {
+    String type = resource.getResourceType().name();
+    String id = resource.getIdElement().getIdPart();
+    Resource existing = readExisting(type, id);
+    String url = type + "/" + id;
+    BundleEntryComponent update = new BundleEntryComponent();
+    update.setFullUrl(url);
+    update.setResource(resource);
+    update.getRequest().setMethod(HTTPVerb.PUT).setUrl(url);
+    if (existing != null) {
+      if (normalisedHash(existing).equals(normalisedHash(resource))) {
+        logger.debug("Skipping unchanged resource: " + url);
+        return null;
+      }
+      String existingVersion = existing.getIdElement().getVersionIdPart();
+      if (existingVersion != null) {
+        update.getRequest().setIfMatch("W/\"" + existingVersion + "\"");
+      }
+    }
+    return update;
+  }
+
+  private Resource readExisting(String type, String id) {
+    for (int attempt = 0; ; attempt++) {
+      try {
+        return (Resource) client.read().resource(type).withId(id).execute();
+      } catch (ResourceNotFoundException | ResourceGoneException e) {
+        return null;
+      } catch (RuntimeException e) {
+        if (attempt >= maxRetries) {
+          throw e;
+        }
+        logger.warn("Error reading " + type + "/" + id + ", retrying: " + e.getMessage());
+        backOff(attempt);
+      }
+    }
+  }
+
+  /**
+   * Hashes the content of the resource, ignoring the metadata which is assigned by the server and
+   * the elements which {@link ContentHash} excludes.
+   */
+  private String normalisedHash(Resource resource) {
+    Resource copy = resource.copy();
+    copy.setIdElement(copy.getIdElement().toUnqualifiedVersionless());
+    if (copy.hasMeta()) {
+      copy.getMeta().setVersionId(null);
+      copy.getMeta().setLastUpdated(null);
+    }
+    return ContentHash.compute(fhirContext, copy);
+  }
+
+  /**
+   * Groups the update entries into batch Bundles, each of which does not exceed the maximum chunk
+   * size when encoded (unless it contains a single resource that is larger than the limit).
+   */
+  List<Bundle> chunk(List<BundleEntryComponent> updates) {
+    List<Bundle> chunks = new ArrayList<>();
+    Bundle current = null;
+    int currentBytes = 0;
+    for (BundleEntryComponent update : updates) {
+      int size = fhirContext.newJsonParser().encodeResourceToString(update.getResource())
+          .getBytes(StandardCharsets.UTF_8).length;
+      if (current == null || currentBytes + size > maxChunkBytes) {
+        current = new Bundle();
+        current.setType(Bundle.BundleType.BATCH);
+        chunks.add(current);
+        currentBytes = 0;
+      }
+      current.addEntry(update);
+      currentBytes += size;
+    }
+    return chunks;
+  }
+
+  /**
+   * Submits the chunk, retrying only the entries that failed with a transient error. Entries that
+   * succeeded are not sent again, as their `If-Match` versions are no longer current and would
+   * fail on every retry.
+   */
+  private void uploadWithRetry(Bundle chunk) throws PublishException {
+    Bundle pending = chunk;
+    for (int attempt = 0; ; attempt++) {
+      try {
+        Bundle response = client.transaction().withBundle(pending).execute();
+        pending = failedEntries(pending, response);
+        if (pending.getEntry().isEmpty()) {
+          return;
+        }
+        if (attempt >= maxRetries) {
+          throw new PublishException(
+              "Error uploading " + pending.getEntry().size() + " resources after " + (attempt + 1)
+                  + " attempts");
+        }
+        logger.warn("Error uploading " + pending.getEntry().size() + " resources, retrying");
+      } catch (BaseServerResponseException e) {
+        // A connection failure is reported with a status code of zero.
+        if (!isTransient(e.getStatusCode())) {
+          throw new PublishException("Server rejected chunk: " + e.getMessage(), e);
+        }
+        if (attempt >= maxRetries) {
+          throw new PublishException("Error uploading chunk after " + (attempt + 1) + " attempts",
+              e);
+        }
+        logger.warn("Error uploading chunk, retrying: " + e.getMessage());
+      }
+      backOff(attempt);
+    }
+  }
+
+  /**
+   * Returns a batch Bundle containing the request entries which failed with a transient error,
+   * matching each response entry to the request entry at the same index. If any entry was
+   * rejected outright, retrying would fail in the same way, so an exception is thrown instead.
+   */
+  private static Bundle failedEntries(Bundle request, Bundle response) throws PublishException {
+    Bundle failed = new Bundle();
+    failed.setType(Bundle.BundleType.BATCH);
+    List<String> rejections = new ArrayList<>();
+    List<BundleEntryComponent> responseEntries = response.getEntry();
+    for (int i = 0; i < request.getEntry().size(); i++) {
+      BundleEntryComponent requestEntry = request.getEntry().get(i);
+      String url = requestEntry.getRequest().getUrl();
+      String status = i < responseEntries.size()
+          ? responseEntries.get(i).getResponse().getStatus()
+          : null;
+      if (status != null && status.startsWith("2")) {
+        continue;
+      }
+      int statusCode = statusCode(status);
+      if (statusCode == 412) {
+        rejections.add(url + " was modified on the server after it was read (" + status + ")");
+      } else if (isTransient(statusCode)) {
+        logger.debug("Unexpected status in batch response for " + url + ": " + status);
+        failed.addEntry(requestEntry);
+      } else {
+        rejections.add(url + " was rejected by the server (" + status + ")");
+      }
+    }
+    if (!rejections.isEmpty()) {
+      throw new PublishException("Error uploading resources: " + String.join(", ", rejections));
+    }
+    return failed;
+  }
+
+  /**
+   * Returns the code at the start of a batch response status, or zero if there is none.
+   */
+  private static int statusCode(String status) {
+    if (status == null) {
+      return 0;
+    }
+    String code = status.trim().split(" ", 2)[0];
+    try {
+      return Integer.parseInt(code);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Returns true if a request that failed with the status code may succeed when it is repeated.
+   * A code of zero means that no response was received.
+   */
+  private static boolean isTransient(int statusCode) {
+    return statusCode == 0 || statusCode == 429 || statusCode >= 500;
+  }
+
+  private static void backOff(int attempt) {
+    try {
+      Thread.sleep(RETRY_BACKOFF_MILLIS * (1L << attempt));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting to retry", e);
+    }
+  }
+
+  /**
+   * The number of resources uploaded and skipped during a publish.
+   */
+  public static class PublishResult {
+
+    private final int uploaded;
+    private final int skipped;
+
+    PublishResult(int uploaded, int skipped) {
+      this.uploaded = uploaded;
+      this.skipped = skipped;
+    }
+
+    public int getUploaded() {
+      return uploaded;
+    }
+
+    public int getSkipped() {
+      return skipped;
+    }
+
+  }
+
+  /**
+   * Thrown when resources could not be published to the target server.
+   */
+  public static class PublishException extends Exception {
+
+    public PublishException(String message) {
+      super(message);
+    }
+
+    public PublishException(String message, Throwable cause) {
+      super(message, cause);
+    }
+
+  }
+
+}
@@ -16,10 +16,10 @@
 
 package au.csiro.spiatofhir.fhir;
 
-import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.*;
-import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 
+import au.csiro.spiatofhir.instrumentation.FlightEvents;
+import au.csiro.spiatofhir.instrumentation.ResourceTransformEvent;
 import au.csiro.spiatofhir.spia.Refset;
 import au.csiro.spiatofhir.spia.SpiaDistribution;
 import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
@@ -28,44 +28,46 @@ import ca.uhn.fhir.context.FhirContext;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.dstu3.model.CodeSystem;
 import org.hl7.fhir.dstu3.model.Resource;
+import org.hl7.fhir.dstu3.model.ValueSet;
 
 /**
  * @author John Grimes
  */
 public class SpiaFhirBundle {
 
-  // Map to the files within the distribution that contain each reference set.
-  private static final Map<DistributionEntry, List<Class>> resourcesToGenerate = new EnumMap<DistributionEntry, List<Class>>(
-      DistributionEntry.class) {{
-    put(REQUESTING, singletonList(RequestingValueSet.class));
-    put(CHEMICAL, asList(ChemicalPathologyValueSet.class, ChemicalPathologyUnitMap.class,
-        ChemicalCombiningResultsMap.class));
-    put(HAEMATOLOGY, asList(HaematologyValueSet.class, HaematologyUnitMap.class));
-    put(IMMUNOPATHOLOGY, asList(ImmunopathologyValueSet.class, ImmunopathologyUnitMap.class));
-    put(MICROBIOLOGY_SEROLOGY_MOLECULAR, asList(MicrobiologySerologyMolecularValueSet.class,
-        MicrobiologySerologyMolecularUnitMap.class));
-    put(MICROBIOLOGY_ORGANISMS, singletonList(MicrobiologySubsetOfOrganismsValueSet.class));
-    put(DistributionEntry.PREFERRED_UNITS, singletonList(PreferredUnitsValueSet.class));
-  }};
+  private final SpiaFhirResourceRegistry registry = SpiaFhirResourceRegistry.getDefault();
   private final SpiaDistribution spiaDistribution;
   private final FhirContext fhirContext;
   private final Date publicationDate;
+  private final boolean includeExpansions;
   private Bundle bundle;
 
   public SpiaFhirBundle(FhirContext fhirContext, SpiaDistribution spiaDistribution,
       Date publicationDate)
       throws IOException, ValidationException {
+    this(fhirContext, spiaDistribution, publicationDate, false);
+  }
+
+  /**
+   * @param includeExpansions if true, each ValueSet will include a pre-computed expansion of its
+   * compose
+   */
+  public SpiaFhirBundle(FhirContext fhirContext, SpiaDistribution spiaDistribution,
+      Date publicationDate, boolean includeExpansions)
+      throws IOException, ValidationException {
     this.spiaDistribution = spiaDistribution;
     this.fhirContext = fhirContext;
     this.publicationDate = publicationDate;
+    this.includeExpansions = includeExpansions;
     transform();
   }
 
@@ -83,35 +85,24 @@ public class SpiaFhirBundle {
     Map<DistributionEntry, Refset> refsets = spiaDistribution.getRefsets();
     List<Resource> resources = new ArrayList<>();
 
-    // Build each of the ValueSets and ConceptMaps using the source reference sets.
+    // Build each of the ValueSets and ConceptMaps using the source reference sets, concurrently.
+    List<Supplier<Resource>> tasks = new ArrayList<>();
     for (DistributionEntry entry : refsets.keySet()) {
-      resources.addAll(resourcesToGenerate.get(entry).stream().map(fhirResource -> {
-        try {
-          @SuppressWarnings("unchecked") Method transform = fhirResource
-              .getDeclaredMethod("transform", Refset.class, Date.class);
-          @SuppressWarnings("unchecked") Constructor constructor = fhirResource.getConstructor();
-          SpiaFhirResource fhirResourceInstance = (SpiaFhirResource) constructor.newInstance();
-          return (Resource) transform
-              .invoke(fhirResourceInstance, refsets.get(entry), publicationDate);
-        } catch (InvocationTargetException e) {
-          throw new RuntimeException("Error instantiating reference set parser", e.getCause());
-        } catch (IllegalAccessException | NoSuchMethodException | InstantiationException e) {
-          throw new RuntimeException("Error instantiating reference set parser", e);
-        }
-      }).collect(Collectors.toList()));
+      for (Supplier<? extends SpiaFhirResource> factory : registry.getFactories(entry)) {
+        tasks.add(() -> buildResource(factory.get(), refsets.get(entry), publicationDate,
+            includeExpansions));
+      }
     }
+    resources.addAll(
+        tasks.parallelStream().map(Supplier::get).collect(Collectors.toList()));
 
     // Get supporting terminology resources from the resources directory.
-    try (
-        InputStream designationTypeStream = getClass().getResourceAsStream(
-            "/spia-combining-results-flag.CodeSystem.json")) {
-      CodeSystem combiningResultsFlag = (CodeSystem) fhirContext.newJsonParser()
-          .parseResource(new InputStreamReader(designationTypeStream));
-      resources.add(combiningResultsFlag);
-    }
+    resources.addAll(loadSupportingResources(fhirContext));
 
-    // Add all resources to the Bundle.
+    // Add all resources to the Bundle, recording a hash of the content of each within its
+    // `meta.versionId`.
     for (Resource resource : resources) {
+      ContentHash.apply(fhirContext, resource);
       Bundle.BundleEntryComponent bundleEntry = new Bundle.BundleEntryComponent();
       bundleEntry.setResource(resource);
       bundle.addEntry(bundleEntry);
@@ -121,6 +112,69 @@ public class SpiaFhirBundle {
     bundle.setType(Bundle.BundleType.COLLECTION);
   }
 
+  /**
+   * Builds the ValueSets and ConceptMaps that are sourced from a single reference set, in the
+   * order in which they appear within the Bundle.
+   */
+  public static List<Resource> buildResources(DistributionEntry entry, Refset refset,
+      Date publicationDate, boolean includeExpansions) {
+    List<Resource> resources = new ArrayList<>();
+    for (Supplier<? extends SpiaFhirResource> factory : SpiaFhirResourceRegistry.getDefault()
+        .getFactories(entry)) {
+      resources.add(buildResource(factory.get(), refset, publicationDate, includeExpansions));
+    }
+    return resources;
+  }
+
+  /**
+   * Builds a single one of the ValueSets and ConceptMaps that are sourced from a reference set,
+   * identified by its position within the resources built from that reference set.
+   */
+  public static Resource buildResource(DistributionEntry entry, int index, Refset refset,
+      Date publicationDate, boolean includeExpansions) {
+    SpiaFhirResource fhirResource = SpiaFhirResourceRegistry.getDefault().getFactories(entry)
+        .get(index).get();
+    return buildResource(fhirResource, refset, publicationDate, includeExpansions);
+  }
+
+  private static Resource buildResource(SpiaFhirResource fhirResource, Refset refset,
+      Date publicationDate, boolean includeExpansions) {
+    ResourceTransformEvent event = FlightEvents.AVAILABLE ? new ResourceTransformEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
+    Resource resource = fhirResource.transform(refset, publicationDate);
+    if (event != null) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.transformer = fhirResource.getClass();
+        event.resourceId = resource.getIdElement().getIdPart();
+        event.entries = refset.getRefsetEntries().size();
+        event.commit();
+      }
+    }
+    // Add a pre-computed expansion to the ValueSet, if requested.
+    if (includeExpansions && resource instanceof ValueSet) {
+      SpiaFhirValueSet.addExpansionFromCompose((ValueSet) resource, publicationDate);
+    }
+    return resource;
+  }
+
+  /**
+   * Loads the supporting terminology resources (which are not sourced from the SPIA distribution)
+   * from the resources directory.
+   */
+  public static List<Resource> loadSupportingResources(FhirContext fhirContext)
+      throws IOException {
+    try (
+        InputStream designationTypeStream = SpiaFhirBundle.class.getResourceAsStream(
+            "/spia-combining-results-flag.CodeSystem.json")) {
+      CodeSystem combiningResultsFlag = (CodeSystem) fhirContext.newJsonParser()
+          .parseResource(new InputStreamReader(designationTypeStream));
+      return singletonList(combiningResultsFlag);
+    }
+  }
+
   /**
    * Returns the Bundle resource build using the supplied SPIA distribution.
    */
@@ -16,12 +16,10 @@
 
 package au.csiro.spiatofhir.fhir;
 
-import static org.hl7.fhir.dstu3.model.ContactPoint.ContactPointSystem.EMAIL;
 import static org.hl7.fhir.dstu3.model.Enumerations.PublicationStatus.DRAFT;
-import static org.hl7.fhir.dstu3.model.Narrative.NarrativeStatus.GENERATED;
 
-import au.csiro.spiatofhir.spia.RefsetEntry;
-import au.csiro.spiatofhir.utils.Markdown;
+import au.csiro.spiatofhir.spia.CombiningResultsFlag;
+import au.csiro.spiatofhir.spia.RefsetEntries;
 import java.util.ArrayList;
 import java.util.List;
 import org.hl7.fhir.dstu3.model.*;
@@ -29,8 +27,6 @@ import org.hl7.fhir.dstu3.model.ConceptMap.ConceptMapGroupComponent;
 import org.hl7.fhir.dstu3.model.ConceptMap.SourceElementComponent;
 import org.hl7.fhir.dstu3.model.ConceptMap.TargetElementComponent;
 import org.hl7.fhir.dstu3.model.Enumerations.ConceptMapEquivalence;
-import org.hl7.fhir.utilities.xhtml.NodeType;
-import org.hl7.fhir.utilities.xhtml.XhtmlNode;
 
 /**
  * Common functionality relating to the creation of FHIR ConceptMaps from the SPIA reference sets.
@@ -43,44 +39,15 @@ public abstract class SpiaFhirConceptMap extends SpiaFhirResource {
    * Populates the elements that are common to all ConceptMaps.
    */
   static void addCommonElementsToConceptMap(ConceptMap conceptMap) {
-    Meta meta = new Meta();
-    List<UriType> profile = new ArrayList<>();
-    profile.add(new UriType(
-        "https://healthterminologies.gov.au/fhir/StructureDefinition/general-concept-map-2"));
-    meta.setProfile(profile);
-    conceptMap.setMeta(meta);
-    Narrative text = new Narrative();
-    text.setStatus(GENERATED);
-    XhtmlNode div = new XhtmlNode(NodeType.Element, "div");
-    div.setValueAsString(
-        "<div><h1>" + conceptMap.getTitle() + "</h1>" + Markdown.toHtml(conceptMap.getDescription())
-            + "</div>");
-    text.setDiv(div);
-    conceptMap.setText(text);
+    conceptMap.setMeta(CommonElements.getConceptMapMeta());
+    conceptMap.setText(
+        CommonElements.getNarrative(conceptMap.getTitle(), conceptMap.getDescription()));
     conceptMap.setStatus(DRAFT);
     conceptMap.setExperimental(true);
-    conceptMap.setPublisher("Australian Digital Health Agency");
-    conceptMap.setCopyright(
-        "Copyright © The Royal College of Pathologists of Australasia - All rights reserved. "
-            + "This content is licensed under a Creative Commons Attribution 4.0 International "
-            + "License. See https://creativecommons.org/licenses/by/4.0/.");
-    List<ContactDetail> contact = new ArrayList<>();
-    ContactDetail contactDetail = new ContactDetail();
-    ContactPoint contactPoint = new ContactPoint();
-    contactPoint.setSystem(EMAIL);
-    contactPoint.setValue("help@digitalhealth.gov.au");
-    contactDetail.addTelecom(contactPoint);
-    contact.add(contactDetail);
-    conceptMap.setContact(contact);
-    List<CodeableConcept> jurisdiction = new ArrayList<>();
-    CodeableConcept jurisdictionCodeableConcept = new CodeableConcept();
-    Coding jurisdictionCoding = new Coding();
-    jurisdictionCoding.setSystem("urn:iso:std:iso:3166");
-    jurisdictionCoding.setCode("AU");
-    jurisdictionCoding.setDisplay("Australia");
-    jurisdictionCodeableConcept.addCoding(jurisdictionCoding);
-    jurisdiction.add(jurisdictionCodeableConcept);
-    conceptMap.setJurisdiction(jurisdiction);
+    conceptMap.setPublisher(CommonElements.PUBLISHER);
+    conceptMap.setCopyright(CommonElements.COPYRIGHT);
+    conceptMap.setContact(CommonElements.getContact());
+    conceptMap.setJurisdiction(CommonElements.getJurisdiction());
   }
 
   /**
@@ -88,18 +55,18 @@ public abstract class SpiaFhirConceptMap extends SpiaFhirResource {
    * preferred units.
    */
   static ConceptMap.ConceptMapGroupComponent buildPreferredUnitGroupFromEntries(
-      List<RefsetEntry> refsetEntries) {
+      RefsetEntries refsetEntries) {
     ConceptMap.ConceptMapGroupComponent group = new ConceptMap.ConceptMapGroupComponent();
-    for (RefsetEntry entry : refsetEntries) {
-      assert entry.getCode() != null;
-      if (entry.getUnitCodes().isEmpty()) {
+    for (int entry = 0; entry < refsetEntries.size(); entry++) {
+      assert refsetEntries.getCode(entry) != null;
+      if (refsetEntries.getUnitCodeCount(entry) == 0) {
         continue;
       }
       ConceptMap.SourceElementComponent element = new ConceptMap.SourceElementComponent();
-      element.setCode(entry.getCode());
-      for (String unitCode : entry.getUnitCodes()) {
+      element.setCode(refsetEntries.getCode(entry));
+      for (int i = 0; i < refsetEntries.getUnitCodeCount(entry); i++) {
         ConceptMap.TargetElementComponent target = new ConceptMap.TargetElementComponent();
-        target.setCode(unitCode);
+        target.setCode(refsetEntries.getUnitCode(entry, i));
         target.setEquivalence(Enumerations.ConceptMapEquivalence.RELATEDTO);
         element.getTarget().add(target);
       }
@@ -113,17 +80,18 @@ public abstract class SpiaFhirConceptMap extends SpiaFhirResource {
    * combining results flags.
    */
   static ConceptMapGroupComponent buildCombiningResultsFlagsGroupFromEntries(
-      List<RefsetEntry> refsetEntries) {
+      RefsetEntries refsetEntries) {
     ConceptMapGroupComponent group = new ConceptMapGroupComponent();
-    for (RefsetEntry entry : refsetEntries) {
-      assert entry.getCode() != null;
-      if (entry.getCombiningResultsFlag() == null) {
+    for (int entry = 0; entry < refsetEntries.size(); entry++) {
+      assert refsetEntries.getCode(entry) != null;
+      CombiningResultsFlag combiningResultsFlag = refsetEntries.getCombiningResultsFlag(entry);
+      if (combiningResultsFlag == null) {
         continue;
       }
       SourceElementComponent element = new SourceElementComponent();
-      element.setCode(entry.getCode());
+      element.setCode(refsetEntries.getCode(entry));
       TargetElementComponent target = new TargetElementComponent();
-      target.setCode(entry.getCombiningResultsFlag().getCode());
+      target.setCode(combiningResultsFlag.getCode());
       target.setEquivalence(ConceptMapEquivalence.RELATEDTO);
       element.getTarget().add(target);
       group.getElement().add(element);
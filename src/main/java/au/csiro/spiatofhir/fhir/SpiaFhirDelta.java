@@ -0,0 +1,276 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import ca.uhn.fhir.context.FhirContext;
+import java.util.*;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.dstu3.model.Bundle.HTTPVerb;
+import org.hl7.fhir.dstu3.model.CodeSystem;
+import org.hl7.fhir.dstu3.model.CodeSystem.ConceptDefinitionComponent;
+import org.hl7.fhir.dstu3.model.ConceptMap;
+import org.hl7.fhir.dstu3.model.ConceptMap.ConceptMapGroupComponent;
+import org.hl7.fhir.dstu3.model.ConceptMap.SourceElementComponent;
+import org.hl7.fhir.dstu3.model.ConceptMap.TargetElementComponent;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.hl7.fhir.dstu3.model.ValueSet;
+import org.hl7.fhir.dstu3.model.ValueSet.ConceptReferenceComponent;
+import org.hl7.fhir.dstu3.model.ValueSet.ConceptReferenceDesignationComponent;
+import org.hl7.fhir.dstu3.model.ValueSet.ConceptSetComponent;
+
+/**
+ * Compares a newly built Bundle against the Bundle produced by a previous release, producing a
+ * FHIR transaction Bundle containing only the resources that have changed or been removed, along
+ * with a summary of the codes that were added, removed or remapped within each resource.
+ *
+ * @author John Grimes
+ */
+public class SpiaFhirDelta {
+
+  private final FhirContext fhirContext;
+  private final Bundle previousBundle;
+  private final Bundle currentBundle;
+  private final List<ResourceChanges> changes = new ArrayList<>();
+  private Bundle transaction;
+
+  public SpiaFhirDelta(FhirContext fhirContext, Bundle previousBundle, Bundle currentBundle) {
+    this.fhirContext = fhirContext;
+    this.previousBundle = previousBundle;
+    this.currentBundle = currentBundle;
+    compare();
+  }
+
+  private void compare() {
+    Map<String, Resource> previousResources = indexResources(previousBundle);
+    transaction = new Bundle();
+    transaction.setType(Bundle.BundleType.TRANSACTION);
+
+    for (BundleEntryComponent entry : currentBundle.getEntry()) {
+      Resource current = entry.getResource();
+      Resource previous = previousResources.remove(keyFor(current));
+      if (previous != null && hashOf(previous).equals(hashOf(current))) {
+        continue;
+      }
+
+      // Add the changed resource to the transaction, as a PUT to its generated id.
+      String url = keyFor(current);
+      BundleEntryComponent transactionEntry = new BundleEntryComponent();
+      transactionEntry.setFullUrl(url);
+      transactionEntry.setResource(current);
+      transactionEntry.getRequest().setMethod(HTTPVerb.PUT).setUrl(url);
+      transaction.addEntry(transactionEntry);
+
+      changes.add(new ResourceChanges(url, previous == null, false, codesOf(previous),
+          codesOf(current)));
+    }
+
+    // Any resources left over were present in the previous release but not in this one, so they
+    // are deleted.
+    for (Map.Entry<String, Resource> removed : previousResources.entrySet()) {
+      String url = removed.getKey();
+      BundleEntryComponent transactionEntry = new BundleEntryComponent();
+      transactionEntry.getRequest().setMethod(HTTPVerb.DELETE).setUrl(url);
+      transaction.addEntry(transactionEntry);
+
+      changes.add(new ResourceChanges(url, false, true, codesOf(removed.getValue()),
+          codesOf(null)));
+    }
+  }
+
+  /**
+   * Returns the transaction Bundle containing only the resources that differ from the previous
+   * Bundle.
+   */
+  public Bundle getTransaction() {
+    return transaction;
+  }
+
+  /**
+   * Returns a summary of the codes added, removed and remapped within each changed resource.
+   */
+  public List<ResourceChanges> getChanges() {
+    return changes;
+  }
+
+  /**
+   * Renders the change summary as plain text, one section per changed resource.
+   */
+  public String getSummary() {
+    StringBuilder summary = new StringBuilder();
+    if (changes.isEmpty()) {
+      summary.append("No resources changed.\n");
+    }
+    for (ResourceChanges resourceChanges : changes) {
+      summary.append(resourceChanges.getUrl());
+      if (resourceChanges.isNewResource()) {
+        summary.append(" (new resource)");
+      } else if (resourceChanges.isRemovedResource()) {
+        summary.append(" (removed resource)");
+      }
+      summary.append(": ").append(resourceChanges.getAdded().size()).append(" added, ")
+          .append(resourceChanges.getRemoved().size()).append(" removed, ")
+          .append(resourceChanges.getRemapped().size()).append(" remapped\n");
+      for (String code : resourceChanges.getAdded()) {
+        summary.append("  + ").append(code).append("\n");
+      }
+      for (String code : resourceChanges.getRemoved()) {
+        summary.append("  - ").append(code).append("\n");
+      }
+      for (String code : resourceChanges.getRemapped()) {
+        summary.append("  ~ ").append(code).append("\n");
+      }
+    }
+    return summary.toString();
+  }
+
+  private Map<String, Resource> indexResources(Bundle bundle) {
+    Map<String, Resource> index = new LinkedHashMap<>();
+    for (BundleEntryComponent entry : bundle.getEntry()) {
+      if (entry.hasResource()) {
+        index.put(keyFor(entry.getResource()), entry.getResource());
+      }
+    }
+    return index;
+  }
+
+  private static String keyFor(Resource resource) {
+    return resource.getResourceType().name() + "/" + resource.getIdElement().getIdPart();
+  }
+
+  /**
+   * Computes the content hash rather than relying on `meta.versionId`, so that Bundles produced
+   * before the publication date was excluded from the hash can still be compared.
+   */
+  private String hashOf(Resource resource) {
+    return ContentHash.compute(fhirContext, resource);
+  }
+
+  /**
+   * Builds a sorted map of each code within the resource to a string representing what it maps
+   * to: the display and designations for ValueSets and CodeSystems, and the target codes for
+   * ConceptMaps.
+   */
+  private static SortedMap<String, String> codesOf(Resource resource) {
+    SortedMap<String, String> codes = new TreeMap<>();
+    if (resource instanceof ValueSet) {
+      for (ConceptSetComponent include : ((ValueSet) resource).getCompose().getInclude()) {
+        for (ConceptReferenceComponent concept : include.getConcept()) {
+          StringBuilder mapping = new StringBuilder(String.valueOf(concept.getDisplay()));
+          for (ConceptReferenceDesignationComponent designation : concept.getDesignation()) {
+            mapping.append("|").append(designation.getValue());
+          }
+          codes.put(include.getSystem() + "|" + concept.getCode(), mapping.toString());
+        }
+      }
+    } else if (resource instanceof ConceptMap) {
+      for (ConceptMapGroupComponent group : ((ConceptMap) resource).getGroup()) {
+        for (SourceElementComponent element : group.getElement()) {
+          StringBuilder mapping = new StringBuilder();
+          for (TargetElementComponent target : element.getTarget()) {
+            mapping.append(group.getTarget()).append("|").append(target.getCode()).append(" ");
+          }
+          codes.put(group.getSource() + "|" + element.getCode(), mapping.toString());
+        }
+      }
+    } else if (resource instanceof CodeSystem) {
+      addCodeSystemConcepts(((CodeSystem) resource).getConcept(), codes);
+    }
+    return codes;
+  }
+
+  private static void addCodeSystemConcepts(List<ConceptDefinitionComponent> concepts,
+      SortedMap<String, String> codes) {
+    for (ConceptDefinitionComponent concept : concepts) {
+      codes.put(concept.getCode(), String.valueOf(concept.getDisplay()));
+      addCodeSystemConcepts(concept.getConcept(), codes);
+    }
+  }
+
+  /**
+   * The codes that were added, removed or remapped within a single resource.
+   */
+  public static class ResourceChanges {
+
+    private final String url;
+    private final boolean newResource;
+    private final boolean removedResource;
+    private final List<String> added = new ArrayList<>();
+    private final List<String> removed = new ArrayList<>();
+    private final List<String> remapped = new ArrayList<>();
+
+    ResourceChanges(String url, boolean newResource, boolean removedResource,
+        SortedMap<String, String> previous, SortedMap<String, String> current) {
+      this.url = url;
+      this.newResource = newResource;
+      this.removedResource = removedResource;
+      merge(previous, current);
+    }
+
+    /**
+     * Walks both sorted code lists in step, classifying each code as it goes.
+     */
+    private void merge(SortedMap<String, String> previous, SortedMap<String, String> current) {
+      Iterator<Map.Entry<String, String>> previousIterator = previous.entrySet().iterator();
+      Iterator<Map.Entry<String, String>> currentIterator = current.entrySet().iterator();
+      Map.Entry<String, String> p = previousIterator.hasNext() ? previousIterator.next() : null;
+      Map.Entry<String, String> c = currentIterator.hasNext() ? currentIterator.next() : null;
+      while (p != null || c != null) {
+        int comparison = p == null ? 1 : c == null ? -1 : p.getKey().compareTo(c.getKey());
+        if (comparison < 0) {
+          removed.add(p.getKey());
+          p = previousIterator.hasNext() ? previousIterator.next() : null;
+        } else if (comparison > 0) {
+          added.add(c.getKey());
+          c = currentIterator.hasNext() ? currentIterator.next() : null;
+        } else {
+          if (!p.getValue().equals(c.getValue())) {
+            remapped.add(c.getKey());
+          }
+          p = previousIterator.hasNext() ? previousIterator.next() : null;
+          c = currentIterator.hasNext() ? currentIterator.next() : null;
+        }
+      }
+    }
+
+    public String getUrl() {
+      return url;
+    }
+
+    public boolean isNewResource() {
+      return newResource;
+    }
+
+    public boolean isRemovedResource() {
+      return removedResource;
+    }
+
+    public List<String> getAdded() {
+      return added;
+    }
+
+    public List<String> getRemoved() {
+      return removed;
+    }
+
+    public List<String> getRemapped() {
+      return remapped;
+    }
+
+  }
+
+}
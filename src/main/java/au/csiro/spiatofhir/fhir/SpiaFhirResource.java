@@ -25,8 +25,9 @@ import org.hl7.fhir.dstu3.model.Resource;
  */
 public abstract class SpiaFhirResource {
 
-  public Resource transform(Refset refset, Date publicationDate) {
-    return null;
-  }
+  /**
+   * Builds the FHIR resource from the supplied reference set.
+   */
+  public abstract Resource transform(Refset refset, Date publicationDate);
 
 }
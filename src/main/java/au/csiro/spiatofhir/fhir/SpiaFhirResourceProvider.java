@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+/**
+ * A source of FHIR resources that can be built from the SPIA reference sets. Implementations are
+ * discovered using {@link java.util.ServiceLoader}, and are listed within
+ * `META-INF/services/au.csiro.spiatofhir.fhir.SpiaFhirResourceProvider`.
+ *
+ * @author John Grimes
+ */
+public interface SpiaFhirResourceProvider {
+
+  /**
+   * Registers a factory for each of the resources provided, against the reference set that it is
+   * built from.
+   */
+  void registerResources(SpiaFhirResourceRegistry registry);
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A registry of the factories for each of the FHIR resources that are built from each SPIA
+ * reference set, populated from each {@link SpiaFhirResourceProvider} on the class path.
+ * <p>
+ * The order in which resources are registered determines their order within the Bundle: by
+ * reference set, then by order of registration.
+ *
+ * @author John Grimes
+ */
+public class SpiaFhirResourceRegistry {
+
+  private static volatile SpiaFhirResourceRegistry defaultRegistry;
+  private final Map<DistributionEntry, List<Supplier<? extends SpiaFhirResource>>> factories =
+      new EnumMap<>(DistributionEntry.class);
+  private final Map<DistributionEntry, List<String>> ids = new EnumMap<>(DistributionEntry.class);
+
+  public SpiaFhirResourceRegistry() {
+    for (DistributionEntry entry : DistributionEntry.values()) {
+      factories.put(entry, new ArrayList<>());
+      ids.put(entry, new ArrayList<>());
+    }
+  }
+
+  /**
+   * Returns a registry populated from the providers on the class path, which is created on first
+   * use and then shared.
+   */
+  public static SpiaFhirResourceRegistry getDefault() {
+    if (defaultRegistry == null) {
+      synchronized (SpiaFhirResourceRegistry.class) {
+        if (defaultRegistry == null) {
+          SpiaFhirResourceRegistry registry = new SpiaFhirResourceRegistry();
+          for (SpiaFhirResourceProvider provider : ServiceLoader
+              .load(SpiaFhirResourceProvider.class, SpiaFhirResourceRegistry.class
+                  .getClassLoader())) {
+            provider.registerResources(registry);
+          }
+          defaultRegistry = registry;
+        }
+      }
+    }
+    return defaultRegistry;
+  }
+
+  public void register(DistributionEntry entry, Supplier<? extends SpiaFhirResource> factory) {
+    register(entry, null, factory);
+  }
+
+  /**
+   * Registers a factory along with the id of the resource that it builds, which allows the
+   * resource to be selected without building the others. Resources registered without an id are
+   * only built when all resources are requested.
+   */
+  public void register(DistributionEntry entry, String id,
+      Supplier<? extends SpiaFhirResource> factory) {
+    factories.get(entry).add(factory);
+    ids.get(entry).add(id);
+  }
+
+  /**
+   * Returns the factories for the resources built from the specified reference set, in Bundle
+   * order.
+   */
+  public List<Supplier<? extends SpiaFhirResource>> getFactories(DistributionEntry entry) {
+    return Collections.unmodifiableList(factories.get(entry));
+  }
+
+  /**
+   * Returns the ids of the resources built from the specified reference set, in the same order as
+   * their factories. The id will be null for any resource that was registered without one.
+   */
+  public List<String> getIds(DistributionEntry entry) {
+    return Collections.unmodifiableList(ids.get(entry));
+  }
+
+  /**
+   * Returns the reference sets that need to be parsed to build the resources with the specified
+   * ids. Ids that are not registered are ignored.
+   */
+  public Set<DistributionEntry> getEntries(Collection<String> resourceIds) {
+    Set<DistributionEntry> entries = EnumSet.noneOf(DistributionEntry.class);
+    for (DistributionEntry entry : DistributionEntry.values()) {
+      for (String id : ids.get(entry)) {
+        if (id != null && resourceIds.contains(id)) {
+          entries.add(entry);
+        }
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Returns the position within the Bundle of the first resource built from the specified
+   * reference set, assuming that all reference sets are present.
+   */
+  public int getOffset(DistributionEntry entry) {
+    int offset = 0;
+    for (DistributionEntry precedingEntry : factories.keySet()) {
+      if (precedingEntry == entry) {
+        break;
+      }
+      offset += factories.get(precedingEntry).size();
+    }
+    return offset;
+  }
+
+  /**
+   * Returns the total number of resources built from all reference sets.
+   */
+  public int getCount() {
+    return factories.values().stream().mapToInt(List::size).sum();
+  }
+
+}
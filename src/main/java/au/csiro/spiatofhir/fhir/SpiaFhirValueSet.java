@@ -16,18 +16,16 @@
 
 package au.csiro.spiatofhir.fhir;
 
-import static org.hl7.fhir.dstu3.model.ContactPoint.ContactPointSystem.EMAIL;
 import static org.hl7.fhir.dstu3.model.Enumerations.PublicationStatus.DRAFT;
-import static org.hl7.fhir.dstu3.model.Narrative.NarrativeStatus.GENERATED;
 
 import au.csiro.spiatofhir.snomed.SnomedCt;
-import au.csiro.spiatofhir.spia.RefsetEntry;
-import au.csiro.spiatofhir.utils.Markdown;
+import au.csiro.spiatofhir.spia.RefsetEntries;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 import org.hl7.fhir.dstu3.model.*;
-import org.hl7.fhir.utilities.xhtml.NodeType;
-import org.hl7.fhir.utilities.xhtml.XhtmlNode;
 
 /**
  * Common functionality relating to the creation of FHIR ValueSets from the SPIA reference sets.
@@ -40,71 +38,41 @@ public abstract class SpiaFhirValueSet extends SpiaFhirResource {
    * Populates the elements that are common to all ValueSets.
    */
   static void addCommonElementsToValueSet(ValueSet valueSet) {
-    Meta meta = new Meta();
-    List<UriType> profile = new ArrayList<>();
-    profile.add(new UriType("http://hl7.org/fhir/StructureDefinition/shareablevalueset"));
-    profile.add(new UriType(
-        "https://healthterminologies.gov.au/fhir/StructureDefinition/composed-value-set-2"));
-    meta.setProfile(profile);
-    valueSet.setMeta(meta);
-    Narrative text = new Narrative();
-    text.setStatus(GENERATED);
-    XhtmlNode div = new XhtmlNode(NodeType.Element, "div");
-    div.setValueAsString(
-        "<div><h1>" + valueSet.getTitle() + "</h1>" + Markdown.toHtml(valueSet.getDescription())
-            + "</div>");
-    text.setDiv(div);
-    valueSet.setText(text);
+    valueSet.setMeta(CommonElements.getValueSetMeta());
+    valueSet.setText(
+        CommonElements.getNarrative(valueSet.getTitle(), valueSet.getDescription()));
     valueSet.setStatus(DRAFT);
     valueSet.setExperimental(true);
-    valueSet.setPublisher("Australian Digital Health Agency");
-    valueSet.setCopyright(
-        "Copyright © The Royal College of Pathologists of Australasia - All rights reserved. "
-            + "This content is licensed under a Creative Commons Attribution 4.0 International "
-            + "License. See https://creativecommons.org/licenses/by/4.0/.");
-    List<ContactDetail> contact = new ArrayList<>();
-    ContactDetail contactDetail = new ContactDetail();
-    ContactPoint contactPoint = new ContactPoint();
-    contactPoint.setSystem(EMAIL);
-    contactPoint.setValue("help@digitalhealth.gov.au");
-    contactDetail.addTelecom(contactPoint);
-    contact.add(contactDetail);
-    valueSet.setContact(contact);
-    List<CodeableConcept> jurisdiction = new ArrayList<>();
-    CodeableConcept jurisdictionCodeableConcept = new CodeableConcept();
-    Coding jurisdictionCoding = new Coding();
-    jurisdictionCoding.setSystem("urn:iso:std:iso:3166");
-    jurisdictionCoding.setCode("AU");
-    jurisdictionCoding.setDisplay("Australia");
-    jurisdictionCodeableConcept.addCoding(jurisdictionCoding);
-    jurisdiction.add(jurisdictionCodeableConcept);
-    valueSet.setJurisdiction(jurisdiction);
+    valueSet.setPublisher(CommonElements.PUBLISHER);
+    valueSet.setCopyright(CommonElements.COPYRIGHT);
+    valueSet.setContact(CommonElements.getContact());
+    valueSet.setJurisdiction(CommonElements.getJurisdiction());
   }
 
   /**
    * Builds the compose element of a ValueSet, using a list of reference set entries.
    */
-  static ValueSet.ValueSetComposeComponent buildComposeFromEntries(List<RefsetEntry> refsetEntries,
+  static ValueSet.ValueSetComposeComponent buildComposeFromEntries(RefsetEntries refsetEntries,
       String system) {
     ValueSet.ValueSetComposeComponent compose = new ValueSet.ValueSetComposeComponent();
     List<ValueSet.ConceptSetComponent> include = new ArrayList<>();
     ValueSet.ConceptSetComponent includeEntry = new ValueSet.ConceptSetComponent();
     List<ValueSet.ConceptReferenceComponent> concept = new ArrayList<>();
 
-    for (RefsetEntry entry : refsetEntries) {
-      if (entry.getCode() != null) {
+    for (int entry = 0; entry < refsetEntries.size(); entry++) {
+      if (refsetEntries.getCode(entry) != null) {
         includeEntry.setSystem(system);
         ValueSet.ConceptReferenceComponent conceptEntry = new ValueSet.ConceptReferenceComponent();
-        conceptEntry.setCode(entry.getCode());
+        conceptEntry.setCode(refsetEntries.getCode(entry));
         // RCPA preferred term is used as the display term within the ValueSet definition.
         // See: https://www.hl7.org/fhir/STU3/valueset-definitions.html#ValueSet.compose.include.concept.display
-        conceptEntry.setDisplay(entry.getRcpaPreferredTerm());
+        conceptEntry.setDisplay(refsetEntries.getRcpaPreferredTerm(entry));
 
         // RCPA synonyms are added as designations, coded with the SNOMED code 900000000000013009|Synonym.
         // See: https://www.hl7.org/fhir/STU3/valueset-definitions.html#ValueSet.compose.include.concept.designation
-        if (!entry.getRcpaSynonyms().isEmpty()) {
+        if (refsetEntries.getRcpaSynonymCount(entry) > 0) {
           List<ValueSet.ConceptReferenceDesignationComponent> designation = new ArrayList<>(
-              buildSynonymDesignations(entry));
+              buildSynonymDesignations(refsetEntries, entry));
           conceptEntry.setDesignation(designation);
         }
         concept.add(conceptEntry);
@@ -118,15 +86,15 @@ public abstract class SpiaFhirValueSet extends SpiaFhirResource {
   }
 
   /**
-   * Builds a designation element for a synonym.
+   * Builds a designation element for each of the synonyms of an entry.
    */
   static List<ValueSet.ConceptReferenceDesignationComponent> buildSynonymDesignations(
-      RefsetEntry entry) {
+      RefsetEntries refsetEntries, int entry) {
     List<ValueSet.ConceptReferenceDesignationComponent> designationEntries = new ArrayList<>();
-    for (String rcpaSynonym : entry.getRcpaSynonyms()) {
+    for (int i = 0; i < refsetEntries.getRcpaSynonymCount(entry); i++) {
       ValueSet.ConceptReferenceDesignationComponent designationEntry =
           new ValueSet.ConceptReferenceDesignationComponent();
-      designationEntry.setValue(rcpaSynonym);
+      designationEntry.setValue(refsetEntries.getRcpaSynonym(entry, i));
       Coding designationUse = new Coding(
           SnomedCt.SYSTEM_URI,
           "900000000000013009",
@@ -137,4 +105,34 @@ public abstract class SpiaFhirValueSet extends SpiaFhirResource {
     return designationEntries;
   }
 
+  /**
+   * Populates the expansion element of a ValueSet from the concepts within its compose, so that
+   * clients and servers can use the ValueSet without needing to expand it at runtime. The
+   * publication date is used as the timestamp, and the identifier is derived from the canonical
+   * URL and version, so that the expansion is stable between runs.
+   */
+  static void addExpansionFromCompose(ValueSet valueSet, Date timestamp) {
+    ValueSet.ValueSetExpansionComponent expansion = new ValueSet.ValueSetExpansionComponent();
+    String identifierSeed = valueSet.getUrl() + "|" + valueSet.getVersion();
+    expansion.setIdentifier(
+        "urn:uuid:" + UUID.nameUUIDFromBytes(identifierSeed.getBytes(StandardCharsets.UTF_8)));
+    expansion.setTimestamp(timestamp);
+    for (ValueSet.ConceptSetComponent include : valueSet.getCompose().getInclude()) {
+      for (ValueSet.ConceptReferenceComponent concept : include.getConcept()) {
+        ValueSet.ValueSetExpansionContainsComponent contains = expansion.addContains();
+        contains.setSystem(include.getSystem());
+        contains.setVersion(include.getVersion());
+        contains.setCode(concept.getCode());
+        contains.setDisplay(concept.getDisplay());
+        for (ValueSet.ConceptReferenceDesignationComponent designation : concept
+            .getDesignation()) {
+          contains.addDesignation(designation.copy());
+        }
+      }
+    }
+    expansion.setTotal(expansion.getContains().size());
+    expansion.setOffset(0);
+    valueSet.setExpansion(expansion);
+  }
+
 }
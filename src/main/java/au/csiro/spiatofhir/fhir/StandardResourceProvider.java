@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.CHEMICAL;
+import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.HAEMATOLOGY;
+import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.IMMUNOPATHOLOGY;
+import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.MICROBIOLOGY_ORGANISMS;
+import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.MICROBIOLOGY_SEROLOGY_MOLECULAR;
+import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.PREFERRED_UNITS;
+import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.REQUESTING;
+
+/**
+ * Provides the ValueSets and ConceptMaps that make up the standard SPIA FHIR Bundle.
+ *
+ * @author John Grimes
+ */
+public class StandardResourceProvider implements SpiaFhirResourceProvider {
+
+  @Override
+  public void registerResources(SpiaFhirResourceRegistry registry) {
+    registry.register(REQUESTING, "spia-requesting-refset-2", RequestingValueSet::new);
+    registry.register(CHEMICAL, "spia-chemical-pathology-refset-2", ChemicalPathologyValueSet::new);
+    registry.register(CHEMICAL, "spia-chemical-pathology-unit-map-1",
+        ChemicalPathologyUnitMap::new);
+    registry.register(CHEMICAL, "spia-chemical-combining-results-map-1",
+        ChemicalCombiningResultsMap::new);
+    registry.register(HAEMATOLOGY, "spia-haematology-refset-2", HaematologyValueSet::new);
+    registry.register(HAEMATOLOGY, "spia-haematology-unit-map-1", HaematologyUnitMap::new);
+    registry.register(IMMUNOPATHOLOGY, "spia-immunopathology-refset-2",
+        ImmunopathologyValueSet::new);
+    registry.register(IMMUNOPATHOLOGY, "spia-immunopathology-unit-map-1",
+        ImmunopathologyUnitMap::new);
+    registry.register(MICROBIOLOGY_SEROLOGY_MOLECULAR,
+        "spia-microbiology-serology-molecular-refset-2",
+        MicrobiologySerologyMolecularValueSet::new);
+    registry.register(MICROBIOLOGY_SEROLOGY_MOLECULAR, "spia-microbiology-unit-map-1",
+        MicrobiologySerologyMolecularUnitMap::new);
+    registry.register(MICROBIOLOGY_ORGANISMS, "spia-microbiology-organisms-refset-2",
+        MicrobiologySubsetOfOrganismsValueSet::new);
+    registry.register(PREFERRED_UNITS, "spia-preferred-units-refset-2",
+        PreferredUnitsValueSet::new);
+  }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import au.csiro.spiatofhir.instrumentation.CacheCounts;
+import au.csiro.spiatofhir.instrumentation.FlightEvents;
+import au.csiro.spiatofhir.instrumentation.TerminologyLookupEvent;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import org.hl7.fhir.dstu3.model.CodeType;
+import org.hl7.fhir.dstu3.model.Parameters;
+import org.hl7.fhir.dstu3.model.UriType;
+
+/**
+ * Caches the results of `$lookup` requests made to a terminology server, so that codes which
+ * repeat across reference sets, runs and releases are only looked up once.
+ * <p>
+ * Cached results are shared, and must be treated as read-only by callers.
+ *
+ * @author John Grimes
+ */
+public class TerminologyLookupCache {
+
+  private final Map<String, FutureTask<Parameters>> results = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private volatile BiConsumer<String, Parameters> journal;
+
+  /**
+   * Returns a client which delegates to the supplied client, using this cache for lookups.
+   */
+  public TerminologyClient wrap(TerminologyClient client) {
+    return wrap(client, null);
+  }
+
+  /**
+   * Returns a client which delegates to the supplied client, using this cache for lookups. The
+   * hits and misses of the lookups made through the client are also added to the supplied counts.
+   */
+  public TerminologyClient wrap(TerminologyClient client, CacheCounts counts) {
+    InvocationHandler handler = new CachingHandler(client, counts);
+    return (TerminologyClient) Proxy.newProxyInstance(TerminologyClient.class.getClassLoader(),
+        new Class<?>[]{TerminologyClient.class}, handler);
+  }
+
+  /**
+   * Returns the cached result of looking up the code, or performs the lookup using the supplied
+   * client and caches the result. Concurrent lookups of the same code will wait for the first
+   * one to complete, rather than each making a request.
+   */
+  public Parameters lookup(TerminologyClient client, UriType system, CodeType code,
+      List<CodeType> property) {
+    return lookup(client, system, code, property, null);
+  }
+
+  private Parameters lookup(TerminologyClient client, UriType system, CodeType code,
+      List<CodeType> property, CacheCounts counts) {
+    TerminologyLookupEvent event = FlightEvents.AVAILABLE ? new TerminologyLookupEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
+    boolean cacheHit = false;
+    String outcome = null;
+    String key = keyFor(system, code, property);
+    FutureTask<Parameters> result = results.get(key);
+    boolean performed = false;
+    if (result == null) {
+      FutureTask<Parameters> task = new FutureTask<>(() -> client.lookup(system, code, property));
+      result = results.putIfAbsent(key, task);
+      if (result == null) {
+        result = task;
+        task.run();
+        performed = true;
+      } else {
+        cacheHit = true;
+      }
+    } else {
+      cacheHit = true;
+    }
+    if (cacheHit) {
+      hits.incrementAndGet();
+      if (counts != null) {
+        counts.recordHit();
+      }
+    } else {
+      misses.incrementAndGet();
+      if (counts != null) {
+        counts.recordMiss();
+      }
+    }
+    try {
+      Parameters parameters = result.get();
+      outcome = "success";
+      BiConsumer<String, Parameters> journal = this.journal;
+      if (performed && journal != null) {
+        journal.accept(key, parameters);
+      }
+      return parameters;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      outcome = "interrupted";
+      throw new RuntimeException("Interrupted while waiting for lookup", e);
+    } catch (ExecutionException e) {
+      outcome = String.valueOf(e.getCause().getMessage());
+      // Don't cache failures, so that the lookup can be retried.
+      results.remove(key, result);
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      if (event != null) {
+        event.end();
+        if (event.shouldCommit()) {
+          event.system = system.getValue();
+          event.code = code.getValue();
+          event.cacheHit = cacheHit;
+          event.outcome = outcome;
+          event.commit();
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets a consumer that will be called with the key and result of each successful lookup that is
+   * made against the server, so that the results can be persisted. Lookups that are answered by
+   * the cache are not passed to the journal. Pass null to stop journaling.
+   */
+  public void setJournal(BiConsumer<String, Parameters> journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Adds a result that was previously passed to a journal, so that the lookup will not need to be
+   * made against the server again. Results that are already within the cache are kept.
+   */
+  public void restore(String key, Parameters result) {
+    FutureTask<Parameters> task = new FutureTask<>(() -> result);
+    task.run();
+    results.putIfAbsent(key, task);
+  }
+
+  private static String keyFor(UriType system, CodeType code, List<CodeType> property) {
+    StringBuilder key = new StringBuilder();
+    key.append(system.getValue()).append("|").append(code.getValue());
+    if (property != null) {
+      for (CodeType propertyCode : property) {
+        key.append("|").append(propertyCode.getValue());
+      }
+    }
+    return key.toString();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public int size() {
+    return results.size();
+  }
+
+  private class CachingHandler implements InvocationHandler {
+
+    private final TerminologyClient delegate;
+    private final CacheCounts counts;
+
+    private CachingHandler(TerminologyClient delegate, CacheCounts counts) {
+      this.delegate = delegate;
+      this.counts = counts;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getName().equals("lookup") && args != null && args.length == 3) {
+        return TerminologyLookupCache.this.lookup(delegate, (UriType) args[0], (CodeType) args[1],
+            (List<CodeType>) args[2], counts);
+      }
+      try {
+        return method.invoke(delegate, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.instrumentation;
+
+/**
+ * Determines whether the custom flight recorder events can be used within this runtime.
+ * <p>
+ * The event classes extend `jdk.jfr.Event`, which is not present within Java 8 runtimes that lack
+ * the flight recorder backport. Code that records events must check {@link #AVAILABLE} before
+ * creating them, so that the event classes are never loaded where they cannot be.
+ *
+ * @author John Grimes
+ */
+public abstract class FlightEvents {
+
+  /**
+   * True if the flight recorder is present within this runtime and available for use.
+   */
+  public static final boolean AVAILABLE = isAvailable();
+
+  private static boolean isAvailable() {
+    // The flight recorder is looked up reflectively, so that this class can be loaded without it.
+    try {
+      return (Boolean) Class.forName("jdk.jfr.FlightRecorder").getMethod("isAvailable")
+          .invoke(null);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return false;
+    }
+  }
+
+}
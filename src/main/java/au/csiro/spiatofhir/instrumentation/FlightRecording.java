@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.instrumentation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Java Flight Recorder recording of a transform, using the default (low overhead) settings along
+ * with the custom events for lookups, rows and resources. The recording is written to the
+ * destination when it is closed.
+ *
+ * @author John Grimes
+ */
+public class FlightRecording implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(FlightRecording.class);
+  private final Recording recording;
+  private final Path destination;
+
+  private FlightRecording(Recording recording, Path destination) {
+    this.recording = recording;
+    this.destination = destination;
+  }
+
+  public static FlightRecording start(Path destination) throws IOException {
+    if (!FlightEvents.AVAILABLE) {
+      throw new IOException("Java Flight Recorder is not available within this runtime");
+    }
+    Recording recording;
+    try {
+      recording = new Recording(Configuration.getConfiguration("default"));
+    } catch (ParseException e) {
+      throw new IOException("Unable to read default flight recorder configuration", e);
+    }
+    recording.setName("spia-to-fhir");
+    recording.enable(TerminologyLookupEvent.class);
+    recording.enable(RowParseEvent.class);
+    recording.enable(ResourceTransformEvent.class);
+    recording.start();
+    return new FlightRecording(recording, destination);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      recording.stop();
+      recording.dump(destination);
+      logger.info("Flight recording written to " + destination);
+    } finally {
+      recording.close();
+    }
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.instrumentation;
+
+/**
+ * Accumulates the time and memory used by one phase of the transform, across any number of
+ * invocations and threads.
+ *
+ * @author John Grimes
+ */
+public class PhaseMetrics {
+
+  private long invocations;
+  private long items;
+  private long wallNanos;
+  private long cpuNanos;
+  private long allocatedBytes;
+
+  /**
+   * Adds the usage of the current thread between the supplied snapshot and now.
+   *
+   * @param items the number of items (e.g. rows) processed
+   */
+  public void addSince(ThreadUsage start, long items) {
+    add(start, ThreadUsage.now(), items);
+  }
+
+  public synchronized void add(ThreadUsage start, ThreadUsage end, long items) {
+    invocations++;
+    this.items += items;
+    wallNanos += end.getWallNanos() - start.getWallNanos();
+    cpuNanos += end.getCpuNanos() - start.getCpuNanos();
+    allocatedBytes += end.getAllocatedBytes() - start.getAllocatedBytes();
+  }
+
+  public synchronized void add(PhaseMetrics other) {
+    invocations += other.invocations;
+    items += other.items;
+    wallNanos += other.wallNanos;
+    cpuNanos += other.cpuNanos;
+    allocatedBytes += other.allocatedBytes;
+  }
+
+  /**
+   * Returns a copy of these metrics, less those of the supplied metrics.
+   */
+  public synchronized PhaseMetrics minus(PhaseMetrics other) {
+    PhaseMetrics result = new PhaseMetrics();
+    result.invocations = invocations;
+    result.items = items;
+    result.wallNanos = wallNanos - other.wallNanos;
+    result.cpuNanos = cpuNanos - other.cpuNanos;
+    result.allocatedBytes = allocatedBytes - other.allocatedBytes;
+    return result;
+  }
+
+  public synchronized long getInvocations() {
+    return invocations;
+  }
+
+  public synchronized long getItems() {
+    return items;
+  }
+
+  public synchronized long getWallNanos() {
+    return wallNanos;
+  }
+
+  public synchronized long getCpuNanos() {
+    return cpuNanos;
+  }
+
+  public synchronized long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Returns the number of items processed per second of wall clock time.
+   */
+  public synchronized double getItemsPerSecond() {
+    return wallNanos == 0 ? 0 : items / (wallNanos / 1e9);
+  }
+
+}
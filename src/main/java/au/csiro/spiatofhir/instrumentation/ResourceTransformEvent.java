@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for the building of a FHIR resource from a reference set.
+ *
+ * @author John Grimes
+ */
+@Name("au.csiro.spiatofhir.ResourceTransform")
+@Label("Resource Transform")
+@Category({"SPIA to FHIR", "Building"})
+@Description("The building of a ValueSet or ConceptMap from a reference set")
+@StackTrace(false)
+public class ResourceTransformEvent extends jdk.jfr.Event {
+
+  @Label("Transformer")
+  public Class<?> transformer;
+
+  @Label("Resource ID")
+  public String resourceId;
+
+  @Label("Entries")
+  @Description("The number of entries within the source reference set")
+  public int entries;
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for the decoding and validation of a single row of a reference set.
+ *
+ * @author John Grimes
+ */
+@Name("au.csiro.spiatofhir.RowParse")
+@Label("Row Parse")
+@Category({"SPIA to FHIR", "Parsing"})
+@Description("The decoding and validation of a row of a reference set spreadsheet")
+@StackTrace(false)
+public class RowParseEvent extends jdk.jfr.Event {
+
+  @Label("Sheet")
+  @Description("The name of the sheet, which identifies the workbook within the distribution")
+  public String sheet;
+
+  @Label("Row Number")
+  @Description("The zero-based index of the row within the sheet")
+  public int rowNumber;
+
+}
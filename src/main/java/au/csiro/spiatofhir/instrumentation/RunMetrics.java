@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.instrumentation;
+
+import au.csiro.spiatofhir.utils.Json;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Collects the metrics for each phase of a transform run, broken down by a label such as the
+ * reference set or resource concerned. These can be reported as a table, or as JSON so that runs
+ * can be compared between versions of the plugin.
+ *
+ * @author John Grimes
+ */
+public class RunMetrics {
+
+  private final Map<Phase, Map<String, PhaseMetrics>> phases = new EnumMap<>(Phase.class);
+
+  public RunMetrics() {
+    for (Phase phase : Phase.values()) {
+      phases.put(phase, new ConcurrentSkipListMap<>());
+    }
+  }
+
+  /**
+   * Returns the metrics for the specified phase and label, creating them if necessary. This is
+   * safe to call concurrently.
+   */
+  public PhaseMetrics get(Phase phase, String label) {
+    return phases.get(phase).computeIfAbsent(label, key -> new PhaseMetrics());
+  }
+
+  /**
+   * Returns the metrics for the specified phase, summed across all labels.
+   */
+  public PhaseMetrics getTotal(Phase phase) {
+    PhaseMetrics total = new PhaseMetrics();
+    for (PhaseMetrics metrics : phases.get(phase).values()) {
+      total.add(metrics);
+    }
+    return total;
+  }
+
+  public String toTable() {
+    StringBuilder table = new StringBuilder();
+    table.append(String.format("%-9s %-40s %8s %8s %10s %10s %10s %10s%n", "Phase", "Label",
+        "Calls", "Items", "Wall ms", "CPU ms", "Alloc MB", "Items/s"));
+    for (Phase phase : Phase.values()) {
+      for (Map.Entry<String, PhaseMetrics> entry : phases.get(phase).entrySet()) {
+        appendRow(table, phase.name(), entry.getKey(), entry.getValue());
+      }
+      if (phases.get(phase).size() > 1) {
+        appendRow(table, phase.name(), "(total)", getTotal(phase));
+      }
+    }
+    return table.toString();
+  }
+
+  private static void appendRow(StringBuilder table, String phase, String label,
+      PhaseMetrics metrics) {
+    table.append(String.format("%-9s %-40s %8d %8d %10.1f %10.1f %10.1f %10.0f%n", phase,
+        label.length() > 40 ? label.substring(0, 40) : label, metrics.getInvocations(),
+        metrics.getItems(), metrics.getWallNanos() / 1e6, metrics.getCpuNanos() / 1e6,
+        metrics.getAllocatedBytes() / (1024.0 * 1024.0), metrics.getItemsPerSecond()));
+  }
+
+  public String toJson() {
+    StringBuilder json = new StringBuilder("{\"phases\":[");
+    boolean first = true;
+    for (Phase phase : Phase.values()) {
+      for (Map.Entry<String, PhaseMetrics> entry : phases.get(phase).entrySet()) {
+        PhaseMetrics metrics = entry.getValue();
+        if (!first) {
+          json.append(",");
+        }
+        first = false;
+        json.append("{\"phase\":").append(Json.quote(phase.name()))
+            .append(",\"label\":").append(Json.quote(entry.getKey()))
+            .append(",\"invocations\":").append(metrics.getInvocations())
+            .append(",\"items\":").append(metrics.getItems())
+            .append(",\"wallNanos\":").append(metrics.getWallNanos())
+            .append(",\"cpuNanos\":").append(metrics.getCpuNanos())
+            .append(",\"allocatedBytes\":").append(metrics.getAllocatedBytes())
+            .append(",\"itemsPerSecond\":")
+            .append(String.format(Locale.ROOT, "%.1f", metrics.getItemsPerSecond()))
+            .append("}");
+      }
+    }
+    return json.append("]}").toString();
+  }
+
+  public enum Phase {
+    /**
+     * Opening the distribution and checking its entries.
+     */
+    OPEN,
+    /**
+     * Loading each workbook using POI.
+     */
+    READ,
+    /**
+     * Decoding the rows of each reference set, excluding validation.
+     */
+    DECODE,
+    /**
+     * Validating codes using the terminology server and UCUM service.
+     */
+    VALIDATE,
+    /**
+     * Building the FHIR resources from each reference set.
+     */
+    BUILD,
+    /**
+     * Hashing and encoding each resource as JSON.
+     */
+    ENCODE,
+    /**
+     * Writing the encoded resources to the output.
+     */
+    WRITE
+  }
+
+}
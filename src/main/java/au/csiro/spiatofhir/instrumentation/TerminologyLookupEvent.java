@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for a lookup of a code against the terminology server. The duration of
+ * the event is the latency of the lookup, which for a cache hit is the time spent waiting for the
+ * result (if it was still in flight).
+ *
+ * @author John Grimes
+ */
+@Name("au.csiro.spiatofhir.TerminologyLookup")
+@Label("Terminology Lookup")
+@Category({"SPIA to FHIR", "Terminology"})
+@Description("A lookup of a code against the terminology server")
+@StackTrace(false)
+public class TerminologyLookupEvent extends jdk.jfr.Event {
+
+  @Label("System")
+  public String system;
+
+  @Label("Code")
+  public String code;
+
+  @Label("Outcome")
+  @Description("Either \"success\", or the message of the error that occurred")
+  public String outcome;
+
+  @Label("Cache Hit")
+  public boolean cacheHit;
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * A snapshot of the wall clock time, and the CPU time and allocated bytes of the current thread.
+ * CPU time and allocated bytes are reported as zero on JVMs that do not support measuring them.
+ *
+ * @author John Grimes
+ */
+public class ThreadUsage {
+
+  private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private static final boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+  private static final com.sun.management.ThreadMXBean allocationBean =
+      threadBean instanceof com.sun.management.ThreadMXBean
+          && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()
+          ? (com.sun.management.ThreadMXBean) threadBean
+          : null;
+
+  private final long wallNanos;
+  private final long cpuNanos;
+  private final long allocatedBytes;
+
+  private ThreadUsage(long wallNanos, long cpuNanos, long allocatedBytes) {
+    this.wallNanos = wallNanos;
+    this.cpuNanos = cpuNanos;
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  public static ThreadUsage now() {
+    long cpuNanos = cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0;
+    long allocatedBytes = allocationBean != null
+        ? allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId())
+        : 0;
+    return new ThreadUsage(System.nanoTime(), cpuNanos, allocatedBytes);
+  }
+
+  public long getWallNanos() {
+    return wallNanos;
+  }
+
+  public long getCpuNanos() {
+    return cpuNanos;
+  }
+
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+}
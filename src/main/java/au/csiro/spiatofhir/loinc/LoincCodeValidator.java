@@ -17,12 +17,10 @@
 package au.csiro.spiatofhir.loinc;
 
 import au.csiro.spiatofhir.fhir.TerminologyClient;
-import au.csiro.spiatofhir.utils.Strings;
+import au.csiro.spiatofhir.utils.CodeSyntax;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.hl7.fhir.dstu3.model.BooleanType;
 import org.hl7.fhir.dstu3.model.CodeType;
 import org.hl7.fhir.dstu3.model.Parameters;
@@ -49,50 +47,9 @@ public class LoincCodeValidator {
    * validity of its check digit.
    */
   public boolean validate(String code) {
-    Pattern pattern = Pattern.compile("([A-Za-z\\d]+)-(\\d)");
-    Matcher matcher = pattern.matcher(code);
-    if (!matcher.matches()) {
-      return false;
-    }
-    String codeMinusCheckDigit = matcher.group(1);
-    String checkDigit = matcher.group(2);
-    int computedCheckDigit;
-    try {
-      computedCheckDigit = computeCheckDigit(codeMinusCheckDigit);
-    } catch (Exception e) {
-      return false;
-    }
-    return checkDigit.equals(Integer.toString(computedCheckDigit));
-  }
-
-  /**
-   * Computes the check digit for the identifier portion of a LOINC code.
-   * <p>
-   * Taken from: https://wiki.openmrs.org/display/docs/Check+Digit+Algorithm
-   */
-  private int computeCheckDigit(String idWithoutCheckDigit) throws Exception {
-    String validChars = "0123456789ABCDEFGHIJKLMNOPQRSTUVYWXZ_";
-    idWithoutCheckDigit = Strings.trim(idWithoutCheckDigit).toUpperCase();
-    int sum = 0;
-    for (int i = 0; i < idWithoutCheckDigit.length(); i++) {
-      char ch = idWithoutCheckDigit.charAt(idWithoutCheckDigit.length() - i - 1);
-      if (validChars.indexOf(ch) == -1) {
-        throw new Exception("\"" + ch + "\" is an invalid character");
-      }
-      int digit = (int) ch - 48;
-      int weight;
-      if (i % 2 == 0) {
-        weight = (2 * digit) - (digit / 5) * 9;
-      } else {
-        weight = digit;
-      }
-      sum += weight;
-    }
-    sum = Math.abs(sum) + 10;
-    return (10 - (sum % 10)) % 10;
+    return CodeSyntax.isValidLoincCode(code);
   }
 
-
   public boolean checkActive(String code) {
     UriType systemParam = new UriType(Loinc.SYSTEM_URI);
     CodeType codeParam = new CodeType(code);
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.pipeline;
+
+import au.csiro.spiatofhir.fhir.TerminologyLookupCache;
+import au.csiro.spiatofhir.spia.SpiaDistribution;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import org.hl7.fhir.dstu3.model.Parameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The progress of a transform, persisted within a work directory as the run proceeds, so that a
+ * run which fails part way through (for example, because the terminology server became
+ * unavailable) can be resumed without repeating the work that had already been done.
+ * <p>
+ * The resources built from each reference set are kept as they are encoded, and the result of
+ * each successful terminology lookup is appended to a journal. When a run is resumed, the
+ * reference sets with all of their resources present are not read again, and the rows of the
+ * others are validated using the journaled lookups, so that requests are only made for the codes
+ * that had not been reached.
+ * <p>
+ * The fingerprint of each file within the input (see {@link
+ * SpiaDistribution#getFingerprint(DistributionEntry)}) and the options that affect the output,
+ * including the version of the plugin, are recorded within a manifest. If these do not match those
+ * of the run that is being resumed, the checkpoint is discarded and the run starts from scratch.
+ *
+ * @author John Grimes
+ */
+public class Checkpoint implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(Checkpoint.class);
+  private static final String MANIFEST = "checkpoint.properties";
+  private static final String LOOKUPS = "lookups.ndjson";
+  private static final String RESOURCES = "resources";
+  private static final String INPUT_PREFIX = "input.";
+
+  private final FhirContext fhirContext;
+  private final Path directory;
+  private final ResourceCache resourceCache;
+  private Writer lookupJournal;
+  private TerminologyLookupCache lookupCache;
+
+  private Checkpoint(FhirContext fhirContext, Path directory, ResourceCache resourceCache) {
+    this.fhirContext = fhirContext;
+    this.directory = directory;
+    this.resourceCache = resourceCache;
+  }
+
+  /**
+   * Opens the checkpoint within the specified directory, which is created if it does not exist.
+   * Unless `resume` is true and the checkpoint was made from the same input and options, anything
+   * previously checkpointed within the directory is discarded.
+   */
+  public static Checkpoint open(FhirContext fhirContext, Path directory,
+      SpiaDistribution input, Properties options, boolean resume) throws IOException {
+    Path resourcesDirectory = directory.resolve(RESOURCES);
+    Files.createDirectories(resourcesDirectory);
+    Properties manifest = new Properties();
+    manifest.putAll(options);
+    for (DistributionEntry entry : DistributionEntry.values()) {
+      manifest.setProperty(INPUT_PREFIX + entry.name(), input.getFingerprint(entry));
+    }
+    Path manifestFile = directory.resolve(MANIFEST);
+    if (resume && manifest.equals(readManifest(manifestFile))) {
+      logger.info("Resuming from checkpoint within " + directory);
+    } else {
+      if (resume) {
+        logger.warn("Checkpoint within " + directory
+            + " is missing or does not match the input and options, starting from scratch");
+      }
+      Files.deleteIfExists(manifestFile);
+      Files.deleteIfExists(directory.resolve(LOOKUPS));
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(resourcesDirectory)) {
+        for (Path file : files) {
+          Files.delete(file);
+        }
+      }
+      try (Writer writer = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8)) {
+        manifest.store(writer, "SPIA to FHIR checkpoint");
+      }
+    }
+    ResourceCache resourceCache = ResourceCache.persistent(fhirContext, resourcesDirectory);
+    if (resourceCache.size() > 0) {
+      logger.info("Restored " + resourceCache.size() + " resources from checkpoint");
+    }
+    return new Checkpoint(fhirContext, directory, resourceCache);
+  }
+
+  /**
+   * Returns a cache of the resources that have been checkpointed, to which the resources from
+   * this run should be added.
+   */
+  public ResourceCache getResourceCache() {
+    return resourceCache;
+  }
+
+  /**
+   * Adds the journaled lookups to the supplied cache, then journals each new lookup made through
+   * the cache until this checkpoint is closed.
+   */
+  public synchronized void attach(TerminologyLookupCache lookupCache) throws IOException {
+    Path journalFile = directory.resolve(LOOKUPS);
+    int restored = 0;
+    boolean complete = true;
+    if (Files.exists(journalFile)) {
+      IParser jsonParser = fhirContext.newJsonParser();
+      try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          // Each line is the key of a lookup and its result, separated by a tab. The last line
+          // may have been left incomplete if the process was killed, and is skipped.
+          int tab = line.indexOf('\t');
+          try {
+            if (tab < 0) {
+              throw new DataFormatException("Missing key separator");
+            }
+            lookupCache.restore(line.substring(0, tab),
+                jsonParser.parseResource(Parameters.class, line.substring(tab + 1)));
+            restored++;
+          } catch (DataFormatException e) {
+            logger.warn("Skipping incomplete lookup within checkpoint: " + e.getMessage());
+          }
+        }
+      }
+      complete = endsWithNewline(journalFile);
+    }
+    if (restored > 0) {
+      logger.info("Restored " + restored + " terminology lookups from checkpoint");
+    }
+    lookupJournal = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    if (!complete) {
+      lookupJournal.write('\n');
+    }
+    IParser jsonParser = fhirContext.newJsonParser().setPrettyPrint(false);
+    lookupCache.setJournal((key, result) -> journal(key, jsonParser, result));
+    this.lookupCache = lookupCache;
+  }
+
+  /**
+   * Appends a lookup to the journal. Each one is flushed as it is written, so that it is retained
+   * if the process does not exit cleanly.
+   */
+  private synchronized void journal(String key, IParser jsonParser, Parameters result) {
+    if (lookupJournal == null) {
+      return;
+    }
+    try {
+      lookupJournal.write(key);
+      lookupJournal.write('\t');
+      lookupJournal.write(jsonParser.encodeResourceToString(result));
+      lookupJournal.write('\n');
+      lookupJournal.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write lookup to checkpoint", e);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (lookupCache != null) {
+      lookupCache.setJournal(null);
+      lookupCache = null;
+    }
+    if (lookupJournal != null) {
+      lookupJournal.close();
+      lookupJournal = null;
+    }
+  }
+
+  private static Properties readManifest(Path manifestFile) throws IOException {
+    if (!Files.exists(manifestFile)) {
+      return null;
+    }
+    Properties manifest = new Properties();
+    try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+      manifest.load(reader);
+    }
+    return manifest;
+  }
+
+  private static boolean endsWithNewline(Path file) throws IOException {
+    try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+      if (channel.size() == 0) {
+        return true;
+      }
+      ByteBuffer last = ByteBuffer.allocate(1);
+      channel.position(channel.size() - 1).read(last);
+      return last.get(0) == '\n';
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.pipeline;
+
+import org.hl7.fhir.dstu3.model.Resource;
+
+/**
+ * A resource along with its position within the Bundle, and (once encoded) its JSON encoding.
+ *
+ * @author John Grimes
+ */
+class EncodedResource {
+
+  private final int position;
+  private final Resource resource;
+  private final String json;
+
+  EncodedResource(int position, Resource resource, String json) {
+    this.position = position;
+    this.resource = resource;
+    this.json = json;
+  }
+
+  int getPosition() {
+    return position;
+  }
+
+  Resource getResource() {
+    return resource;
+  }
+
+  String getJson() {
+    return json;
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.pipeline;
+
+import au.csiro.spiatofhir.instrumentation.PhaseMetrics;
+import au.csiro.spiatofhir.instrumentation.ThreadUsage;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.Resource;
+
+/**
+ * The final stage of the pipeline, which writes encoded resources into a JSON Bundle as soon as
+ * each becomes available, in the order of their positions within the Bundle.
+ *
+ * @author John Grimes
+ */
+class OrderedBundleWriter implements Sink<EncodedResource> {
+
+  private final Writer writer;
+  private final List<Integer> expectedPositions;
+  private final Map<Integer, EncodedResource> pending = new HashMap<>();
+  private final PhaseMetrics writeMetrics;
+  private final Bundle bundle = new Bundle();
+  private final CountDownLatch finished = new CountDownLatch(1);
+  private int next = 0;
+  private boolean started = false;
+
+  OrderedBundleWriter(Writer writer, List<Integer> expectedPositions,
+      PhaseMetrics writeMetrics) {
+    this.writer = writer;
+    this.expectedPositions = expectedPositions;
+    this.writeMetrics = writeMetrics;
+    bundle.setType(Bundle.BundleType.COLLECTION);
+  }
+
+  /**
+   * Writes the opening of the Bundle. This is deferred until there is a resource to write, so that
+   * nothing is written if the pipeline fails before then.
+   */
+  private void start() throws IOException {
+    if (!started) {
+      writer.write("{\"resourceType\":\"Bundle\",\"type\":\"collection\",\"entry\":[");
+      started = true;
+    }
+  }
+
+  @Override
+  public synchronized void put(EncodedResource item) throws IOException {
+    ThreadUsage start = ThreadUsage.now();
+    int written = 0;
+    pending.put(item.getPosition(), item);
+    // Write out any resources that are now next in line.
+    while (next < expectedPositions.size() && pending.containsKey(expectedPositions.get(next))) {
+      EncodedResource resource = pending.remove(expectedPositions.get(next));
+      start();
+      if (next > 0) {
+        writer.write(",");
+      }
+      writer.write("{\"resource\":");
+      writer.write(resource.getJson());
+      writer.write("}");
+      Bundle.BundleEntryComponent bundleEntry = new Bundle.BundleEntryComponent();
+      bundleEntry.setResource(resource.getResource());
+      bundle.addEntry(bundleEntry);
+      next++;
+      written++;
+    }
+    writeMetrics.addSince(start, written);
+  }
+
+  @Override
+  public synchronized void end() throws IOException {
+    if (next != expectedPositions.size()) {
+      throw new IllegalStateException(
+          "Pipeline finished with " + (expectedPositions.size() - next) + " resources missing");
+    }
+    start();
+    writer.write("]}");
+    writer.flush();
+    finished.countDown();
+  }
+
+  CountDownLatch getFinished() {
+    return finished;
+  }
+
+  Bundle getBundle() {
+    return bundle;
+  }
+
+}
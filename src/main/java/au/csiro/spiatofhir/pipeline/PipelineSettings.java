@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.pipeline;
+
+/**
+ * The settings for each of the stages of the transform pipeline.
+ *
+ * @author John Grimes
+ */
+public class PipelineSettings {
+
+  private final StageSettings read;
+  private final StageSettings parse;
+  private final StageSettings build;
+  private final StageSettings encode;
+
+  public PipelineSettings(StageSettings read, StageSettings parse, StageSettings build,
+      StageSettings encode) {
+    this.read = read;
+    this.parse = parse;
+    this.build = build;
+    this.encode = encode;
+  }
+
+  /**
+   * Returns the settings used when none are specified.
+   */
+  public static PipelineSettings defaults() {
+    return new PipelineSettings(new StageSettings(1, 2), new StageSettings(2, 2),
+        new StageSettings(2, 4), new StageSettings(2, 8));
+  }
+
+  /**
+   * Settings for reading workbooks from the ZIP file.
+   */
+  public StageSettings getRead() {
+    return read;
+  }
+
+  /**
+   * Settings for streaming the rows of each workbook and validating their codes.
+   */
+  public StageSettings getParse() {
+    return parse;
+  }
+
+  /**
+   * Settings for building FHIR resources from each parsed reference set.
+   */
+  public StageSettings getBuild() {
+    return build;
+  }
+
+  /**
+   * Settings for hashing and encoding each resource, prior to it being written.
+   */
+  public StageSettings getEncode() {
+    return encode;
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.pipeline;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.hl7.fhir.dstu3.model.Resource;
+
+/**
+ * Retains the encoded resources produced by runs of a {@link TransformPipeline}, so that a later
+ * run can reuse the resources of entries that have not changed, rather than reading, parsing and
+ * building them again.
+ * <p>
+ * A cache must only be shared between runs that use the same publication date and options.
+ *
+ * @author John Grimes
+ */
+public class ResourceCache {
+
+  private static final String EXTENSION = ".json";
+
+  private final Map<Integer, EncodedResource> resources = new ConcurrentHashMap<>();
+  private final Path directory;
+
+  public ResourceCache() {
+    directory = null;
+  }
+
+  private ResourceCache(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns a cache which also writes each resource to a file within the specified directory, and
+   * which is populated with the resources that have previously been written there. This allows a
+   * failed run to be resumed by a new process, without transforming the entries that were
+   * completed before the failure.
+   */
+  public static ResourceCache persistent(FhirContext fhirContext, Path directory)
+      throws IOException {
+    Files.createDirectories(directory);
+    ResourceCache cache = new ResourceCache(directory);
+    IParser jsonParser = fhirContext.newJsonParser();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+      for (Path file : files) {
+        String fileName = file.getFileName().toString();
+        int position = Integer
+            .parseInt(fileName.substring(0, fileName.length() - EXTENSION.length()));
+        String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Resource resource = (Resource) jsonParser.parseResource(json);
+        cache.resources.put(position, new EncodedResource(position, resource, json));
+      }
+    }
+    return cache;
+  }
+
+  void put(EncodedResource resource) throws IOException {
+    if (directory != null) {
+      // Write to a temporary file first, so that a resource is never left partially written.
+      Path file = directory.resolve(resource.getPosition() + EXTENSION);
+      Path temp = directory.resolve(resource.getPosition() + EXTENSION + ".tmp");
+      Files.write(temp, resource.getJson().getBytes(StandardCharsets.UTF_8));
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+    resources.put(resource.getPosition(), resource);
+  }
+
+  EncodedResource get(int position) {
+    return resources.get(position);
+  }
+
+  public int size() {
+    return resources.size();
+  }
+
+  /**
+   * Removes all of the resources from the cache, including any that have been written to its
+   * directory.
+   */
+  public void clear() throws IOException {
+    resources.clear();
+    if (directory != null) {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+        for (Path file : files) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.pipeline;
+
+/**
+ * Receives the items produced by a stage of the pipeline.
+ *
+ * @author John Grimes
+ */
+interface Sink<T> {
+
+  /**
+   * Accepts an item, blocking if the receiver is not yet ready to accept more.
+   */
+  void put(T item) throws Exception;
+
+  /**
+   * Signals that no more items will be sent.
+   */
+  void end() throws Exception;
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A stage of the pipeline, which takes items from a bounded input queue and processes them using
+ * a fixed number of worker threads, passing any results on to the next stage.
+ * <p>
+ * When the input queue is full, producers block until a worker has taken an item, which provides
+ * backpressure to the preceding stages.
+ *
+ * @author John Grimes
+ */
+class Stage<I, O> implements Sink<I> {
+
+  private static final Object END = new Object();
+  private final String name;
+  private final int parallelism;
+  private final BlockingQueue<Object> input;
+  private final Step<I, O> step;
+  private final Sink<O> output;
+  private final AtomicInteger remainingWorkers;
+
+  Stage(String name, StageSettings settings, Step<I, O> step, Sink<O> output) {
+    this.name = name;
+    this.parallelism = settings.getParallelism();
+    this.input = new ArrayBlockingQueue<>(settings.getQueueDepth());
+    this.step = step;
+    this.output = output;
+    this.remainingWorkers = new AtomicInteger(parallelism);
+  }
+
+  /**
+   * Starts the workers for this stage. Any error within a worker is passed to the supplied
+   * handler, which is expected to stop the pipeline.
+   */
+  void start(ExecutorService executor, Consumer<Throwable> errorHandler) {
+    for (int i = 0; i < parallelism; i++) {
+      executor.submit(() -> {
+        try {
+          work();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+          errorHandler.accept(e);
+        }
+      });
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void work() throws Exception {
+    while (true) {
+      Object item = input.take();
+      if (item == END) {
+        // Put the marker back so that the other workers for this stage also see it.
+        input.put(END);
+        break;
+      }
+      step.process((I) item, output);
+    }
+    // The last worker to finish signals the end to the next stage.
+    if (remainingWorkers.decrementAndGet() == 0) {
+      output.end();
+    }
+  }
+
+  @Override
+  public void put(I item) throws InterruptedException {
+    input.put(item);
+  }
+
+  @Override
+  public void end() throws InterruptedException {
+    input.put(END);
+  }
+
+  String getName() {
+    return name;
+  }
+
+  /**
+   * The work done by a stage for each item, which may pass any number of results on to the next
+   * stage.
+   */
+  interface Step<I, O> {
+
+    void process(I item, Sink<O> output) throws Exception;
+
+  }
+
+}
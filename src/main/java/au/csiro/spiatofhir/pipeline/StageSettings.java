@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.pipeline;
+
+/**
+ * The number of worker threads and the depth of the input queue for a stage of the pipeline.
+ *
+ * @author John Grimes
+ */
+public class StageSettings {
+
+  private final int parallelism;
+  private final int queueDepth;
+
+  public StageSettings(int parallelism, int queueDepth) {
+    if (parallelism < 1 || queueDepth < 1) {
+      throw new IllegalArgumentException("Parallelism and queue depth must be at least 1");
+    }
+    this.parallelism = parallelism;
+    this.queueDepth = queueDepth;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.pipeline;
+
+import au.csiro.spiatofhir.fhir.ContentHash;
+import au.csiro.spiatofhir.fhir.SpiaFhirBundle;
+import au.csiro.spiatofhir.fhir.SpiaFhirResourceRegistry;
+import au.csiro.spiatofhir.instrumentation.PhaseMetrics;
+import au.csiro.spiatofhir.instrumentation.RunMetrics;
+import au.csiro.spiatofhir.instrumentation.RunMetrics.Phase;
+import au.csiro.spiatofhir.instrumentation.ThreadUsage;
+import au.csiro.spiatofhir.spia.Refset;
+import au.csiro.spiatofhir.spia.SpiaDistribution;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import ca.uhn.fhir.context.FhirContext;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transforms a SPIA distribution into a FHIR Bundle using a pipeline of concurrent stages,
+ * connected by bounded queues:
+ * <ol>
+ * <li>read each workbook from the ZIP file;</li>
+ * <li>stream the rows of each workbook, validating their codes;</li>
+ * <li>build the FHIR resources from each reference set;</li>
+ * <li>hash and encode each resource, then write it to the output.</li>
+ * </ol>
+ * This allows the reading of one workbook to overlap with the validation of another, and with the
+ * encoding of resources that have already been built.
+ *
+ * @author John Grimes
+ */
+public class TransformPipeline {
+
+  private static final Logger logger = LoggerFactory.getLogger(TransformPipeline.class);
+  private final FhirContext fhirContext;
+  private final SpiaDistribution spiaDistribution;
+  private final Date publicationDate;
+  private final boolean includeExpansions;
+  private final PipelineSettings settings;
+  private final RunMetrics metrics;
+  private final Set<String> includeResources;
+  private final SpiaFhirResourceRegistry registry = SpiaFhirResourceRegistry.getDefault();
+
+  /**
+   * @param spiaDistribution a distribution opened using {@link SpiaDistribution#open}, the
+   * reference sets of which will be parsed by the pipeline
+   */
+  public TransformPipeline(FhirContext fhirContext, SpiaDistribution spiaDistribution,
+      Date publicationDate, boolean includeExpansions, PipelineSettings settings) {
+    this(fhirContext, spiaDistribution, publicationDate, includeExpansions, settings,
+        new RunMetrics());
+  }
+
+  /**
+   * @param metrics the metrics to which the time and memory used by each stage of the pipeline
+   * will be added
+   */
+  public TransformPipeline(FhirContext fhirContext, SpiaDistribution spiaDistribution,
+      Date publicationDate, boolean includeExpansions, PipelineSettings settings,
+      RunMetrics metrics) {
+    this(fhirContext, spiaDistribution, publicationDate, includeExpansions, settings, metrics,
+        null);
+  }
+
+  /**
+   * @param includeResources the ids of the resources to build, or null to build all of them. Only
+   * the reference sets that these resources are built from need to be passed to {@link #run}, see
+   * {@link SpiaFhirResourceRegistry#getEntries}.
+   */
+  public TransformPipeline(FhirContext fhirContext, SpiaDistribution spiaDistribution,
+      Date publicationDate, boolean includeExpansions, PipelineSettings settings,
+      RunMetrics metrics, Set<String> includeResources) {
+    this.fhirContext = fhirContext;
+    this.spiaDistribution = spiaDistribution;
+    this.publicationDate = publicationDate;
+    this.includeExpansions = includeExpansions;
+    this.settings = settings;
+    this.metrics = metrics;
+    this.includeResources = includeResources;
+  }
+
+  /**
+   * Runs the pipeline over the specified entries of the distribution, writing a JSON Bundle to
+   * the supplied writer. Returns the Bundle that was written.
+   */
+  public Bundle run(Collection<DistributionEntry> entries, Writer writer) throws Exception {
+    return run(entries, entries, null, writer);
+  }
+
+  /**
+   * Runs the pipeline over the specified entries of the distribution, writing a JSON Bundle to
+   * the supplied writer. Only the entries within `changed` (or those without resources in the
+   * cache) are read, parsed and built - the resources for the other entries are taken from the
+   * cache. Each resource that is encoded is added to the cache. Returns the Bundle that was
+   * written.
+   */
+  public Bundle run(Collection<DistributionEntry> entries, Collection<DistributionEntry> changed,
+      ResourceCache cache, Writer writer) throws Exception {
+    List<Resource> supportingResources = SpiaFhirBundle.loadSupportingResources(fhirContext);
+    validateIncludeResources(supportingResources);
+    List<Integer> expectedPositions = new ArrayList<>();
+    List<DistributionEntry> toTransform = new ArrayList<>();
+    List<EncodedResource> cached = new ArrayList<>();
+    for (DistributionEntry entry : DistributionEntry.values()) {
+      List<Integer> selected = getSelected(entry);
+      if (entries.contains(entry) && !selected.isEmpty()) {
+        int offset = registry.getOffset(entry);
+        List<EncodedResource> cachedForEntry = new ArrayList<>();
+        for (int i : selected) {
+          expectedPositions.add(offset + i);
+          EncodedResource resource = cache == null ? null : cache.get(offset + i);
+          if (resource != null) {
+            cachedForEntry.add(resource);
+          }
+        }
+        if (changed.contains(entry) || cachedForEntry.size() < selected.size()) {
+          toTransform.add(entry);
+        } else {
+          cached.addAll(cachedForEntry);
+        }
+      }
+    }
+    if (cache != null) {
+      logger.info("Transforming " + toTransform + ", reusing " + cached.size()
+          + " cached resources");
+    }
+    int supportingOffset = registry.getCount();
+    for (int i = 0; i < supportingResources.size(); i++) {
+      if (isIncluded(supportingResources.get(i))) {
+        expectedPositions.add(supportingOffset + i);
+      }
+    }
+
+    // Wire up the stages, from last to first.
+    OrderedBundleWriter bundleWriter = new OrderedBundleWriter(writer, expectedPositions,
+        metrics.get(Phase.WRITE, "bundle"));
+    Stage<EncodedResource, EncodedResource> encodeStage = new Stage<>("encode",
+        settings.getEncode(), (built, output) -> encode(built, output, cache), bundleWriter);
+    Stage<ParsedRefset, EncodedResource> buildStage = new Stage<>("build", settings.getBuild(),
+        this::build, encodeStage);
+    Stage<LoadedWorkbook, ParsedRefset> parseStage = new Stage<>("parse", settings.getParse(),
+        this::parse, buildStage);
+    Stage<DistributionEntry, LoadedWorkbook> readStage = new Stage<>("read", settings.getRead(),
+        this::read, parseStage);
+
+    // One thread for each worker, plus one for feeding the pipeline.
+    int threads = settings.getRead().getParallelism() + settings.getParse().getParallelism()
+        + settings.getBuild().getParallelism() + settings.getEncode().getParallelism() + 1;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    try {
+      for (Stage<?, ?> stage : new Stage<?, ?>[]{encodeStage, buildStage, parseStage,
+          readStage}) {
+        stage.start(executor, e -> fail(stage.getName(), e, failure, bundleWriter, executor));
+      }
+
+      // Feed the cached resources straight into the writer, the supporting resources into the
+      // encode stage, and the entries that need to be transformed into the read stage.
+      executor.submit(() -> {
+        try {
+          for (EncodedResource resource : cached) {
+            bundleWriter.put(resource);
+          }
+          for (int i = 0; i < supportingResources.size(); i++) {
+            if (isIncluded(supportingResources.get(i))) {
+              encodeStage.put(
+                  new EncodedResource(supportingOffset + i, supportingResources.get(i), null));
+            }
+          }
+          for (DistributionEntry entry : toTransform) {
+            readStage.put(entry);
+          }
+          readStage.end();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (Exception e) {
+          fail("feed", e, failure, bundleWriter, executor);
+        }
+      });
+
+      bundleWriter.getFinished().await();
+      if (failure.get() != null) {
+        Throwable cause = failure.get();
+        if (cause instanceof Exception) {
+          throw (Exception) cause;
+        }
+        throw new RuntimeException("Error in pipeline", cause);
+      }
+      return bundleWriter.getBundle();
+    } finally {
+      executor.shutdownNow();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  /**
+   * Stops all of the other stages upon the first error.
+   */
+  private static void fail(String stageName, Throwable e, AtomicReference<Throwable> failure,
+      OrderedBundleWriter bundleWriter, ExecutorService executor) {
+    if (failure.compareAndSet(null, e)) {
+      logger.error("Error in " + stageName + " stage of pipeline", e);
+      bundleWriter.getFinished().countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  public RunMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns the positions of the resources to be built from the specified reference set, within
+   * the resources registered against it.
+   */
+  private List<Integer> getSelected(DistributionEntry entry) {
+    List<String> ids = registry.getIds(entry);
+    List<Integer> selected = new ArrayList<>();
+    for (int i = 0; i < ids.size(); i++) {
+      if (includeResources == null || includeResources.contains(ids.get(i))) {
+        selected.add(i);
+      }
+    }
+    return selected;
+  }
+
+  private boolean isIncluded(Resource supportingResource) {
+    return includeResources == null
+        || includeResources.contains(supportingResource.getIdElement().getIdPart());
+  }
+
+  /**
+   * Throws an exception if any of the requested resources are not known, as this is most likely to
+   * be a mistake within the configuration.
+   */
+  private void validateIncludeResources(List<Resource> supportingResources) {
+    if (includeResources == null) {
+      return;
+    }
+    Set<String> known = new TreeSet<>();
+    for (DistributionEntry entry : DistributionEntry.values()) {
+      for (String id : registry.getIds(entry)) {
+        if (id != null) {
+          known.add(id);
+        }
+      }
+    }
+    for (Resource resource : supportingResources) {
+      known.add(resource.getIdElement().getIdPart());
+    }
+    for (String id : includeResources) {
+      if (!known.contains(id)) {
+        throw new IllegalArgumentException(
+            "Unknown resource: " + id + ", expected one of: " + String.join(", ", known));
+      }
+    }
+  }
+
+  private void read(DistributionEntry entry, Sink<LoadedWorkbook> output) throws Exception {
+    ThreadUsage start = ThreadUsage.now();
+    Workbook workbook = spiaDistribution.readWorkbook(entry);
+    metrics.get(Phase.READ, entry.name()).addSince(start, 1);
+    output.put(new LoadedWorkbook(entry, workbook));
+  }
+
+  private void parse(LoadedWorkbook loaded, Sink<ParsedRefset> output) throws Exception {
+    ThreadUsage start = ThreadUsage.now();
+    Refset refset = spiaDistribution.parseRefset(loaded.entry, loaded.workbook);
+    // Validation happens during parsing, so it is subtracted to get the time spent decoding.
+    PhaseMetrics parseMetrics = new PhaseMetrics();
+    parseMetrics.addSince(start, refset.getRefsetEntries().size());
+    PhaseMetrics validationMetrics = refset.getValidationMetrics();
+    metrics.get(Phase.DECODE, loaded.entry.name()).add(parseMetrics.minus(validationMetrics));
+    metrics.get(Phase.VALIDATE, loaded.entry.name()).add(validationMetrics);
+    output.put(new ParsedRefset(loaded.entry, refset));
+  }
+
+  private void build(ParsedRefset parsed, Sink<EncodedResource> output) throws Exception {
+    ThreadUsage start = ThreadUsage.now();
+    List<Integer> selected = getSelected(parsed.entry);
+    List<Resource> resources = new ArrayList<>();
+    for (int i : selected) {
+      resources.add(SpiaFhirBundle.buildResource(parsed.entry, i, parsed.refset, publicationDate,
+          includeExpansions));
+    }
+    metrics.get(Phase.BUILD, parsed.entry.name()).addSince(start, resources.size());
+    int offset = registry.getOffset(parsed.entry);
+    for (int i = 0; i < resources.size(); i++) {
+      output.put(new EncodedResource(offset + selected.get(i), resources.get(i), null));
+    }
+  }
+
+  private void encode(EncodedResource built, Sink<EncodedResource> output, ResourceCache cache)
+      throws Exception {
+    ThreadUsage start = ThreadUsage.now();
+    Resource resource = built.getResource();
+    ContentHash.apply(fhirContext, resource);
+    String json = fhirContext.newJsonParser().encodeResourceToString(resource);
+    metrics.get(Phase.ENCODE, resource.getIdElement().getIdPart()).addSince(start, 1);
+    EncodedResource encoded = new EncodedResource(built.getPosition(), resource, json);
+    if (cache != null) {
+      cache.put(encoded);
+    }
+    output.put(encoded);
+  }
+
+  private static class LoadedWorkbook {
+
+    private final DistributionEntry entry;
+    private final Workbook workbook;
+
+    private LoadedWorkbook(DistributionEntry entry, Workbook workbook) {
+      this.entry = entry;
+      this.workbook = workbook;
+    }
+
+  }
+
+  private static class ParsedRefset {
+
+    private final DistributionEntry entry;
+    private final Refset refset;
+
+    private ParsedRefset(DistributionEntry entry, Refset refset) {
+      this.entry = entry;
+      this.refset = refset;
+    }
+
+  }
+
+}
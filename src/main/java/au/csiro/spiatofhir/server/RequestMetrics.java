@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.server;
+
+import au.csiro.spiatofhir.utils.Json;
+
+/**
+ * Metrics captured for a single transform request.
+ *
+ * @author John Grimes
+ */
+public class RequestMetrics {
+
+  private final long id;
+  private final long startedAt;
+  private long inputBytes;
+  private int resources;
+  private long durationMillis;
+  private long lookupHits;
+  private long lookupMisses;
+  private long ucumHits;
+  private long ucumMisses;
+  private int status;
+  private String error;
+
+  RequestMetrics(long id, long startedAt) {
+    this.id = id;
+    this.startedAt = startedAt;
+  }
+
+  String toJson() {
+    return "{\"id\":" + id + ",\"startedAt\":" + startedAt + ",\"inputBytes\":" + inputBytes
+        + ",\"resources\":" + resources + ",\"durationMillis\":" + durationMillis
+        + ",\"lookupHits\":" + lookupHits + ",\"lookupMisses\":" + lookupMisses
+        + ",\"ucumHits\":" + ucumHits + ",\"ucumMisses\":" + ucumMisses
+        + ",\"status\":" + status + ",\"error\":" + Json.quote(error) + "}";
+  }
+
+  @Override
+  public String toString() {
+    return "Request " + id + ": status " + status + ", " + inputBytes + " bytes in, " + resources
+        + " resources out, " + durationMillis + " ms, " + lookupHits + " lookup cache hits, "
+        + lookupMisses + " lookup cache misses, " + ucumHits + " UCUM cache hits, " + ucumMisses
+        + " UCUM cache misses";
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public long getStartedAt() {
+    return startedAt;
+  }
+
+  public long getInputBytes() {
+    return inputBytes;
+  }
+
+  void setInputBytes(long inputBytes) {
+    this.inputBytes = inputBytes;
+  }
+
+  public int getResources() {
+    return resources;
+  }
+
+  void setResources(int resources) {
+    this.resources = resources;
+  }
+
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  void setDurationMillis(long durationMillis) {
+    this.durationMillis = durationMillis;
+  }
+
+  public long getLookupHits() {
+    return lookupHits;
+  }
+
+  void setLookupHits(long lookupHits) {
+    this.lookupHits = lookupHits;
+  }
+
+  public long getLookupMisses() {
+    return lookupMisses;
+  }
+
+  void setLookupMisses(long lookupMisses) {
+    this.lookupMisses = lookupMisses;
+  }
+
+  public long getUcumHits() {
+    return ucumHits;
+  }
+
+  void setUcumHits(long ucumHits) {
+    this.ucumHits = ucumHits;
+  }
+
+  public long getUcumMisses() {
+    return ucumMisses;
+  }
+
+  void setUcumMisses(long ucumMisses) {
+    this.ucumMisses = ucumMisses;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  void setStatus(int status) {
+    this.status = status;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  void setError(String error) {
+    this.error = error;
+  }
+
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.server;
+
+import au.csiro.spiatofhir.WarmContexts;
+import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.instrumentation.CacheCounts;
+import au.csiro.spiatofhir.pipeline.PipelineSettings;
+import au.csiro.spiatofhir.pipeline.TransformPipeline;
+import au.csiro.spiatofhir.spia.SpiaDistribution;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import au.csiro.spiatofhir.spia.ValidationException;
+import au.csiro.spiatofhir.ucum.CachingUcumService;
+import au.csiro.spiatofhir.utils.Json;
+import ca.uhn.fhir.context.FhirContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long-running HTTP server which transforms SPIA distributions on request, keeping the FHIR
+ * context, UCUM service and terminology lookup cache warm between requests.
+ * <p>
+ * The following endpoints are provided:
+ * <ul>
+ * <li>`POST /transform?publicationDate=yyyy-MM-dd[&amp;includeExpansions=true]`, with the SPIA ZIP
+ * archive as the request body, responds with the FHIR Bundle as JSON. Resources are streamed back
+ * as they are produced. Request bodies larger than the configured maximum are rejected.</li>
+ * <li>`GET /metrics` responds with metrics for the most recent requests, as JSON.</li>
+ * </ul>
+ *
+ * @author John Grimes
+ */
+public class TransformServer implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(TransformServer.class);
+  private static final String PUBLICATION_DATE_PATTERN = "yyyy-MM-dd";
+  private static final int RETAINED_METRICS = 100;
+  private final String terminologyServerUrl;
+  private final long maxRequestBytes;
+  private final PipelineSettings pipelineSettings;
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Deque<RequestMetrics> recentMetrics = new ConcurrentLinkedDeque<>();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private volatile CachingUcumService ucumService;
+
+  /**
+   * @param concurrency the maximum number of requests that will be handled at once
+   * @param maxRequestBytes the maximum size of the ZIP archive accepted within a request
+   */
+  public TransformServer(String host, int port, String terminologyServerUrl, int concurrency,
+      long maxRequestBytes, PipelineSettings pipelineSettings) throws IOException {
+    this.terminologyServerUrl = terminologyServerUrl;
+    this.maxRequestBytes = maxRequestBytes;
+    this.pipelineSettings = pipelineSettings;
+    server = HttpServer.create(new InetSocketAddress(host, port), 0);
+    server.createContext("/transform", this::handleTransform);
+    server.createContext("/metrics", this::handleMetrics);
+    executor = Executors.newFixedThreadPool(concurrency);
+    server.setExecutor(executor);
+  }
+
+  /**
+   * Initialises the shared contexts, then starts accepting requests.
+   */
+  public void start() throws Exception {
+    WarmContexts.getFhirContext();
+    ucumService = WarmContexts.getUcumService();
+    WarmContexts.getTerminologyClient(terminologyServerUrl);
+    server.start();
+    logger.info("Transform server listening on port " + getPort());
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handleTransform(HttpExchange exchange) throws IOException {
+    RequestMetrics metrics = new RequestMetrics(requestCount.incrementAndGet(),
+        System.currentTimeMillis());
+    long start = System.nanoTime();
+    // The caches are shared with any other requests being handled at the same time, so the hits
+    // and misses of this request are counted separately.
+    CacheCounts lookupCounts = new CacheCounts();
+    CacheCounts ucumCounts = new CacheCounts();
+    Path inputFile = null;
+    LazyResponseWriter writer = new LazyResponseWriter(exchange);
+    try {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        fail(metrics, 405, "Only POST is supported");
+        return;
+      }
+      Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+      Date publicationDate;
+      try {
+        publicationDate = new SimpleDateFormat(PUBLICATION_DATE_PATTERN)
+            .parse(query.getOrDefault("publicationDate", ""));
+      } catch (ParseException e) {
+        fail(metrics, 400, "publicationDate parameter must be supplied in the format "
+            + PUBLICATION_DATE_PATTERN);
+        return;
+      }
+      boolean includeExpansions = Boolean.parseBoolean(query.get("includeExpansions"));
+
+      // Save the request body to a temporary file, as the ZIP file needs random access.
+      inputFile = Files.createTempFile("spia-", ".zip");
+      long inputBytes;
+      try (InputStream requestBody = exchange.getRequestBody()) {
+        inputBytes = copyWithLimit(requestBody, inputFile);
+      }
+      if (inputBytes < 0) {
+        fail(metrics, 413,
+            "Request body exceeds the maximum size of " + maxRequestBytes + " bytes");
+        return;
+      }
+      metrics.setInputBytes(inputBytes);
+
+      FhirContext fhirContext = WarmContexts.getFhirContext();
+      TerminologyClient terminologyClient = WarmContexts
+          .getTerminologyClient(terminologyServerUrl, lookupCounts);
+      Bundle bundle;
+      try (SpiaDistribution spiaDistribution = SpiaDistribution
+          .open(inputFile.toFile(), terminologyClient, ucumService.withCounts(ucumCounts))) {
+        TransformPipeline pipeline = new TransformPipeline(fhirContext, spiaDistribution,
+            publicationDate, includeExpansions, pipelineSettings);
+        bundle = pipeline.run(EnumSet.allOf(DistributionEntry.class), writer);
+      }
+      writer.flush();
+      metrics.setStatus(200);
+      metrics.setResources(bundle.getEntry().size());
+    } catch (Exception e) {
+      logger.error("Error processing request " + metrics.getId(), e);
+      fail(metrics, e instanceof ValidationException ? 422 : 500, e.getMessage());
+    } finally {
+      deleteInputFile(inputFile);
+      // The metrics are recorded before the response is completed, so that a client which asks
+      // for the metrics once it has its response will always find its own request there.
+      metrics.setDurationMillis((System.nanoTime() - start) / 1000000);
+      metrics.setLookupHits(lookupCounts.getHitCount());
+      metrics.setLookupMisses(lookupCounts.getMissCount());
+      metrics.setUcumHits(ucumCounts.getHitCount());
+      metrics.setUcumMisses(ucumCounts.getMissCount());
+      if (metrics.getStatus() != 200) {
+        failureCount.incrementAndGet();
+      }
+      recordMetrics(metrics);
+      try {
+        if (metrics.getStatus() == 200) {
+          writer.close();
+        } else if (!writer.isCommitted()) {
+          respondWithError(exchange, metrics.getStatus(), metrics.getError());
+        }
+        // If the response has already started, the best we can do is to cut it short.
+      } finally {
+        exchange.close();
+      }
+    }
+  }
+
+  private static void fail(RequestMetrics metrics, int status, String message) {
+    metrics.setStatus(status);
+    metrics.setError(message);
+  }
+
+  private static void deleteInputFile(Path inputFile) {
+    if (inputFile == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(inputFile);
+    } catch (IOException e) {
+      logger.warn("Unable to delete temporary input file: " + inputFile, e);
+    }
+  }
+
+  /**
+   * Copies the request body to the file, returning the number of bytes copied, or -1 if the body
+   * is larger than the maximum request size (in which case the rest of it is not read).
+   */
+  private long copyWithLimit(InputStream requestBody, Path file) throws IOException {
+    long copied = 0;
+    byte[] buffer = new byte[8192];
+    try (OutputStream outputStream = Files.newOutputStream(file)) {
+      int read;
+      while ((read = requestBody.read(buffer)) != -1) {
+        copied += read;
+        if (copied > maxRequestBytes) {
+          return -1;
+        }
+        outputStream.write(buffer, 0, read);
+      }
+    }
+    return copied;
+  }
+
+  private void handleMetrics(HttpExchange exchange) throws IOException {
+    StringBuilder json = new StringBuilder();
+    json.append("{\"requests\":").append(requestCount.get())
+        .append(",\"failures\":").append(failureCount.get())
+        .append(",\"recent\":[");
+    Iterator<RequestMetrics> iterator = recentMetrics.iterator();
+    while (iterator.hasNext()) {
+      json.append(iterator.next().toJson());
+      if (iterator.hasNext()) {
+        json.append(",");
+      }
+    }
+    json.append("]}");
+    respond(exchange, 200, "application/json", json.toString());
+    exchange.close();
+  }
+
+  private void recordMetrics(RequestMetrics metrics) {
+    logger.info(metrics.toString());
+    recentMetrics.addFirst(metrics);
+    while (recentMetrics.size() > RETAINED_METRICS) {
+      recentMetrics.pollLast();
+    }
+  }
+
+  private static void respondWithError(HttpExchange exchange, int status, String message)
+      throws IOException {
+    String operationOutcome = "{\"resourceType\":\"OperationOutcome\",\"issue\":[{"
+        + "\"severity\":\"error\",\"code\":\"processing\",\"diagnostics\":" + Json.quote(message)
+        + "}]}";
+    respond(exchange, status, "application/fhir+json", operationOutcome);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String contentType, String body)
+      throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream outputStream = exchange.getResponseBody()) {
+      outputStream.write(bytes);
+    }
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (String pair : rawQuery.split("&")) {
+      String[] parts = pair.split("=", 2);
+      query.put(URLDecoder.decode(parts[0], "UTF-8"),
+          parts.length > 1 ? URLDecoder.decode(parts[1], "UTF-8") : "");
+    }
+    return query;
+  }
+
+  /**
+   * A writer which only sends the response headers once something is written, so that an error
+   * response can still be sent if the transform fails before producing any output.
+   */
+  private static class LazyResponseWriter extends Writer {
+
+    private final HttpExchange exchange;
+    private Writer delegate;
+
+    private LazyResponseWriter(HttpExchange exchange) {
+      this.exchange = exchange;
+    }
+
+    private Writer getDelegate() throws IOException {
+      if (delegate == null) {
+        exchange.getResponseHeaders().set("Content-Type", "application/fhir+json");
+        // A length of zero means that the response will be sent using chunked encoding.
+        exchange.sendResponseHeaders(200, 0);
+        delegate = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8);
+      }
+      return delegate;
+    }
+
+    boolean isCommitted() {
+      return delegate != null;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+      getDelegate().write(buffer, offset, length);
+    }
+
+    @Override
+    public void write(String string) throws IOException {
+      getDelegate().write(string);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (delegate != null) {
+        delegate.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (delegate != null) {
+        delegate.close();
+      }
+    }
+
+  }
+
+}
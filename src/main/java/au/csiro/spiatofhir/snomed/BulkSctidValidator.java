@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.snomed;
+
+import au.csiro.spiatofhir.utils.Verhoeff;
+import java.util.BitSet;
+
+/**
+ * Validates the syntax of large numbers of SNOMED CT identifiers at once, such as all of the
+ * identifiers within an extract, without converting them to strings.
+ * <p>
+ * The checks are the same as those made by {@link SnomedCodeValidator#validate(String)}, except
+ * that leading zeroes cannot be represented.
+ *
+ * @author John Grimes
+ */
+public class BulkSctidValidator {
+
+  private static final long MIN_SCTID_EXCLUSIVE = 100000L;
+  private static final long MAX_SCTID = 1000000000000000000L;
+
+  /**
+   * Returns a set containing the positions of each of the valid identifiers within the array.
+   */
+  public static BitSet validate(long[] sctids) {
+    long[] words = new long[(sctids.length + 63) >>> 6];
+    for (int i = 0; i < sctids.length; i++) {
+      // The shift distance of a long is taken mod 64, so this sets bit i of the current word.
+      words[i >>> 6] |= (isValid(sctids[i]) ? 1L : 0L) << i;
+    }
+    return BitSet.valueOf(words);
+  }
+
+  /**
+   * Returns true if the identifier is within the range of valid identifiers, has a valid partition
+   * identifier and a valid Verhoeff check digit.
+   */
+  public static boolean isValid(long sctid) {
+    return inRange(sctid) && validPartition(sctid) && Verhoeff.validateVerhoeff(sctid);
+  }
+
+  private static boolean inRange(long sctid) {
+    return sctid > MIN_SCTID_EXCLUSIVE && sctid <= MAX_SCTID;
+  }
+
+  /**
+   * Returns true if the partition identifier (the two digits before the check digit) is valid.
+   */
+  private static boolean validPartition(long sctid) {
+    long partition = (sctid / 10) % 100;
+    return partition <= 2 || partition >= 10 && partition <= 12;
+  }
+
+}
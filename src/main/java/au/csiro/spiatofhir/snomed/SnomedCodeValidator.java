@@ -17,13 +17,10 @@
 package au.csiro.spiatofhir.snomed;
 
 import au.csiro.spiatofhir.fhir.TerminologyClient;
-import au.csiro.spiatofhir.utils.Verhoeff;
-import java.util.Arrays;
+import au.csiro.spiatofhir.utils.CodeSyntax;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.hl7.fhir.dstu3.model.BooleanType;
 import org.hl7.fhir.dstu3.model.CodeType;
 import org.hl7.fhir.dstu3.model.Parameters;
@@ -53,26 +50,7 @@ public class SnomedCodeValidator {
    * /sctid.js
    */
   public boolean validate(String code) {
-    Pattern pattern = Pattern.compile("\\d+");
-    Matcher matcher = pattern.matcher(code);
-    if (!matcher.matches()) {
-      return false;
-    }
-    long number;
-    try {
-      number = Long.parseLong(code, 10);
-    } catch (NumberFormatException e) {
-      return false;
-    }
-    if (number <= Math.pow(10, 5) || number > Math.pow(10, 18)) {
-      return false;
-    }
-    String partitionId = code.substring(code.length() - 3, code.length() - 1);
-    String[] validPartitions = {"00", "01", "02", "10", "11", "12"};
-    if (!Arrays.asList(validPartitions).contains(partitionId)) {
-      return false;
-    }
-    return Verhoeff.validateVerhoeff(code);
+    return CodeSyntax.isValidSctid(code);
   }
 
   public boolean checkActive(String code) {
@@ -16,17 +16,17 @@
 
 package au.csiro.spiatofhir.spia;
 
-import static au.csiro.spiatofhir.spia.ValidationException.messageWithCoords;
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Type;
 
 /**
  * Thrown when encountering blank cells where codes were expected within the source data.
  *
  * @author John Grimes
  */
-public class BlankCodeException extends Exception {
+public class BlankCodeException extends CodeException {
 
-  public BlankCodeException(String message, int rowIndex, int columnIndex) {
-    super(messageWithCoords(message, rowIndex, columnIndex));
+  public BlankCodeException(Type type, int rowIndex, int columnIndex) {
+    super(type, null, rowIndex, columnIndex);
   }
 
 }
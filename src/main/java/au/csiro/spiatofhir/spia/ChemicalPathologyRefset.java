@@ -16,23 +16,19 @@
 
 package au.csiro.spiatofhir.spia;
 
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
 import au.csiro.spiatofhir.fhir.TerminologyClient;
-import au.csiro.spiatofhir.spia.RefsetEntry.CombiningResultsFlag;
-import java.util.ArrayList;
 import java.util.Set;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.fhir.ucum.UcumService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * @author John Grimes
  */
 public class ChemicalPathologyRefset extends Refset {
 
-  protected static final Logger logger = LoggerFactory.getLogger(ChemicalPathologyRefset.class);
   protected static final String[] expectedHeaders =
       {"RCPA Preferred term", "RCPA Synonyms", "Usage guidance", "Subgroup_1", "Subgroup_2",
           "Length", "Specimen", "Unit", "UCUM", "LOINC", "Component", "Property", "Timing",
@@ -40,8 +36,9 @@ public class ChemicalPathologyRefset extends Refset {
   private static final String SHEET_NAME = "Chemical Pathology Terms v3.1";
 
   public ChemicalPathologyRefset(Workbook workbook,
-      TerminologyClient terminologyClient, UcumService ucumService) throws ValidationException {
-    super(workbook, terminologyClient, ucumService);
+      TerminologyClient terminologyClient, UcumService ucumService, DiagnosticsSink diagnostics,
+      StringTable strings) throws ValidationException {
+    super(workbook, terminologyClient, ucumService, diagnostics, strings);
   }
 
   @Override
@@ -50,8 +47,8 @@ public class ChemicalPathologyRefset extends Refset {
     if (sheet == null) {
       throw new ValidationException("Sheet not found: " + SHEET_NAME);
     }
-    refsetEntries = new ArrayList<>();
-    for (Row row : sheet) {
+    RefsetEntries.Builder entries = new RefsetEntries.Builder(strings);
+    for (Row row : rows(sheet)) {
       // Check that header row matches expectations.
       if (row.getRowNum() == 0) {
         validateHeaderRow(row, expectedHeaders);
@@ -62,8 +59,6 @@ public class ChemicalPathologyRefset extends Refset {
         continue;
       }
 
-      RefsetEntry refsetEntry = new RefsetEntry();
-
       String rcpaPreferredTerm = getStringValueFromCell(row, 0);
       Set<String> rcpaSynonyms = getDelimitedStringsFromCell(row, 1);
       CombiningResultsFlag combiningResultsFlag = getCombiningResultsFlagFromCell(row, 17);
@@ -74,7 +69,7 @@ public class ChemicalPathologyRefset extends Refset {
       try {
         loincCode = getLoincCodeFromCell(row, 9, terminologyClient);
       } catch (BlankCodeException | InvalidCodeException e) {
-        logger.warn(e.getMessage());
+        recordExcluded(row, e);
         continue;
       }
 
@@ -82,21 +77,13 @@ public class ChemicalPathologyRefset extends Refset {
       try {
         ucumCodes = getUcumCodesFromCell(ucumService, row, 8);
       } catch (BlankCodeException | InvalidCodeException e) {
-        logger.warn(e.getMessage());
-      }
-
-      // Populate information into RefsetEntry object.
-      refsetEntry.setRcpaPreferredTerm(rcpaPreferredTerm);
-      refsetEntry.getRcpaSynonyms().addAll(rcpaSynonyms);
-      refsetEntry.setCode(loincCode);
-      refsetEntry.setCombiningResultsFlag(combiningResultsFlag);
-      if (ucumCodes != null) {
-        refsetEntry.getUnitCodes().addAll(ucumCodes);
+        recordWarning(row, e);
       }
 
-      // Add RefsetEntry object to list.
-      refsetEntries.add(refsetEntry);
+      // Add the entry to the reference set.
+      entries.add(loincCode, rcpaPreferredTerm, rcpaSynonyms, ucumCodes, combiningResultsFlag);
     }
+    refsetEntries = entries.build();
   }
 
 
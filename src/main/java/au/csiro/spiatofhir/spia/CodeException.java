@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.spia;
+
+import au.csiro.spiatofhir.diagnostics.Diagnostic;
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Type;
+
+/**
+ * Thrown when encountering a problem with a code within a cell of the source data, which is
+ * reported as a diagnostic rather than failing the transform.
+ * <p>
+ * These are thrown routinely on noisy releases, so the message is only built when requested, and
+ * no stack trace is captured.
+ *
+ * @author John Grimes
+ */
+public abstract class CodeException extends Exception {
+
+  private final Type type;
+  private final String value;
+  private final String detail;
+  private final int rowIndex;
+  private final int columnIndex;
+
+  CodeException(Type type, String value, int rowIndex, int columnIndex) {
+    this(type, value, null, rowIndex, columnIndex);
+  }
+
+  CodeException(Type type, String value, String detail, int rowIndex, int columnIndex) {
+    super(null, null, false, false);
+    this.type = type;
+    this.value = value;
+    this.detail = detail;
+    this.rowIndex = rowIndex;
+    this.columnIndex = columnIndex;
+  }
+
+  @Override
+  public String getMessage() {
+    return ValidationException
+        .messageWithCoords(Diagnostic.describe(type, value, detail), rowIndex, columnIndex);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public String getDetail() {
+    return detail;
+  }
+
+  public int getRowIndex() {
+    return rowIndex;
+  }
+
+  public int getColumnIndex() {
+    return columnIndex;
+  }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.spia;
+
+/**
+ * The combining results flag that may be assigned to an entry within the chemical pathology
+ * reference set.
+ *
+ * @author John Grimes
+ */
+public enum CombiningResultsFlag {
+  RED("red"), GREEN("green"), ORANGE("orange");
+
+  private final String code;
+
+  CombiningResultsFlag(String code) {
+    this.code = code;
+  }
+
+  public String getCode() {
+    return code;
+  }
+}
@@ -16,22 +16,19 @@
 
 package au.csiro.spiatofhir.spia;
 
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
 import au.csiro.spiatofhir.fhir.TerminologyClient;
-import java.util.ArrayList;
 import java.util.Set;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.fhir.ucum.UcumService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * @author John Grimes
  */
 public class HaematologyRefset extends Refset {
 
-  protected static final Logger logger = LoggerFactory.getLogger(HaematologyRefset.class);
   protected static final String[] expectedHeaders = {"RCPA Preferred term", "RCPA Synonyms",
       "Usage guidance", "Subgroup_1", "Subgroup_2", "Length", "Specimen", "Unit", "UCUM", "LOINC",
       "Component", "Property", "Timing", "System", "Scale", "Method", "LongName", "Version",
@@ -40,8 +37,9 @@ public class HaematologyRefset extends Refset {
   private static final String SHEET_NAME = "Haem Term Ref Set v3.1";
 
   public HaematologyRefset(Workbook workbook,
-      TerminologyClient terminologyClient, UcumService ucumService) throws ValidationException {
-    super(workbook, terminologyClient, ucumService);
+      TerminologyClient terminologyClient, UcumService ucumService, DiagnosticsSink diagnostics,
+      StringTable strings) throws ValidationException {
+    super(workbook, terminologyClient, ucumService, diagnostics, strings);
   }
 
   @Override
@@ -50,8 +48,8 @@ public class HaematologyRefset extends Refset {
     if (sheet == null) {
       throw new ValidationException("Sheet not found: " + SHEET_NAME);
     }
-    refsetEntries = new ArrayList<>();
-    for (Row row : sheet) {
+    RefsetEntries.Builder entries = new RefsetEntries.Builder(strings);
+    for (Row row : rows(sheet)) {
       // Check that header row matches expectations.
       if (row.getRowNum() == 0) {
         validateHeaderRow(row, expectedHeaders);
@@ -62,8 +60,6 @@ public class HaematologyRefset extends Refset {
         continue;
       }
 
-      RefsetEntry refsetEntry = new RefsetEntry();
-
       String rcpaPreferredTerm = getStringValueFromCell(row, 0);
       Set<String> rcpaSynonyms = getDelimitedStringsFromCell(row, 1);
       String loincCode;
@@ -73,7 +69,7 @@ public class HaematologyRefset extends Refset {
       try {
         loincCode = getLoincCodeFromCell(row, 9, terminologyClient);
       } catch (BlankCodeException | InvalidCodeException e) {
-        logger.warn(e.getMessage());
+        recordExcluded(row, e);
         continue;
       }
 
@@ -81,20 +77,13 @@ public class HaematologyRefset extends Refset {
       try {
         ucumCodes = getUcumCodesFromCell(ucumService, row, 8);
       } catch (BlankCodeException | InvalidCodeException e) {
-        logger.warn(e.getMessage());
-      }
-
-      // Populate information into RefsetEntry object.
-      refsetEntry.setRcpaPreferredTerm(rcpaPreferredTerm);
-      refsetEntry.getRcpaSynonyms().addAll(rcpaSynonyms);
-      refsetEntry.setCode(loincCode);
-      if (ucumCodes != null) {
-        refsetEntry.getUnitCodes().addAll(ucumCodes);
+        recordWarning(row, e);
       }
 
-      // Add RefsetEntry object to list.
-      refsetEntries.add(refsetEntry);
+      // Add the entry to the reference set.
+      entries.add(loincCode, rcpaPreferredTerm, rcpaSynonyms, ucumCodes, null);
     }
+    refsetEntries = entries.build();
   }
 
 }
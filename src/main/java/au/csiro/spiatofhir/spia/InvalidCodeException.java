@@ -16,17 +16,22 @@
 
 package au.csiro.spiatofhir.spia;
 
-import static au.csiro.spiatofhir.spia.ValidationException.messageWithCoords;
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Type;
 
 /**
  * Thrown when encountering invalid codes within the source data.
  *
  * @author John Grimes
  */
-public class InvalidCodeException extends Exception {
+public class InvalidCodeException extends CodeException {
 
-  public InvalidCodeException(String message, int rowIndex, int columnIndex) {
-    super(messageWithCoords(message, rowIndex, columnIndex));
+  public InvalidCodeException(Type type, String value, int rowIndex, int columnIndex) {
+    super(type, value, rowIndex, columnIndex);
+  }
+
+  public InvalidCodeException(Type type, String value, String detail, int rowIndex,
+      int columnIndex) {
+    super(type, value, detail, rowIndex, columnIndex);
   }
 
 }
@@ -16,31 +16,28 @@
 
 package au.csiro.spiatofhir.spia;
 
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
 import au.csiro.spiatofhir.fhir.TerminologyClient;
-import java.util.ArrayList;
 import java.util.Set;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.fhir.ucum.UcumService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * @author John Grimes
  */
 public class MicrobiologySubsetOfOrganismsRefset extends Refset {
 
-  protected static final Logger logger = LoggerFactory
-      .getLogger(MicrobiologySubsetOfOrganismsRefset.class);
   protected static final String[] expectedHeaders = {"RCPA Preferred Organism name",
       "RCPA Synonyms", "Length", "Terminology binding (SNOMED CT-AU)", "Version", "History"};
   private static final String SHEET_NAME = "Organisms v3.1";
 
   public MicrobiologySubsetOfOrganismsRefset(Workbook workbook,
-      TerminologyClient terminologyClient, UcumService ucumService)
+      TerminologyClient terminologyClient, UcumService ucumService, DiagnosticsSink diagnostics,
+      StringTable strings)
       throws ValidationException {
-    super(workbook, terminologyClient, ucumService);
+    super(workbook, terminologyClient, ucumService, diagnostics, strings);
   }
 
   @Override
@@ -49,16 +46,14 @@ public class MicrobiologySubsetOfOrganismsRefset extends Refset {
     if (sheet == null) {
       throw new ValidationException("Sheet not found: " + SHEET_NAME);
     }
-    refsetEntries = new ArrayList<>();
-    for (Row row : sheet) {
+    RefsetEntries.Builder entries = new RefsetEntries.Builder(strings);
+    for (Row row : rows(sheet)) {
       // Check that header row matches expectations.
       if (row.getRowNum() == 0) {
         validateHeaderRow(row, expectedHeaders);
         continue;
       }
 
-      RefsetEntry refsetEntry = new RefsetEntry();
-
       // Extract information from row.
       String rcpaPreferredTerm = getStringValueFromCell(row, 0);
       Set<String> rcpaSynonyms = getDelimitedStringsFromCell(row, 1);
@@ -68,18 +63,14 @@ public class MicrobiologySubsetOfOrganismsRefset extends Refset {
       try {
         snomedCode = getSnomedCodeFromCell(row, 3, terminologyClient);
       } catch (BlankCodeException | InvalidCodeException e) {
-        logger.warn(e.getMessage());
+        recordExcluded(row, e);
         continue;
       }
 
-      // Populate information into RefsetEntry object.
-      refsetEntry.setRcpaPreferredTerm(rcpaPreferredTerm);
-      refsetEntry.getRcpaSynonyms().addAll(rcpaSynonyms);
-      refsetEntry.setCode(snomedCode);
-
-      // Add RefsetEntry object to list.
-      refsetEntries.add(refsetEntry);
+      // Add the entry to the reference set.
+      entries.add(snomedCode, rcpaPreferredTerm, rcpaSynonyms, null, null);
     }
+    refsetEntries = entries.build();
   }
 
 }
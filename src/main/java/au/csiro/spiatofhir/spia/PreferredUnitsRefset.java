@@ -16,32 +16,30 @@
 
 package au.csiro.spiatofhir.spia;
 
-import static au.csiro.spiatofhir.spia.ValidationException.messageWithCoords;
-
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Severity;
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Type;
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
 import au.csiro.spiatofhir.fhir.TerminologyClient;
-import java.util.ArrayList;
 import java.util.Set;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.fhir.ucum.UcumService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * @author John Grimes
  */
 public class PreferredUnitsRefset extends Refset {
 
-  protected static final Logger logger = LoggerFactory.getLogger(PreferredUnitsRefset.class);
   protected static final String[] expectedHeaders = {"Description", "Preferred Display ",
       "UCUM Unit", "Version", "History"};
   private static final String SHEET_NAME = "Preferred units v1.1";
 
   public PreferredUnitsRefset(Workbook workbook,
       TerminologyClient terminologyClient,
-      UcumService ucumService) throws ValidationException {
-    super(workbook, terminologyClient, ucumService);
+      UcumService ucumService, DiagnosticsSink diagnostics,
+      StringTable strings) throws ValidationException {
+    super(workbook, terminologyClient, ucumService, diagnostics, strings);
   }
 
   @Override
@@ -50,16 +48,14 @@ public class PreferredUnitsRefset extends Refset {
     if (sheet == null) {
       throw new ValidationException("Sheet not found: " + SHEET_NAME);
     }
-    refsetEntries = new ArrayList<>();
-    for (Row row : sheet) {
+    RefsetEntries.Builder entries = new RefsetEntries.Builder(strings);
+    for (Row row : rows(sheet)) {
       // Check that header row matches expectations.
       if (row.getRowNum() == 0) {
         validateHeaderRow(row, expectedHeaders);
         continue;
       }
 
-      RefsetEntry refsetEntry = new RefsetEntry();
-
       // Extract information from row.
       String rcpaPreferredTerm = getStringValueFromCell(row, 1);
       Set<String> ucumCodes = null;
@@ -68,24 +64,21 @@ public class PreferredUnitsRefset extends Refset {
       try {
         ucumCodes = getUcumCodesFromCell(ucumService, row, 2);
       } catch (BlankCodeException | InvalidCodeException e) {
-        logger.warn(e.getMessage());
+        recordExcluded(row, e);
         continue;
       }
 
       // Check that there is only one unit specified.
       if (ucumCodes.size() > 1) {
-        logger.warn(messageWithCoords("More than one code encountered in Preferred Units row",
-            row.getRowNum(), 2));
+        diagnostics.record(sheet.getSheetName(), row.getRowNum(), 2, Severity.WARNING,
+            Type.MULTIPLE_UNITS, null);
       }
       String ucumCode = (String) ucumCodes.toArray()[0];
 
-      // Populate information into RefsetEntry object.
-      refsetEntry.setRcpaPreferredTerm(rcpaPreferredTerm);
-      refsetEntry.setCode(ucumCode);
-
-      // Add RefsetEntry object to list.
-      refsetEntries.add(refsetEntry);
+      // Add the entry to the reference set.
+      entries.add(ucumCode, rcpaPreferredTerm, null, null, null);
     }
+    refsetEntries = entries.build();
 
   }
 }
@@ -16,21 +16,25 @@
 
 package au.csiro.spiatofhir.spia;
 
-import static au.csiro.spiatofhir.spia.ValidationException.messageWithCoords;
-
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Severity;
+import au.csiro.spiatofhir.diagnostics.Diagnostic.Type;
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
 import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.instrumentation.PhaseMetrics;
+import au.csiro.spiatofhir.instrumentation.FlightEvents;
+import au.csiro.spiatofhir.instrumentation.RowParseEvent;
+import au.csiro.spiatofhir.instrumentation.ThreadUsage;
 import au.csiro.spiatofhir.loinc.LoincCodeValidator;
 import au.csiro.spiatofhir.snomed.SnomedCodeValidator;
-import au.csiro.spiatofhir.spia.RefsetEntry.CombiningResultsFlag;
-import au.csiro.spiatofhir.utils.Strings;
+import au.csiro.spiatofhir.ucum.CachingUcumService;
+import au.csiro.spiatofhir.utils.CellNormaliser;
 import java.util.*;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.fhir.ucum.UcumService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Used for parsing a SPIA reference set from a specified workbook within the distribution.
@@ -40,8 +44,8 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class Refset {
 
-  private static final Logger logger = LoggerFactory.getLogger(Refset.class);
-  private static final String MULTI_VALUE_DELIMITER = ";";
+  private static final char MULTI_VALUE_DELIMITER = ';';
+  private static final char TERM_DELIMITER = '|';
   private static final Map<String, CombiningResultsFlag> combiningResultsFlagMap =
       new HashMap<String, CombiningResultsFlag>() {{
         put("Red", CombiningResultsFlag.RED);
@@ -51,23 +55,92 @@ public abstract class Refset {
   protected final Workbook workbook;
   protected final TerminologyClient terminologyClient;
   protected final UcumService ucumService;
-  protected List<RefsetEntry> refsetEntries;
+  protected final DiagnosticsSink diagnostics;
+  protected final StringTable strings;
+  private final PhaseMetrics validationMetrics = new PhaseMetrics();
+  private final CellNormaliser cellNormaliser = new CellNormaliser();
+  protected RefsetEntries refsetEntries;
 
+  /**
+   * @param strings the table used to intern the values of the entries, which may be shared with
+   * the other reference sets within the distribution
+   */
   public Refset(Workbook workbook, TerminologyClient terminologyClient,
-      UcumService ucumService) throws ValidationException {
+      UcumService ucumService, DiagnosticsSink diagnostics, StringTable strings)
+      throws ValidationException {
     this.workbook = workbook;
     this.terminologyClient = terminologyClient;
-    this.ucumService = ucumService;
+    this.ucumService = CachingUcumService.of(ucumService);
+    this.diagnostics = diagnostics;
+    this.strings = strings;
     parse();
   }
 
   protected void parse() throws ValidationException {
   }
 
-  public List<RefsetEntry> getRefsetEntries() {
+  public RefsetEntries getRefsetEntries() {
     return refsetEntries;
   }
 
+  /**
+   * Returns the time and memory spent validating codes while parsing this reference set.
+   */
+  public PhaseMetrics getValidationMetrics() {
+    return validationMetrics;
+  }
+
+  /**
+   * Iterates over the rows of a sheet, recording a flight recorder event for the parsing of each
+   * row. The parsing of a row is considered to be finished when the next row is requested.
+   */
+  protected Iterable<Row> rows(Sheet sheet) {
+    return () -> new Iterator<Row>() {
+      private final Iterator<Row> delegate = sheet.iterator();
+      private RowParseEvent event;
+
+      @Override
+      public boolean hasNext() {
+        if (event != null) {
+          event.commit();
+          event = null;
+        }
+        return delegate.hasNext();
+      }
+
+      @Override
+      public Row next() {
+        Row row = delegate.next();
+        if (FlightEvents.AVAILABLE) {
+          RowParseEvent next = new RowParseEvent();
+          if (next.isEnabled()) {
+            next.sheet = sheet.getSheetName();
+            next.rowNumber = row.getRowNum();
+            next.begin();
+            event = next;
+          }
+        }
+        return row;
+      }
+    };
+  }
+
+  /**
+   * Records a problem with a code that has caused the row to be excluded.
+   */
+  protected void recordExcluded(Row row, CodeException e) {
+    diagnostics.record(row.getSheet().getSheetName(), e.getRowIndex(), e.getColumnIndex(),
+        Severity.ERROR, e.getType(), e.getValue(), e.getDetail());
+  }
+
+  /**
+   * Records a problem with a code that has not prevented the row from being included.
+   */
+  protected void recordWarning(Row row, CodeException e) {
+    diagnostics.record(row.getSheet().getSheetName(), e.getRowIndex(), e.getColumnIndex(),
+        Severity.WARNING, e.getType(), e.getValue(), e.getDetail());
+  }
+
   /**
    * Throws an exception if the supplied spreadsheet row does not match the specified array of
    * expected headers.
@@ -90,42 +163,61 @@ public abstract class Refset {
    * string.
    */
   protected String getStringValueFromCell(Row row, int cellNumber) throws ValidationException {
-    Cell cell = row.getCell(cellNumber, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+    Cell cell = getStringCell(row, cellNumber);
     if (cell == null) {
       return null;
     }
-    if (cell.getCellType() != CellType.STRING) {
+    return scanCell(row, cell).getValue();
+  }
+
+  /**
+   * Returns the distinct values within the specified cell, separated by the multi-value delimiter.
+   * Each value is trimmed, and a warning is recorded for each value with extraneous whitespace.
+   */
+  protected Set<String> getDelimitedStringsFromCell(Row row, int cellNumber)
+      throws ValidationException {
+    Cell cell = getStringCell(row, cellNumber);
+    Set<String> delimitedStrings = new TreeSet<>();
+    if (cell != null) {
+      CellNormaliser normaliser = scanCell(row, cell, MULTI_VALUE_DELIMITER);
+      for (int i = 0; i < normaliser.getPartCount(); i++) {
+        if (normaliser.partHasExtraneousWhitespace(i)) {
+          diagnostics.record(row.getSheet().getSheetName(), row.getRowNum(), cellNumber,
+              Severity.WARNING, Type.DELIMITED_VALUE_WHITESPACE, normaliser.getUntrimmedPart(i));
+        }
+        delimitedStrings.add(normaliser.getPart(i));
+      }
+    }
+    return delimitedStrings;
+  }
+
+  private Cell getStringCell(Row row, int cellNumber) throws CellValidationException {
+    Cell cell = row.getCell(cellNumber, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+    if (cell != null && cell.getCellType() != CellType.STRING) {
       throw new CellValidationException(
           "Cell identified for extraction of string value is not of string type, " +
               "actual type: " + cell.getCellType().toString(),
           cell.getRowIndex(), cell.getColumnIndex());
     }
-    final String trimmedValue = Strings.trim(cell.getStringCellValue());
-    if (!cell.getStringCellValue().equals(trimmedValue)) {
-      String message =
-          "Encountered cell with leading or trailing whitespace, \"" + cell.getStringCellValue()
-              + "\"";
-      logger.warn(messageWithCoords(message, cell.getRowIndex(), cell.getColumnIndex()));
-    }
-    return trimmedValue;
+    return cell;
   }
 
-  protected Set<String> getDelimitedStringsFromCell(Row row, int cellNumber)
-      throws ValidationException {
-    String rawValue = getStringValueFromCell(row, cellNumber);
-    Set<String> delimitedStrings = new HashSet<>();
-    if (rawValue != null) {
-      Arrays.stream(rawValue.split(MULTI_VALUE_DELIMITER)).forEach(s -> {
-        String trimmedValue = Strings.trim(s);
-        if (!s.equals(trimmedValue)) {
-          String message =
-              "Encountered delimited value with leading or trailing whitespace, \"" + s + "\"";
-          logger.warn(messageWithCoords(message, row.getRowNum(), cellNumber));
-        }
-        delimitedStrings.add(trimmedValue);
-      });
+  private CellNormaliser scanCell(Row row, Cell cell) {
+    return recordCellWhitespace(row, cell, cellNormaliser.scan(cell.getStringCellValue()));
+  }
+
+  private CellNormaliser scanCell(Row row, Cell cell, char delimiter) {
+    return recordCellWhitespace(row, cell,
+        cellNormaliser.scan(cell.getStringCellValue(), delimiter));
+  }
+
+  private CellNormaliser recordCellWhitespace(Row row, Cell cell, CellNormaliser normaliser) {
+    if (normaliser.hasExtraneousWhitespace()) {
+      diagnostics.record(row.getSheet().getSheetName(), cell.getRowIndex(),
+          cell.getColumnIndex(), Severity.WARNING, Type.CELL_WHITESPACE,
+          cell.getStringCellValue());
     }
-    return delimitedStrings;
+    return normaliser;
   }
 
   /**
@@ -138,21 +230,27 @@ public abstract class Refset {
       throws ValidationException, InvalidCodeException, BlankCodeException {
     Cell cell = row.getCell(cellNumber, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
     if (cell == null) {
-      throw new BlankCodeException("Blank SNOMED code encountered", row.getRowNum(), cellNumber);
+      throw new BlankCodeException(Type.BLANK_SNOMED_CODE, row.getRowNum(), cellNumber);
     }
-    String cellValue = getStringValueFromCell(row, cellNumber).split("\\|")[0];
-    cellValue = Strings.trim(cellValue);
+    // Any preferred term after the identifier is delimited by pipes.
+    CellNormaliser normaliser = scanCell(row, getStringCell(row, cellNumber), TERM_DELIMITER);
+    String cellValue = normaliser.getPartCount() == 0
+        ? ""
+        : normaliser.getPart(0);
     // Check for the validity of the SNOMED code.
-    SnomedCodeValidator snomedCodeValidator = new SnomedCodeValidator(terminologyClient);
-    if (!snomedCodeValidator.validate(cellValue)) {
-      throw new InvalidCodeException("Invalid SNOMED code encountered: \"" + cellValue + "\"",
-          cell.getRowIndex(),
-          cell.getColumnIndex());
-    }
-    if (!snomedCodeValidator.checkActive(cellValue)) {
-      throw new InvalidCodeException("Inactive SNOMED code encountered: \"" + cellValue + "\"",
-          cell.getRowIndex(),
-          cell.getColumnIndex());
+    ThreadUsage validationStart = ThreadUsage.now();
+    try {
+      SnomedCodeValidator snomedCodeValidator = new SnomedCodeValidator(terminologyClient);
+      if (!snomedCodeValidator.validate(cellValue)) {
+        throw new InvalidCodeException(Type.INVALID_SNOMED_CODE, cellValue,
+            cell.getRowIndex(), cell.getColumnIndex());
+      }
+      if (!snomedCodeValidator.checkActive(cellValue)) {
+        throw new InvalidCodeException(Type.INACTIVE_SNOMED_CODE, cellValue,
+            cell.getRowIndex(), cell.getColumnIndex());
+      }
+    } finally {
+      validationMetrics.addSince(validationStart, 1);
     }
     return cellValue;
   }
@@ -166,20 +264,23 @@ public abstract class Refset {
       throws ValidationException, InvalidCodeException, BlankCodeException {
     Cell cell = row.getCell(cellNumber, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
     if (cell == null) {
-      throw new BlankCodeException("Blank LOINC code encountered", row.getRowNum(), cellNumber);
+      throw new BlankCodeException(Type.BLANK_LOINC_CODE, row.getRowNum(), cellNumber);
     }
     String cellValue = getStringValueFromCell(row, cellNumber);
     // Check for the validity of the LOINC code.
-    LoincCodeValidator loincCodeValidator = new LoincCodeValidator(terminologyClient);
-    if (!loincCodeValidator.validate(cellValue)) {
-      throw new InvalidCodeException("Invalid LOINC code encountered: \"" + cellValue + "\"",
-          cell.getRowIndex(),
-          cell.getColumnIndex());
-    }
-    if (!loincCodeValidator.checkActive(cellValue)) {
-      throw new InvalidCodeException("Inactive LOINC code encountered: \"" + cellValue + "\"",
-          cell.getRowIndex(),
-          cell.getColumnIndex());
+    ThreadUsage validationStart = ThreadUsage.now();
+    try {
+      LoincCodeValidator loincCodeValidator = new LoincCodeValidator(terminologyClient);
+      if (!loincCodeValidator.validate(cellValue)) {
+        throw new InvalidCodeException(Type.INVALID_LOINC_CODE, cellValue,
+            cell.getRowIndex(), cell.getColumnIndex());
+      }
+      if (!loincCodeValidator.checkActive(cellValue)) {
+        throw new InvalidCodeException(Type.INACTIVE_LOINC_CODE, cellValue,
+            cell.getRowIndex(), cell.getColumnIndex());
+      }
+    } finally {
+      validationMetrics.addSince(validationStart, 1);
     }
     return cellValue;
   }
@@ -192,7 +293,7 @@ public abstract class Refset {
       throws BlankCodeException, ValidationException, InvalidCodeException {
     Cell cell = row.getCell(cellNumber, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
     if (cell == null) {
-      throw new BlankCodeException("Blank UCUM code encountered", row.getRowNum(), cellNumber);
+      throw new BlankCodeException(Type.BLANK_UCUM_CODE, row.getRowNum(), cellNumber);
     }
     if (cell.getCellType() != CellType.STRING) {
       throw new CellValidationException(
@@ -201,18 +302,19 @@ public abstract class Refset {
     }
     // Unit cells can contain multiple units.
     Set<String> cellValues = getDelimitedStringsFromCell(row, cellNumber);
-    Set<String> results = new HashSet<>();
+    Set<String> results = new TreeSet<>();
     for (String cellValue : cellValues) {
       if (cellValue.equals("No unit")) {
-        return new HashSet<>();
+        return new TreeSet<>();
       }
       // Check for the validity of the UCUM code. One invalid code within the cell will forfeit all
       // codes within the cell.
+      ThreadUsage validationStart = ThreadUsage.now();
       String result = ucumService.validate(cellValue);
+      validationMetrics.addSince(validationStart, 1);
       if (result != null) {
-        throw new InvalidCodeException("UCUM code validation failed: \"" + result + "\"",
-            cell.getRowIndex(),
-            cell.getColumnIndex());
+        throw new InvalidCodeException(Type.INVALID_UCUM_CODE, cellValue, result,
+            cell.getRowIndex(), cell.getColumnIndex());
       }
       results.add(cellValue);
     }
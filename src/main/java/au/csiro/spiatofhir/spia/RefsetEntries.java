@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.spia;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Holds the data captured from the entries of a SPIA reference set in columns, rather than as an
+ * object for each entry. Not all columns are applicable to the entries of all reference sets.
+ * <p>
+ * The synonyms and unit codes of all of the entries are each held within a single array, with
+ * the values for each entry located using an array of offsets. They are held in sorted order, so
+ * that the order in which they are iterated (and hence the order of the resulting designations and
+ * ConceptMap targets) is stable between runs.
+ * <p>
+ * Codes and unit codes are interned using a {@link StringTable}, which is shared between the
+ * reference sets of a distribution. Preferred terms and synonyms are rarely repeated, so they are
+ * held as they are.
+ *
+ * @author John Grimes
+ */
+public class RefsetEntries {
+
+  private static final byte NO_FLAG = -1;
+  private static final CombiningResultsFlag[] flagValues = CombiningResultsFlag.values();
+  private final int size;
+  private final String[] codes;
+  private final String[] rcpaPreferredTerms;
+  private final byte[] combiningResultsFlags;
+  private final int[] rcpaSynonymOffsets;
+  private final String[] rcpaSynonyms;
+  private final int[] unitCodeOffsets;
+  private final String[] unitCodes;
+
+  private RefsetEntries(Builder builder) {
+    size = builder.size;
+    codes = Arrays.copyOf(builder.codes, size);
+    rcpaPreferredTerms = Arrays.copyOf(builder.rcpaPreferredTerms, size);
+    combiningResultsFlags = Arrays.copyOf(builder.combiningResultsFlags, size);
+    rcpaSynonymOffsets = Arrays.copyOf(builder.rcpaSynonymOffsets, size + 1);
+    rcpaSynonyms = Arrays.copyOf(builder.rcpaSynonyms, rcpaSynonymOffsets[size]);
+    unitCodeOffsets = Arrays.copyOf(builder.unitCodeOffsets, size + 1);
+    unitCodes = Arrays.copyOf(builder.unitCodes, unitCodeOffsets[size]);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String getCode(int entry) {
+    return codes[entry];
+  }
+
+  public String getRcpaPreferredTerm(int entry) {
+    return rcpaPreferredTerms[entry];
+  }
+
+  public CombiningResultsFlag getCombiningResultsFlag(int entry) {
+    byte flag = combiningResultsFlags[entry];
+    return flag == NO_FLAG
+        ? null
+        : flagValues[flag];
+  }
+
+  public int getRcpaSynonymCount(int entry) {
+    return rcpaSynonymOffsets[entry + 1] - rcpaSynonymOffsets[entry];
+  }
+
+  public String getRcpaSynonym(int entry, int index) {
+    return rcpaSynonyms[rcpaSynonymOffsets[entry] + index];
+  }
+
+  public int getUnitCodeCount(int entry) {
+    return unitCodeOffsets[entry + 1] - unitCodeOffsets[entry];
+  }
+
+  public String getUnitCode(int entry, int index) {
+    return unitCodes[unitCodeOffsets[entry] + index];
+  }
+
+  /**
+   * Accumulates the entries of a reference set as it is parsed. Not thread-safe.
+   */
+  public static class Builder {
+
+    private final StringTable strings;
+    private int size;
+    private String[] codes = new String[64];
+    private String[] rcpaPreferredTerms = new String[64];
+    private byte[] combiningResultsFlags = new byte[64];
+    private int[] rcpaSynonymOffsets = new int[65];
+    private String[] rcpaSynonyms = new String[64];
+    private int[] unitCodeOffsets = new int[65];
+    private String[] unitCodes = new String[64];
+
+    public Builder(StringTable strings) {
+      this.strings = strings;
+    }
+
+    /**
+     * Adds an entry. Any of the arguments may be null, if not applicable to the reference set.
+     */
+    public Builder add(String code, String rcpaPreferredTerm, Set<String> rcpaSynonyms,
+        Set<String> unitCodes, CombiningResultsFlag combiningResultsFlag) {
+      if (size == codes.length) {
+        int capacity = size * 2;
+        codes = Arrays.copyOf(codes, capacity);
+        rcpaPreferredTerms = Arrays.copyOf(rcpaPreferredTerms, capacity);
+        combiningResultsFlags = Arrays.copyOf(combiningResultsFlags, capacity);
+        rcpaSynonymOffsets = Arrays.copyOf(rcpaSynonymOffsets, capacity + 1);
+        unitCodeOffsets = Arrays.copyOf(unitCodeOffsets, capacity + 1);
+      }
+      codes[size] = strings.intern(code);
+      rcpaPreferredTerms[size] = rcpaPreferredTerm;
+      combiningResultsFlags[size] = combiningResultsFlag == null
+          ? NO_FLAG
+          : (byte) combiningResultsFlag.ordinal();
+      this.rcpaSynonyms = append(this.rcpaSynonyms, rcpaSynonymOffsets, rcpaSynonyms, null);
+      this.unitCodes = append(this.unitCodes, unitCodeOffsets, unitCodes, strings);
+      size++;
+      return this;
+    }
+
+    /**
+     * Appends the supplied values to a column in sorted order, interning them if a table is
+     * supplied, and records the offset of the end of the values for the current entry.
+     */
+    private String[] append(String[] values, int[] offsets, Set<String> toAdd,
+        StringTable table) {
+      int offset = offsets[size];
+      if (toAdd != null && !toAdd.isEmpty()) {
+        SortedSet<String> sorted = toAdd instanceof SortedSet
+            && ((SortedSet<String>) toAdd).comparator() == null
+            ? (SortedSet<String>) toAdd
+            : new TreeSet<>(toAdd);
+        if (offset + sorted.size() > values.length) {
+          values = Arrays.copyOf(values, Math.max(values.length * 2, offset + sorted.size()));
+        }
+        for (String value : sorted) {
+          values[offset++] = table == null
+              ? value
+              : table.intern(value);
+        }
+      }
+      offsets[size + 1] = offset;
+      return values;
+    }
+
+    public RefsetEntries build() {
+      return new RefsetEntries(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.spia;
+
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
+import au.csiro.spiatofhir.fhir.TerminologyClient;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.fhir.ucum.UcumService;
+
+/**
+ * Parses a SPIA reference set from a workbook within the distribution.
+ *
+ * @author John Grimes
+ */
+@FunctionalInterface
+public interface RefsetParser {
+
+  Refset parse(Workbook workbook, TerminologyClient terminologyClient, UcumService ucumService,
+      DiagnosticsSink diagnostics, StringTable strings) throws ValidationException;
+
+}
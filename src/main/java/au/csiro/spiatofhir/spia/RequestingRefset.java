@@ -16,22 +16,19 @@
 
 package au.csiro.spiatofhir.spia;
 
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
 import au.csiro.spiatofhir.fhir.TerminologyClient;
-import java.util.ArrayList;
 import java.util.Set;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.fhir.ucum.UcumService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * @author John Grimes
  */
 public class RequestingRefset extends Refset {
 
-  protected static final Logger logger = LoggerFactory.getLogger(RequestingRefset.class);
   protected static final String[] expectedHeaders =
       {"RCPA Preferred term", "RCPA Synonyms", "Usage guidance", "Length", "Discipline", "SNOMED ",
           "Subgroup", "SNOMED", "Specimen", "Terminology binding (SNOMED CT-AU)", "Version",
@@ -39,9 +36,10 @@ public class RequestingRefset extends Refset {
   private static final String SHEET_NAME = "SPIA Requesting terms v3.1";
 
   public RequestingRefset(Workbook workbook,
-      TerminologyClient terminologyClient, UcumService ucumService)
+      TerminologyClient terminologyClient, UcumService ucumService, DiagnosticsSink diagnostics,
+      StringTable strings)
       throws ValidationException {
-    super(workbook, terminologyClient, ucumService);
+    super(workbook, terminologyClient, ucumService, diagnostics, strings);
   }
 
   @Override
@@ -50,16 +48,14 @@ public class RequestingRefset extends Refset {
     if (sheet == null) {
       throw new ValidationException("Sheet not found: " + SHEET_NAME);
     }
-    refsetEntries = new ArrayList<>();
-    for (Row row : sheet) {
+    RefsetEntries.Builder entries = new RefsetEntries.Builder(strings);
+    for (Row row : rows(sheet)) {
       // Check that header row matches expectations.
       if (row.getRowNum() == 0) {
         validateHeaderRow(row, expectedHeaders);
         continue;
       }
 
-      RefsetEntry refsetEntry = new RefsetEntry();
-
       // Extract information from row.
       String rcpaPreferredTerm = getStringValueFromCell(row, 0);
       Set<String> rcpaSynonyms = getDelimitedStringsFromCell(row, 1);
@@ -69,18 +65,14 @@ public class RequestingRefset extends Refset {
       try {
         snomedCode = getSnomedCodeFromCell(row, 9, terminologyClient);
       } catch (BlankCodeException | InvalidCodeException e) {
-        logger.warn(e.getMessage());
+        recordExcluded(row, e);
         continue;
       }
 
-      // Populate information into RefsetEntry object.
-      refsetEntry.setRcpaPreferredTerm(rcpaPreferredTerm);
-      refsetEntry.getRcpaSynonyms().addAll(rcpaSynonyms);
-      refsetEntry.setCode(snomedCode);
-
-      // Add RefsetEntry object to list.
-      refsetEntries.add(refsetEntry);
+      // Add the entry to the reference set.
+      entries.add(snomedCode, rcpaPreferredTerm, rcpaSynonyms, null, null);
     }
+    refsetEntries = entries.build();
   }
 
 }
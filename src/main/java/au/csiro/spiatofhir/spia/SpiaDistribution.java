@@ -23,15 +23,21 @@ import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.MICROB
 import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.MICROBIOLOGY_SEROLOGY_MOLECULAR;
 import static au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry.REQUESTING;
 
+import au.csiro.spiatofhir.diagnostics.DiagnosticsCollector;
+import au.csiro.spiatofhir.diagnostics.DiagnosticsSink;
 import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.ucum.CachingUcumService;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -45,10 +51,12 @@ import org.slf4j.LoggerFactory;
  * Represents the distribution ZIP file used to house the SPIA distribution. Parses each reference
  * set and provides them back as objects, which can then be used by the classes responsible for the
  * FHIR transform.
+ * <p>
+ * A directory containing the extracted contents of the ZIP file can also be used.
  *
  * @author John Grimes
  */
-public class SpiaDistribution {
+public class SpiaDistribution implements Closeable {
 
   // Map to the files within the distribution that contain each reference set.
   private static final Map<DistributionEntry, String> expectedEntries = new EnumMap<DistributionEntry, String>(
@@ -70,28 +78,73 @@ public class SpiaDistribution {
   }};
   private static final Logger logger = LoggerFactory.getLogger(SpiaDistribution.class);
   private ZipFile zipFile;
-  private final Map<DistributionEntry, Refset> refsets = new EnumMap<>(DistributionEntry.class);
+  private File directory;
+  private final Map<DistributionEntry, Refset> refsets = Collections
+      .synchronizedMap(new EnumMap<>(DistributionEntry.class));
   private TerminologyClient terminologyClient;
   private UcumService ucumService;
+  private DiagnosticsCollector diagnosticsCollector;
+  private final StringTable strings = new StringTable();
 
   public SpiaDistribution(File file, TerminologyClient terminologyClient, UcumService ucumService)
       throws IOException, ValidationException {
-    zipFile = new ZipFile(file);
+    this(file, terminologyClient, ucumService, null, true);
+  }
+
+  private SpiaDistribution(File file, TerminologyClient terminologyClient,
+      UcumService ucumService, DiagnosticsCollector diagnosticsCollector, boolean parse)
+      throws IOException, ValidationException {
+    if (file.isDirectory()) {
+      directory = file;
+    } else {
+      zipFile = new ZipFile(file);
+    }
     this.terminologyClient = terminologyClient;
-    this.ucumService = ucumService;
+    // The UCUM service is shared between reference sets, which may be parsed concurrently.
+    this.ucumService = CachingUcumService.of(ucumService);
+    this.diagnosticsCollector = diagnosticsCollector;
     validate();
-    parseRefsets();
+    if (parse) {
+      parseRefsets();
+    }
+  }
+
+  /**
+   * Opens and validates the structure of the distribution, without parsing any of the reference
+   * sets. The reference sets can then be read and parsed individually using {@link
+   * #readWorkbook(DistributionEntry)} and {@link #parseRefset(DistributionEntry, Workbook)}.
+   */
+  public static SpiaDistribution open(File file, TerminologyClient terminologyClient,
+      UcumService ucumService) throws IOException, ValidationException {
+    return new SpiaDistribution(file, terminologyClient, ucumService, null, false);
+  }
+
+  /**
+   * Opens the distribution without parsing any of the reference sets, as per {@link
+   * #open(File, TerminologyClient, UcumService)}. Any issues encountered within the rows of the
+   * reference sets will be sent to the supplied collector, rather than being logged as they occur.
+   */
+  public static SpiaDistribution open(File file, TerminologyClient terminologyClient,
+      UcumService ucumService, DiagnosticsCollector diagnosticsCollector)
+      throws IOException, ValidationException {
+    return new SpiaDistribution(file, terminologyClient, ucumService, diagnosticsCollector,
+        false);
   }
 
   private InputStream getNamedEntryAsStream(DistributionEntry distributionEntry)
       throws IOException {
-    ZipEntry entry = zipFile.getEntry(expectedEntries.get(distributionEntry));
-    logger.info("Reading file: \"" + entry.getName() + "\"");
-    return zipFile.getInputStream(entry);
+    String name = expectedEntries.get(distributionEntry);
+    logger.info("Reading file: \"" + name + "\"");
+    if (directory != null) {
+      return new FileInputStream(new File(directory, name));
+    }
+    return zipFile.getInputStream(zipFile.getEntry(name));
   }
 
   private void validate() throws ValidationException {
-    List<String> entryNames = zipFile.stream().map(ZipEntry::getName).collect(Collectors.toList());
+    List<String> entryNames = directory != null
+        ? Arrays.asList(Objects.requireNonNull(directory.list()))
+        : zipFile.stream().map(ZipEntry::getName).collect(Collectors.toList());
     for (String expectedEntryName : expectedEntries.values()) {
       if (!entryNames.contains(expectedEntryName)) {
         throw new ValidationException(
@@ -102,51 +155,88 @@ public class SpiaDistribution {
 
   private void parseRefsets() throws ValidationException, IOException {
     for (DistributionEntry entry : expectedEntries.keySet()) {
-      InputStream inputStream = getNamedEntryAsStream(entry);
-      Workbook workbook;
-      try {
-        workbook = WorkbookFactory.create(inputStream);
-      } catch (IOException e) {
-        throw new ValidationException(
-            "Error reading entry from ZIP file: " + expectedEntries.get(entry), e);
-      }
-      Refset parsedRefset;
-      try {
-        //noinspection unchecked
-        Constructor constructor = entry.getParsingClass()
-            .getConstructor(Workbook.class, TerminologyClient.class, UcumService.class);
-        parsedRefset = (Refset) constructor
-            .newInstance(workbook, terminologyClient, ucumService);
-      } catch (InvocationTargetException e) {
-        throw new RuntimeException("Error instantiating reference set parser", e.getCause());
-      } catch (InstantiationException | IllegalAccessException | NoSuchMethodException e) {
-        throw new RuntimeException("Error instantiating reference set parser", e);
-      }
-      refsets.put(entry, parsedRefset);
+      parseRefset(entry, readWorkbook(entry));
     }
   }
 
+  /**
+   * Reads the workbook for the specified entry from the ZIP file. The workbook is read into memory,
+   * so that the underlying file is not held open (or locked) after this returns.
+   */
+  public Workbook readWorkbook(DistributionEntry entry) throws ValidationException, IOException {
+    try (InputStream inputStream = getNamedEntryAsStream(entry)) {
+      return WorkbookFactory.create(inputStream);
+    } catch (IOException e) {
+      throw new ValidationException(
+          "Error reading entry from ZIP file: " + expectedEntries.get(entry), e);
+    }
+  }
+
+  /**
+   * Parses and validates the reference set within the supplied workbook, and retains the result.
+   * This is safe to call concurrently for different entries.
+   */
+  public Refset parseRefset(DistributionEntry entry, Workbook workbook)
+      throws ValidationException {
+    DiagnosticsSink diagnostics = diagnosticsCollector == null
+        ? DiagnosticsSink.logging()
+        : diagnosticsCollector.forWorkbook(expectedEntries.get(entry));
+    Refset parsedRefset = entry.getParser()
+        .parse(workbook, terminologyClient, ucumService, diagnostics, strings);
+    refsets.put(entry, parsedRefset);
+    return parsedRefset;
+  }
+
   public Map<DistributionEntry, Refset> getRefsets() {
     return refsets;
   }
 
+  /**
+   * Returns a value which changes whenever the content of the file for the specified entry
+   * changes. This is the CRC and size of the ZIP entry, or the modification time and size of the
+   * file when reading from a directory.
+   */
+  public String getFingerprint(DistributionEntry entry) {
+    String name = expectedEntries.get(entry);
+    if (directory != null) {
+      File file = new File(directory, name);
+      return file.lastModified() + ":" + file.length();
+    }
+    ZipEntry zipEntry = zipFile.getEntry(name);
+    return zipEntry.getCrc() + ":" + zipEntry.getSize();
+  }
+
+  /**
+   * Returns the name of the file within the distribution that contains the specified entry.
+   */
+  public static String getFileName(DistributionEntry entry) {
+    return expectedEntries.get(entry);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (zipFile != null) {
+      zipFile.close();
+    }
+  }
+
   public enum DistributionEntry {
-    REQUESTING(RequestingRefset.class),
-    CHEMICAL(ChemicalPathologyRefset.class),
-    HAEMATOLOGY(HaematologyRefset.class),
-    IMMUNOPATHOLOGY(ImmunopathologyRefset.class),
-    MICROBIOLOGY_SEROLOGY_MOLECULAR(MicrobiologySerologyMolecularRefset.class),
-    MICROBIOLOGY_ORGANISMS(MicrobiologySubsetOfOrganismsRefset.class),
-    PREFERRED_UNITS(PreferredUnitsRefset.class);
-
-    private final Class parsingClass;
-
-    DistributionEntry(Class parsingClass) {
-      this.parsingClass = parsingClass;
+    REQUESTING(RequestingRefset::new),
+    CHEMICAL(ChemicalPathologyRefset::new),
+    HAEMATOLOGY(HaematologyRefset::new),
+    IMMUNOPATHOLOGY(ImmunopathologyRefset::new),
+    MICROBIOLOGY_SEROLOGY_MOLECULAR(MicrobiologySerologyMolecularRefset::new),
+    MICROBIOLOGY_ORGANISMS(MicrobiologySubsetOfOrganismsRefset::new),
+    PREFERRED_UNITS(PreferredUnitsRefset::new);
+
+    private final RefsetParser parser;
+
+    DistributionEntry(RefsetParser parser) {
+      this.parser = parser;
     }
 
-    public Class getParsingClass() {
-      return parsingClass;
+    public RefsetParser getParser() {
+      return parser;
     }
   }
 
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.spia;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A table of canonical string instances, shared between the reference sets of a distribution so
+ * that values which are repeated across rows and sheets (such as unit codes and codes that are
+ * used in more than one reference set) are only held in memory once.
+ * <p>
+ * This is safe to use from multiple threads, as reference sets may be parsed concurrently.
+ *
+ * @author John Grimes
+ */
+public class StringTable {
+
+  private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the canonical instance of the supplied value, which will be the value itself if it is
+   * the first time it has been seen.
+   */
+  public String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    String existing = strings.putIfAbsent(value, value);
+    return existing == null
+        ? value
+        : existing;
+  }
+
+  public int size() {
+    return strings.size();
+  }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.ucum;
+
+import au.csiro.spiatofhir.instrumentation.CacheCounts;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.fhir.ucum.Concept;
+import org.fhir.ucum.ConceptKind;
+import org.fhir.ucum.Decimal;
+import org.fhir.ucum.DefinedUnit;
+import org.fhir.ucum.Pair;
+import org.fhir.ucum.UcumException;
+import org.fhir.ucum.UcumModel;
+import org.fhir.ucum.UcumService;
+
+/**
+ * A UCUM service which can be safely shared between threads, and which caches the results of
+ * validating units and getting their canonical forms. The same small number of units are repeated
+ * across thousands of rows within the SPIA reference sets, so most of these calls are answered
+ * from the cache without taking a lock.
+ * <p>
+ * All other calls are passed through to the underlying service, one at a time.
+ *
+ * @author John Grimes
+ */
+public class CachingUcumService implements UcumService {
+
+  private final UcumService delegate;
+  // The result of validation is null for a valid unit, which cannot be stored in the map.
+  private final Map<String, Optional<String>> validations;
+  private final Map<String, String> canonicalUnits;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+  private final CacheCounts counts;
+
+  public CachingUcumService(UcumService delegate) {
+    this(delegate, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new AtomicLong(),
+        new AtomicLong(), null);
+  }
+
+  private CachingUcumService(UcumService delegate, Map<String, Optional<String>> validations,
+      Map<String, String> canonicalUnits, AtomicLong hits, AtomicLong misses,
+      CacheCounts counts) {
+    this.delegate = delegate;
+    this.validations = validations;
+    this.canonicalUnits = canonicalUnits;
+    this.hits = hits;
+    this.misses = misses;
+    this.counts = counts;
+  }
+
+  /**
+   * Returns a service which shares the cache and counts of this one, but which also adds the hits
+   * and misses of the calls made through it to the supplied counts.
+   */
+  public CachingUcumService withCounts(CacheCounts counts) {
+    return new CachingUcumService(delegate, validations, canonicalUnits, hits, misses, counts);
+  }
+
+  /**
+   * Returns the supplied service if it is already caching, otherwise wraps it in a new cache.
+   */
+  public static CachingUcumService of(UcumService ucumService) {
+    return ucumService instanceof CachingUcumService
+        ? (CachingUcumService) ucumService
+        : new CachingUcumService(ucumService);
+  }
+
+  @Override
+  public String validate(String unit) {
+    Optional<String> result = validations.get(unit);
+    if (result == null) {
+      recordMiss();
+      synchronized (delegate) {
+        result = Optional.ofNullable(delegate.validate(unit));
+      }
+      validations.putIfAbsent(unit, result);
+    } else {
+      recordHit();
+    }
+    return result.orElse(null);
+  }
+
+  /**
+   * Returns the canonical form of the unit. Units which cannot be converted are not cached, so the
+   * same exception is raised by the underlying service each time.
+   */
+  @Override
+  public String getCanonicalUnits(String unit) throws UcumException {
+    String result = canonicalUnits.get(unit);
+    if (result == null) {
+      recordMiss();
+      synchronized (delegate) {
+        result = delegate.getCanonicalUnits(unit);
+      }
+      canonicalUnits.putIfAbsent(unit, result);
+    } else {
+      recordHit();
+    }
+    return result;
+  }
+
+  private void recordHit() {
+    hits.incrementAndGet();
+    if (counts != null) {
+      counts.recordHit();
+    }
+  }
+
+  private void recordMiss() {
+    misses.incrementAndGet();
+    if (counts != null) {
+      counts.recordMiss();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the proportion of calls that were answered from the cache, or zero if there have been
+   * none.
+   */
+  public double getHitRate() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  public int size() {
+    return validations.size() + canonicalUnits.size();
+  }
+
+  @Override
+  public UcumModel getModel() {
+    synchronized (delegate) {
+      return delegate.getModel();
+    }
+  }
+
+  @Override
+  public UcumVersionDetails ucumIdentification() {
+    synchronized (delegate) {
+      return delegate.ucumIdentification();
+    }
+  }
+
+  @Override
+  public List<String> validateUCUM() {
+    synchronized (delegate) {
+      return delegate.validateUCUM();
+    }
+  }
+
+  @Override
+  public List<Concept> search(ConceptKind kind, String text, boolean isRegex) {
+    synchronized (delegate) {
+      return delegate.search(kind, text, isRegex);
+    }
+  }
+
+  @Override
+  public Set<String> getProperties() {
+    synchronized (delegate) {
+      return delegate.getProperties();
+    }
+  }
+
+  @Override
+  public String analyse(String unit) throws UcumException {
+    synchronized (delegate) {
+      return delegate.analyse(unit);
+    }
+  }
+
+  @Override
+  public String validateInProperty(String unit, String property) {
+    synchronized (delegate) {
+      return delegate.validateInProperty(unit, property);
+    }
+  }
+
+  @Override
+  public String validateCanonicalUnits(String unit, String canonical) {
+    synchronized (delegate) {
+      return delegate.validateCanonicalUnits(unit, canonical);
+    }
+  }
+
+  @Override
+  public boolean isComparable(String units1, String units2) throws UcumException {
+    synchronized (delegate) {
+      return delegate.isComparable(units1, units2);
+    }
+  }
+
+  @Override
+  public List<DefinedUnit> getDefinedForms(String code) throws UcumException {
+    synchronized (delegate) {
+      return delegate.getDefinedForms(code);
+    }
+  }
+
+  @Override
+  public Pair getCanonicalForm(Pair value) throws UcumException {
+    synchronized (delegate) {
+      return delegate.getCanonicalForm(value);
+    }
+  }
+
+  @Override
+  public Decimal convert(Decimal value, String sourceUnit, String destUnit)
+      throws UcumException {
+    synchronized (delegate) {
+      return delegate.convert(value, sourceUnit, destUnit);
+    }
+  }
+
+  @Override
+  public Pair multiply(Pair o1, Pair o2) throws UcumException {
+    synchronized (delegate) {
+      return delegate.multiply(o1, o2);
+    }
+  }
+
+  @Override
+  public String getCommonDisplay(String code) {
+    synchronized (delegate) {
+      return delegate.getCommonDisplay(code);
+    }
+  }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.ucum;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.fhir.ucum.Canonical;
+import org.fhir.ucum.Concept;
+import org.fhir.ucum.ConceptKind;
+import org.fhir.ucum.Converter;
+import org.fhir.ucum.Decimal;
+import org.fhir.ucum.DefinedUnit;
+import org.fhir.ucum.ExpressionComposer;
+import org.fhir.ucum.ExpressionParser;
+import org.fhir.ucum.FormalStructureComposer;
+import org.fhir.ucum.Pair;
+import org.fhir.ucum.Search;
+import org.fhir.ucum.Term;
+import org.fhir.ucum.UcumEssenceService;
+import org.fhir.ucum.UcumException;
+import org.fhir.ucum.UcumModel;
+import org.fhir.ucum.UcumService;
+import org.fhir.ucum.UcumValidator;
+import org.fhir.ucum.Utilities;
+import org.fhir.ucum.special.Registry;
+
+/**
+ * A UCUM service over a model that has already been loaded, such as from a {@link UcumSnapshot}.
+ * <p>
+ * {@link UcumEssenceService} can only be constructed from XML, so this gives the same results
+ * using the parser, converter and composers that it is built upon.
+ *
+ * @author John Grimes
+ */
+public class UcumModelService implements UcumService {
+
+  private final UcumModel model;
+  private final Registry handlers = new Registry();
+
+  public UcumModelService(UcumModel model) {
+    this.model = model;
+  }
+
+  @Override
+  public UcumModel getModel() {
+    return model;
+  }
+
+  @Override
+  public UcumVersionDetails ucumIdentification() {
+    return new UcumVersionDetails(model.getRevisionDate(), model.getVersion());
+  }
+
+  @Override
+  public List<String> validateUCUM() {
+    return new UcumValidator(model, handlers).validate();
+  }
+
+  @Override
+  public List<Concept> search(ConceptKind kind, String text, boolean isRegex) {
+    return new Search().doSearch(model, kind, text, isRegex);
+  }
+
+  @Override
+  public Set<String> getProperties() {
+    Set<String> properties = new HashSet<>();
+    for (DefinedUnit definedUnit : model.getDefinedUnits()) {
+      properties.add(definedUnit.getProperty());
+    }
+    return properties;
+  }
+
+  @Override
+  public String validate(String unit) {
+    try {
+      parse(unit);
+      return null;
+    } catch (Exception e) {
+      return e.getMessage();
+    }
+  }
+
+  @Override
+  public String analyse(String unit) throws UcumException {
+    if (Utilities.noString(unit)) {
+      return "(unity)";
+    }
+    return new FormalStructureComposer().compose(parse(unit));
+  }
+
+  @Override
+  public String validateInProperty(String unit, String property) {
+    try {
+      Canonical canonical = canonicalise(unit);
+      String canonicalUnits = compose(canonical);
+      if (canonical.getUnits().size() == 1) {
+        String baseProperty = canonical.getUnits().get(0).getBase().getProperty();
+        return property.equals(baseProperty)
+            ? null
+            : "unit " + unit + " is of the property type " + baseProperty + " ("
+                + canonicalUnits + "), not " + property + " as required.";
+      }
+      // Concentrations are allowed to be either mass or substance per volume.
+      if (property.equals("concentration")
+          && (canonicalUnits.equals("g/L") || canonicalUnits.equals("mol/L"))) {
+        return null;
+      }
+      return "unit " + unit + " has the base units " + canonicalUnits
+          + ", and are not from the property " + property + " as required.";
+    } catch (Exception e) {
+      return e.getMessage();
+    }
+  }
+
+  @Override
+  public String validateCanonicalUnits(String unit, String canonical) {
+    try {
+      String canonicalUnits = compose(canonicalise(unit));
+      return canonical.equals(canonicalUnits)
+          ? null
+          : "unit " + unit + " has the base units " + canonicalUnits + ", not " + canonical
+              + " as required.";
+    } catch (Exception e) {
+      return e.getMessage();
+    }
+  }
+
+  @Override
+  public String getCanonicalUnits(String unit) throws UcumException {
+    try {
+      return compose(canonicalise(unit));
+    } catch (Exception e) {
+      throw new UcumException("Error processing " + unit + ": " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public boolean isComparable(String units1, String units2) throws UcumException {
+    if (units1 == null || units2 == null) {
+      return false;
+    }
+    return getCanonicalUnits(units1).equals(getCanonicalUnits(units2));
+  }
+
+  @Override
+  public List<DefinedUnit> getDefinedForms(String code) throws UcumException {
+    List<DefinedUnit> definedForms = new ArrayList<>();
+    if (model.getBaseUnit(code) != null) {
+      for (DefinedUnit definedUnit : model.getDefinedUnits()) {
+        if (!definedUnit.isSpecial() && code.equals(getCanonicalUnits(definedUnit.getCode()))) {
+          definedForms.add(definedUnit);
+        }
+      }
+    }
+    return definedForms;
+  }
+
+  @Override
+  public Pair getCanonicalForm(Pair value) throws UcumException {
+    Canonical canonical = canonicalise(value.getCode());
+    Decimal canonicalValue = value.getValue() == null
+        ? null
+        : value.getValue().multiply(canonical.getValue());
+    return new Pair(canonicalValue, compose(canonical));
+  }
+
+  @Override
+  public Decimal convert(Decimal value, String sourceUnit, String destUnit)
+      throws UcumException {
+    if (sourceUnit.equals(destUnit)) {
+      return value;
+    }
+    Canonical source = canonicalise(sourceUnit);
+    Canonical dest = canonicalise(destUnit);
+    String sourceUnits = compose(source);
+    String destUnits = compose(dest);
+    if (!sourceUnits.equals(destUnits)) {
+      throw new UcumException("Unable to convert between units " + sourceUnit + " and "
+          + destUnit + " as they do not have matching canonical forms (" + sourceUnits + " and "
+          + destUnits + " respectively)");
+    }
+    return value.multiply(source.getValue()).divide(dest.getValue());
+  }
+
+  @Override
+  public Pair multiply(Pair o1, Pair o2) throws UcumException {
+    return getCanonicalForm(new Pair(o1.getValue().multiply(o2.getValue()),
+        o1.getCode() + "." + o2.getCode()));
+  }
+
+  @Override
+  public String getCommonDisplay(String code) {
+    return code.replace("[", "").replace("]", "");
+  }
+
+  private Term parse(String unit) throws UcumException {
+    return new ExpressionParser(model).parse(unit);
+  }
+
+  private Canonical canonicalise(String unit) throws UcumException {
+    return new Converter(model, handlers).convert(parse(unit));
+  }
+
+  private static String compose(Canonical canonical) {
+    return new ExpressionComposer().compose(canonical, false);
+  }
+
+}
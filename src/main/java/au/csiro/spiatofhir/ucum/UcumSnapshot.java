@@ -0,0 +1,249 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.ucum;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.fhir.ucum.BaseUnit;
+import org.fhir.ucum.Concept;
+import org.fhir.ucum.Decimal;
+import org.fhir.ucum.DefinedUnit;
+import org.fhir.ucum.DefinitionParser;
+import org.fhir.ucum.Prefix;
+import org.fhir.ucum.UcumEssenceService;
+import org.fhir.ucum.UcumException;
+import org.fhir.ucum.UcumModel;
+import org.fhir.ucum.Value;
+import org.fhir.ucum.special.Registry;
+
+/**
+ * A compact binary snapshot of the UCUM essence model, which is generated from the bundled
+ * `ucum-essence.xml` at build time. Loading the snapshot avoids the XML parser and date parsing
+ * done by {@link UcumEssenceService}, which dominate its startup time. The loaded model is served
+ * by a {@link UcumModelService}.
+ *
+ * @author John Grimes
+ */
+public abstract class UcumSnapshot {
+
+  public static final String RESOURCE_NAME = "ucum-essence.bin";
+  private static final int MAGIC = 0x5543554d; // "UCUM"
+  private static final int FORMAT_VERSION = 1;
+  // The precision given to the values of prefixes, and the values of units that contain a point,
+  // by the UCUM definition parser.
+  private static final int DECIMAL_PRECISION = 24;
+
+  /**
+   * Generates a snapshot from a UCUM essence XML file.
+   * <p>
+   * Usage: UcumSnapshot [ucum-essence.xml] [snapshot file]
+   */
+  public static void main(String[] args) throws Exception {
+    try (
+        InputStream inputStream = new FileInputStream(args[0]);
+        OutputStream outputStream = new FileOutputStream(args[1])
+    ) {
+      write(inputStream, outputStream);
+    }
+  }
+
+  /**
+   * Parses a UCUM essence XML file, and writes a snapshot of its model.
+   */
+  public static void write(InputStream essence, OutputStream outputStream) throws Exception {
+    // The essence is read twice: once to build the model, and once to get the decimal values as
+    // they appear in the XML, as these are not preserved exactly by the model.
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    byte[] chunk = new byte[8192];
+    int read;
+    while ((read = essence.read(chunk)) != -1) {
+      buffer.write(chunk, 0, read);
+    }
+    byte[] essenceBytes = buffer.toByteArray();
+    UcumModel model = new DefinitionParser().parse(new ByteArrayInputStream(essenceBytes));
+    Map<String, List<String>> values = readValues(new ByteArrayInputStream(essenceBytes));
+    Iterator<String> prefixValues = values.get("prefix").iterator();
+    Iterator<String> unitValues = values.get("unit").iterator();
+
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+    output.writeInt(MAGIC);
+    output.writeInt(FORMAT_VERSION);
+    writeString(output, model.getVersion());
+    writeString(output, model.getRevision());
+    output.writeLong(model.getRevisionDate().getTime());
+
+    // The prefixes and units are in the same order as they appear within the XML.
+    output.writeInt(model.getPrefixes().size());
+    for (Prefix prefix : model.getPrefixes()) {
+      writeConcept(output, prefix);
+      writeString(output, prefixValues.next());
+    }
+    output.writeInt(model.getBaseUnits().size());
+    for (BaseUnit baseUnit : model.getBaseUnits()) {
+      writeConcept(output, baseUnit);
+      writeString(output, baseUnit.getProperty());
+      output.writeChar(baseUnit.getDim());
+    }
+    output.writeInt(model.getDefinedUnits().size());
+    for (DefinedUnit definedUnit : model.getDefinedUnits()) {
+      writeConcept(output, definedUnit);
+      writeString(output, definedUnit.getProperty());
+      output.writeBoolean(definedUnit.isMetric());
+      output.writeBoolean(definedUnit.isSpecial());
+      writeString(output, definedUnit.getClass_());
+      Value value = definedUnit.getValue();
+      writeString(output, value.getUnit());
+      writeString(output, value.getUnitUC());
+      writeString(output, unitValues.next());
+      writeString(output, value.getText());
+    }
+    output.flush();
+  }
+
+  /**
+   * Returns the `value` attribute of each of the `value` elements within the essence, in document
+   * order, grouped by the name of the definition that they belong to (`prefix` or `unit`).
+   */
+  private static Map<String, List<String>> readValues(InputStream essence)
+      throws XMLStreamException {
+    XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(essence);
+    Map<String, List<String>> values = new HashMap<>();
+    String definition = null;
+    int depth = 0;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        if (depth == 2) {
+          definition = reader.getLocalName();
+        } else if (depth == 3 && reader.getLocalName().equals("value")) {
+          values.computeIfAbsent(definition, key -> new ArrayList<>())
+              .add(reader.getAttributeValue(null, "value"));
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Reads a snapshot written by {@link #write}, returning an equivalent model to the one that would
+   * be parsed from the UCUM essence file.
+   */
+  public static UcumModel read(InputStream inputStream) throws IOException, UcumException {
+    DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+    if (input.readInt() != MAGIC) {
+      throw new IOException("Input is not a UCUM snapshot");
+    }
+    int formatVersion = input.readInt();
+    if (formatVersion != FORMAT_VERSION) {
+      throw new IOException("Unsupported UCUM snapshot version: " + formatVersion);
+    }
+    UcumModel model = new UcumModel(readString(input), readString(input),
+        new Date(input.readLong()));
+
+    int prefixCount = input.readInt();
+    for (int i = 0; i < prefixCount; i++) {
+      Prefix prefix = new Prefix(readString(input), readString(input));
+      readConcept(input, prefix);
+      prefix.setValue(new Decimal(readString(input), DECIMAL_PRECISION));
+      model.getPrefixes().add(prefix);
+    }
+    int baseUnitCount = input.readInt();
+    for (int i = 0; i < baseUnitCount; i++) {
+      BaseUnit baseUnit = new BaseUnit(readString(input), readString(input));
+      readConcept(input, baseUnit);
+      baseUnit.setProperty(readString(input));
+      baseUnit.setDim(input.readChar());
+      model.getBaseUnits().add(baseUnit);
+    }
+    int definedUnitCount = input.readInt();
+    for (int i = 0; i < definedUnitCount; i++) {
+      DefinedUnit definedUnit = new DefinedUnit(readString(input), readString(input));
+      readConcept(input, definedUnit);
+      definedUnit.setProperty(readString(input));
+      definedUnit.setMetric(input.readBoolean());
+      definedUnit.setSpecial(input.readBoolean());
+      definedUnit.setClass_(readString(input));
+      String unit = readString(input);
+      String unitUC = readString(input);
+      String number = readString(input);
+      // Values are constructed in the same way as they are by the definition parser.
+      Decimal decimal = number == null
+          ? null
+          : number.contains(".")
+              ? new Decimal(number, DECIMAL_PRECISION)
+              : new Decimal(number);
+      Value value = new Value(unit, unitUC, decimal);
+      value.setText(readString(input));
+      definedUnit.setValue(value);
+      model.getDefinedUnits().add(definedUnit);
+    }
+    return model;
+  }
+
+  private static void writeConcept(DataOutputStream output, Concept concept) throws IOException {
+    writeString(output, concept.getCode());
+    writeString(output, concept.getCodeUC());
+    writeString(output, concept.getPrintSymbol());
+    List<String> names = concept.getNames();
+    output.writeInt(names.size());
+    for (String name : names) {
+      writeString(output, name);
+    }
+  }
+
+  private static void readConcept(DataInputStream input, Concept concept) throws IOException {
+    concept.setPrintSymbol(readString(input));
+    int nameCount = input.readInt();
+    for (int i = 0; i < nameCount; i++) {
+      concept.getNames().add(readString(input));
+    }
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    return input.readBoolean() ? input.readUTF() : null;
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.utils;
+
+import java.util.Arrays;
+
+/**
+ * Normalises the text within spreadsheet cells, trimming surrounding whitespace (including
+ * non-breaking spaces) and splitting on a delimiter within a single scan of the value.
+ * <p>
+ * The scan only records the bounds of each part of the value, so that strings are allocated for
+ * the normalised parts only, and for the original parts only when they are needed to report
+ * extraneous whitespace. The results are those of {@link Strings#trim} and {@link String#split},
+ * i.e. trailing empty parts are discarded and non-breaking spaces within a part are replaced with
+ * spaces.
+ * <p>
+ * An instance can be reused for any number of values, but is not thread-safe.
+ *
+ * @author John Grimes
+ */
+public class CellNormaliser {
+
+  private static final char NON_BREAKING_SPACE = '\u00A0';
+  private static final int NO_DELIMITER = -1;
+  private String value;
+  private int start;
+  private int end;
+  private boolean nonBreakingSpace;
+  private int[] partStarts = new int[8];
+  private int[] partEnds = new int[8];
+  private int parts;
+
+  /**
+   * Scans the supplied value, treating it as a single part.
+   */
+  public CellNormaliser scan(String value) {
+    return scan(value, NO_DELIMITER);
+  }
+
+  /**
+   * Scans the supplied value, splitting the trimmed value into parts on each occurrence of the
+   * delimiter.
+   */
+  public CellNormaliser scan(String value, char delimiter) {
+    return scan(value, (int) delimiter);
+  }
+
+  private CellNormaliser scan(String value, int delimiter) {
+    this.value = value;
+    int length = value.length();
+    start = 0;
+    while (start < length && isWhitespace(value.charAt(start))) {
+      start++;
+    }
+    end = length;
+    while (end > start && isWhitespace(value.charAt(end - 1))) {
+      end--;
+    }
+    nonBreakingSpace = false;
+    parts = 0;
+    int partStart = start;
+    boolean delimited = false;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c == NON_BREAKING_SPACE) {
+        nonBreakingSpace = true;
+      } else if (c == delimiter) {
+        addPart(partStart, i);
+        partStart = i + 1;
+        delimited = true;
+      }
+    }
+    addPart(partStart, end);
+    // Like String#split, trailing empty parts are discarded if the value was delimited.
+    if (delimited) {
+      while (parts > 0 && partStarts[parts - 1] == partEnds[parts - 1]) {
+        parts--;
+      }
+    }
+    return this;
+  }
+
+  private void addPart(int partStart, int partEnd) {
+    if (parts == partStarts.length) {
+      partStarts = Arrays.copyOf(partStarts, parts * 2);
+      partEnds = Arrays.copyOf(partEnds, parts * 2);
+    }
+    partStarts[parts] = partStart;
+    partEnds[parts] = partEnd;
+    parts++;
+  }
+
+  /**
+   * Returns true if the scanned value had surrounding whitespace, or contained non-breaking
+   * spaces.
+   */
+  public boolean hasExtraneousWhitespace() {
+    return start > 0 || end < value.length() || nonBreakingSpace;
+  }
+
+  /**
+   * Returns the trimmed value, which will be the scanned value itself if it had no extraneous
+   * whitespace.
+   */
+  public String getValue() {
+    return hasExtraneousWhitespace()
+        ? normalise(start, end)
+        : value;
+  }
+
+  public int getPartCount() {
+    return parts;
+  }
+
+  /**
+   * Returns the specified part of the trimmed value, with its own surrounding whitespace trimmed.
+   */
+  public String getPart(int index) {
+    int partStart = partStarts[index];
+    int partEnd = partEnds[index];
+    while (partStart < partEnd && isWhitespace(value.charAt(partStart))) {
+      partStart++;
+    }
+    while (partEnd > partStart && isWhitespace(value.charAt(partEnd - 1))) {
+      partEnd--;
+    }
+    return normalise(partStart, partEnd);
+  }
+
+  /**
+   * Returns true if the specified part of the trimmed value had surrounding whitespace.
+   */
+  public boolean partHasExtraneousWhitespace(int index) {
+    int partStart = partStarts[index];
+    int partEnd = partEnds[index];
+    return partStart < partEnd && (isWhitespace(value.charAt(partStart))
+        || isWhitespace(value.charAt(partEnd - 1)));
+  }
+
+  /**
+   * Returns the specified part of the trimmed value, without trimming its own surrounding
+   * whitespace.
+   */
+  public String getUntrimmedPart(int index) {
+    return normalise(partStarts[index], partEnds[index]);
+  }
+
+  private String normalise(int from, int to) {
+    String result = value.substring(from, to);
+    return nonBreakingSpace
+        ? result.replace(NON_BREAKING_SPACE, ' ')
+        : result;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c <= ' ' || c == NON_BREAKING_SPACE;
+  }
+
+}
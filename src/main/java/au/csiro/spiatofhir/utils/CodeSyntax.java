@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.utils;
+
+/**
+ * Checks the syntax of SNOMED CT identifiers and LOINC codes, including their check digits, in a
+ * single pass over the characters of the code. These checks do not allocate, so they can be
+ * applied to every row of a reference set without creating any garbage.
+ *
+ * @author John Grimes
+ */
+public class CodeSyntax {
+
+  // SCTIDs must be greater than 10^5 and no greater than 10^18.
+  private static final long MIN_SCTID_EXCLUSIVE = 100000L;
+  private static final long MAX_SCTID = 1000000000000000000L;
+  private static final int MAX_SCTID_DIGITS = 19;
+
+  // The value of each character that may appear within the identifier portion of a LOINC code,
+  // or -1 if the character is not allowed. Letters are upper-cased, then offset from '0' in the
+  // same way as the digits.
+  private static final int[] loincValues = new int[128];
+  // The weighted value of a character in an even position (counting from the right) of the
+  // identifier, with the digits of the doubled value summed.
+  private static final int[] loincDoubledValues = new int['Z' - '0' + 1];
+
+  static {
+    for (int ch = 0; ch < loincValues.length; ch++) {
+      if (ch >= '0' && ch <= '9' || ch >= 'A' && ch <= 'Z') {
+        loincValues[ch] = ch - '0';
+      } else if (ch >= 'a' && ch <= 'z') {
+        loincValues[ch] = Character.toUpperCase(ch) - '0';
+      } else {
+        loincValues[ch] = -1;
+      }
+    }
+    for (int value = 0; value < loincDoubledValues.length; value++) {
+      loincDoubledValues[value] = (2 * value) - (value / 5) * 9;
+    }
+  }
+
+  /**
+   * Returns true if the code is a valid SNOMED CT identifier: made up of only digits, within the
+   * range of valid identifiers, with a valid partition identifier and a valid Verhoeff check
+   * digit.
+   */
+  public static boolean isValidSctid(CharSequence code) {
+    int length = code.length();
+    if (length == 0) {
+      return false;
+    }
+    long value = 0;
+    long magnitude = 1;
+    int checksum = 0;
+    // Work from the check digit backwards, as required by the Verhoeff algorithm.
+    for (int i = 0; i < length; i++) {
+      char ch = code.charAt(length - 1 - i);
+      if (ch < '0' || ch > '9') {
+        return false;
+      }
+      int digit = ch - '0';
+      checksum = Verhoeff.d[checksum][Verhoeff.p[i & 7][digit]];
+      // The partition identifier is the two digits before the check digit, the first of which
+      // must be 0 or 1 and the second of which must be 0, 1 or 2.
+      if (i == 1 && digit > 2 || i == 2 && digit > 1) {
+        return false;
+      }
+      if (digit != 0) {
+        // Leading zeroes are allowed, but any other digit beyond the 19th is out of range, as is
+        // a 19th digit greater than 1 (which could also overflow).
+        if (i >= MAX_SCTID_DIGITS || i == MAX_SCTID_DIGITS - 1 && digit > 1) {
+          return false;
+        }
+        value += digit * magnitude;
+        if (value > MAX_SCTID) {
+          return false;
+        }
+      }
+      if (i < MAX_SCTID_DIGITS - 1) {
+        magnitude *= 10;
+      }
+    }
+    return value > MIN_SCTID_EXCLUSIVE && checksum == 0;
+  }
+
+  /**
+   * Returns true if the code is a valid LOINC code: an alphanumeric identifier, followed by a
+   * hyphen and a valid mod 10 check digit.
+   */
+  public static boolean isValidLoincCode(CharSequence code) {
+    int length = code.length();
+    if (length < 3 || code.charAt(length - 2) != '-') {
+      return false;
+    }
+    char checkDigit = code.charAt(length - 1);
+    if (checkDigit < '0' || checkDigit > '9') {
+      return false;
+    }
+    int sum = 0;
+    // Work from the end of the identifier backwards, doubling every second character.
+    for (int i = 0; i < length - 2; i++) {
+      char ch = code.charAt(length - 3 - i);
+      int value = ch < loincValues.length ? loincValues[ch] : -1;
+      if (value < 0) {
+        return false;
+      }
+      sum += (i & 1) == 0 ? loincDoubledValues[value] : value;
+    }
+    return checkDigit - '0' == (10 - sum % 10) % 10;
+  }
+
+}
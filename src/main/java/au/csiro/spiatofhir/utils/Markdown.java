@@ -16,19 +16,35 @@
 
 package au.csiro.spiatofhir.utils;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.commonmark.node.Node;
 import org.commonmark.parser.Parser;
 import org.commonmark.renderer.html.HtmlRenderer;
 
 /**
+ * Renders Markdown into HTML. This is safe to use from multiple threads - the parser and renderer
+ * are immutable, and are shared between calls. The HTML for each description is cached, as the
+ * same descriptions are rendered for each release.
+ *
  * @author John Grimes
  */
 public class Markdown {
 
+  private static final int MAX_CACHED = 256;
+  private static final Parser parser = Parser.builder().build();
+  private static final HtmlRenderer renderer = HtmlRenderer.builder().build();
+  private static final Map<String, String> rendered = new ConcurrentHashMap<>();
+
   public static String toHtml(String description) {
-    Parser parser = Parser.builder().build();
-    Node document = parser.parse(description);
-    HtmlRenderer renderer = HtmlRenderer.builder().build();
-    return renderer.render(document);
+    String html = rendered.get(description);
+    if (html == null) {
+      Node document = parser.parse(description);
+      html = renderer.render(document);
+      if (rendered.size() < MAX_CACHED) {
+        rendered.putIfAbsent(description, html);
+      }
+    }
+    return html;
   }
 }
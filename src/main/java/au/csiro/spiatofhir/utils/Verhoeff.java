@@ -54,50 +54,83 @@ public class Verhoeff {
           {7, 0, 4, 6, 9, 1, 3, 2, 5, 8}
       };
 
+  // The multiplication and permutation tables combined, indexed by position (mod 8), checksum and
+  // digit.
+  private static final int[] dp = new int[8 * 10 * 10];
+
+  // The combined tables applied to two digits at once, indexed by the position of the first digit
+  // (which is always even, mod 8, divided by 2), checksum and pair of digits (as a number from 0 to
+  // 99, the first digit being the least significant).
+  private static final byte[] dpPairs = new byte[4 * 10 * 100];
+
+  static {
+    for (int position = 0; position < 8; position++) {
+      for (int checksum = 0; checksum < 10; checksum++) {
+        for (int digit = 0; digit < 10; digit++) {
+          dp[(position * 10 + checksum) * 10 + digit] = d[checksum][p[position][digit]];
+        }
+      }
+    }
+    for (int position = 0; position < 8; position += 2) {
+      for (int checksum = 0; checksum < 10; checksum++) {
+        for (int pair = 0; pair < 100; pair++) {
+          int first = d[checksum][p[position][pair % 10]];
+          dpPairs[((position >> 1) * 10 + checksum) * 100 + pair] =
+              (byte) d[first][p[position + 1][pair / 10]];
+        }
+      }
+    }
+  }
+
   /*
    * Validates that an entered number is Verhoeff compliant.
    * NB: Make sure the check digit is the last one.
    */
-  public static boolean validateVerhoeff(String num) {
+  public static boolean validateVerhoeff(CharSequence num) {
 
     int c = 0;
-    int[] myArray = stringToReversedIntArray(num);
-
-    for (int i = 0; i < myArray.length; i++) {
-      c = d[c][p[(i % 8)][myArray[i]]];
+    int length = num.length();
+
+    // Work from the check digit backwards, rather than reversing the number first.
+    for (int i = 0; i < length; i++) {
+      char ch = num.charAt(length - 1 - i);
+      if (ch < '0' || ch > '9') {
+        throw new NumberFormatException("Not a digit: \"" + ch + "\"");
+      }
+      c = d[c][p[i & 7][ch - '0']];
     }
 
     return (c == 0);
   }
 
   /*
-   * Converts a string to a reversed integer array.
+   * Validates that a non-negative number is Verhoeff compliant, working arithmetically over its
+   * decimal digits rather than converting it to a string.
    */
-  private static int[] stringToReversedIntArray(String num) {
-
-    int[] myArray = new int[num.length()];
-
-    for (int i = 0; i < num.length(); i++) {
-      myArray[i] = Integer.parseInt(num.substring(i, i + 1));
+  public static boolean validateVerhoeff(long num) {
+    if (num < 0) {
+      throw new IllegalArgumentException("Number must not be negative: " + num);
     }
 
-    myArray = reverse(myArray);
-
-    return myArray;
-
-  }
-
-  /*
-   * Reverses an int array
-   */
-  private static int[] reverse(int[] myArray) {
-    int[] reversed = new int[myArray.length];
-
-    for (int i = 0; i < myArray.length; i++) {
-      reversed[i] = myArray[myArray.length - (i + 1)];
+    int c = 0;
+    int position = 0;
+    long remaining = num;
+
+    // Apply two digits at a time while at least two remain, which halves the length of the chain
+    // of dependent table lookups.
+    while (remaining >= 10) {
+      long quotient = remaining / 100;
+      int pair = (int) (remaining - quotient * 100);
+      c = dpPairs[(((position & 7) >> 1) * 10 + c) * 100 + pair];
+      position += 2;
+      remaining = quotient;
+    }
+    // Apply the final digit, if there are an odd number of digits.
+    if (remaining != 0) {
+      c = dp[((position & 7) * 10 + c) * 10 + (int) remaining];
     }
 
-    return reversed;
+    return (c == 0);
   }
 
 }
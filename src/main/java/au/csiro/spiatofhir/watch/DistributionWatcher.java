@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.watch;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import au.csiro.spiatofhir.WarmContexts;
+import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.pipeline.PipelineSettings;
+import au.csiro.spiatofhir.pipeline.ResourceCache;
+import au.csiro.spiatofhir.pipeline.TransformPipeline;
+import au.csiro.spiatofhir.spia.SpiaDistribution;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import ca.uhn.fhir.context.FhirContext;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.fhir.ucum.UcumService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a SPIA distribution (either a ZIP file or a directory containing its extracted
+ * spreadsheets) and transforms it again each time it changes.
+ * <p>
+ * Only the entries whose spreadsheets have changed are read, parsed and built again - the
+ * resources for all other entries are retained in memory between iterations, along with the FHIR
+ * context, UCUM service and terminology lookup cache.
+ *
+ * @author John Grimes
+ */
+public class DistributionWatcher {
+
+  private static final Logger logger = LoggerFactory.getLogger(DistributionWatcher.class);
+  private final File input;
+  private final File output;
+  private final String terminologyServerUrl;
+  private final Date publicationDate;
+  private final boolean includeExpansions;
+  private final PipelineSettings pipelineSettings;
+  private final long debounceMillis;
+  private final ResourceCache resourceCache = new ResourceCache();
+  private final Map<DistributionEntry, String> fingerprints = new EnumMap<>(
+      DistributionEntry.class);
+
+  /**
+   * @param debounceMillis the period without any further changes that is waited for before
+   * transforming, so that a burst of changes (e.g. a ZIP file being written) only results in a
+   * single transform
+   */
+  public DistributionWatcher(File input, File output, String terminologyServerUrl,
+      Date publicationDate, boolean includeExpansions, PipelineSettings pipelineSettings,
+      long debounceMillis) {
+    this.input = input;
+    this.output = output;
+    this.terminologyServerUrl = terminologyServerUrl;
+    this.publicationDate = publicationDate;
+    this.includeExpansions = includeExpansions;
+    this.pipelineSettings = pipelineSettings;
+    this.debounceMillis = debounceMillis;
+  }
+
+  /**
+   * Transforms the distribution, then again each time it changes, until the thread is interrupted.
+   */
+  public void run() throws IOException, InterruptedException {
+    Path watchedDirectory = input.isDirectory()
+        ? input.toPath()
+        : input.getAbsoluteFile().getParentFile().toPath();
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      watchedDirectory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+      transformAndLog();
+      logger.info("Watching " + input + " for changes");
+      while (!Thread.currentThread().isInterrupted()) {
+        boolean relevant = isRelevant(watchService.take());
+        // Wait until the changes have settled down before transforming.
+        WatchKey key;
+        while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+          relevant |= isRelevant(key);
+        }
+        if (relevant) {
+          transformAndLog();
+        }
+      }
+    }
+  }
+
+  private boolean isRelevant(WatchKey key) {
+    Set<String> relevantNames = new HashSet<>();
+    if (input.isDirectory()) {
+      for (DistributionEntry entry : DistributionEntry.values()) {
+        relevantNames.add(SpiaDistribution.getFileName(entry));
+      }
+    } else {
+      relevantNames.add(input.getName());
+    }
+    boolean relevant = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.context() instanceof Path && relevantNames
+          .contains(((Path) event.context()).getFileName().toString())) {
+        relevant = true;
+      }
+    }
+    key.reset();
+    return relevant;
+  }
+
+  private void transformAndLog() {
+    try {
+      transform();
+    } catch (Exception e) {
+      // Keep watching, the next change may fix the problem.
+      logger.error("Error transforming " + input + ", waiting for further changes", e);
+    }
+  }
+
+  /**
+   * Transforms the entries of the distribution which have changed since the last successful
+   * transform, then writes the complete Bundle to the output file. Returns the entries that were
+   * transformed.
+   */
+  public Set<DistributionEntry> transform() throws Exception {
+    long start = System.nanoTime();
+    FhirContext fhirContext = WarmContexts.getFhirContext();
+    UcumService ucumService = WarmContexts.getUcumService();
+    TerminologyClient terminologyClient = WarmContexts.getTerminologyClient(terminologyServerUrl);
+    try (SpiaDistribution spiaDistribution = SpiaDistribution
+        .open(input, terminologyClient, ucumService)) {
+      Map<DistributionEntry, String> current = new EnumMap<>(DistributionEntry.class);
+      Set<DistributionEntry> changed = EnumSet.noneOf(DistributionEntry.class);
+      for (DistributionEntry entry : DistributionEntry.values()) {
+        String fingerprint = spiaDistribution.getFingerprint(entry);
+        current.put(entry, fingerprint);
+        if (!fingerprint.equals(fingerprints.get(entry))) {
+          changed.add(entry);
+        }
+      }
+      if (changed.isEmpty()) {
+        logger.info("No changes to reference sets found");
+        return changed;
+      }
+
+      // Write to a temporary file first, so that the output is never left incomplete.
+      Path temporaryOutput = output.getAbsoluteFile().toPath()
+          .resolveSibling(output.getName() + ".tmp");
+      TransformPipeline pipeline = new TransformPipeline(fhirContext, spiaDistribution,
+          publicationDate, includeExpansions, pipelineSettings);
+      try (Writer writer = Files.newBufferedWriter(temporaryOutput, StandardCharsets.UTF_8)) {
+        pipeline.run(EnumSet.allOf(DistributionEntry.class), changed, resourceCache, writer);
+      }
+      Files.move(temporaryOutput, output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+      // The fingerprints are only updated upon success, so that failed entries are retried.
+      fingerprints.putAll(current);
+      logger.info("Transformed " + changed + " in " + (System.nanoTime() - start) / 1000000
+          + " ms");
+      return changed;
+    }
+  }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir;
+
+import au.csiro.spiatofhir.ucum.UcumModelService;
+import junit.framework.TestCase;
+import org.fhir.ucum.UcumService;
+
+/**
+ * Checks that the shared contexts are built in the fastest available way, rather than silently
+ * falling back to a slower one.
+ *
+ * @author John Grimes
+ */
+public class WarmContextsTest extends TestCase {
+
+    public void testUcumServiceIsLoadedFromSnapshot() {
+        // A null result means that the UCUM essence file would be parsed instead, which would
+        // happen if the snapshot could no longer be read after an upgrade of the UCUM library.
+        UcumService service = WarmContexts.loadUcumSnapshot();
+        assertNotNull("UCUM snapshot could not be loaded", service);
+        assertTrue(service instanceof UcumModelService);
+        assertNull(service.validate("mmol/L"));
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.binary;
+
+import au.csiro.spiatofhir.binary.BinaryBundle.Concept;
+import au.csiro.spiatofhir.binary.BinaryBundle.ConceptMapContent;
+import au.csiro.spiatofhir.binary.BinaryBundle.Mapping;
+import au.csiro.spiatofhir.binary.BinaryBundle.ValueSetContent;
+import au.csiro.spiatofhir.loinc.Loinc;
+import au.csiro.spiatofhir.snomed.SnomedCt;
+import au.csiro.spiatofhir.ucum.Ucum;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import junit.framework.TestCase;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.ConceptMap;
+import org.hl7.fhir.dstu3.model.Enumerations.ConceptMapEquivalence;
+import org.hl7.fhir.dstu3.model.ValueSet;
+
+/**
+ * @author John Grimes
+ */
+public class BinaryBundleReaderTest extends TestCase {
+
+    public void testRoundTrip() throws Exception {
+        ValueSet valueSet = new ValueSet();
+        valueSet.setId("test-refset");
+        valueSet.setUrl("https://www.rcpa.edu.au/fhir/ValueSet/test-refset");
+        valueSet.setVersion("2.0.0");
+        ValueSet.ConceptSetComponent loinc = valueSet.getCompose().addInclude().setSystem(Loinc.SYSTEM_URI);
+        ValueSet.ConceptReferenceComponent withSynonyms = loinc.addConcept().setCode("2951-2")
+                .setDisplay("Sodium");
+        withSynonyms.addDesignation().setValue("Na");
+        withSynonyms.addDesignation().setValue("Sodium level");
+        loinc.addConcept().setCode("2823-3");
+        ValueSet.ConceptSetComponent snomed = valueSet.getCompose().addInclude().setSystem(SnomedCt.SYSTEM_URI);
+        snomed.addConcept().setCode("3092008").setDisplay("Staphylococcus aureus");
+
+        ConceptMap conceptMap = new ConceptMap();
+        conceptMap.setId("test-unit-map");
+        conceptMap.setUrl("https://www.rcpa.edu.au/fhir/ConceptMap/test-unit-map");
+        conceptMap.setVersion("1.1.0");
+        ConceptMap.ConceptMapGroupComponent group = conceptMap.addGroup().setSource(Loinc.SYSTEM_URI)
+                .setTarget(Ucum.SYSTEM_URI);
+        ConceptMap.SourceElementComponent element = group.addElement().setCode("2951-2");
+        element.addTarget().setCode("mmol/L").setEquivalence(ConceptMapEquivalence.RELATEDTO);
+        element.addTarget().setCode("umol/L");
+
+        Bundle bundle = new Bundle();
+        bundle.addEntry().setResource(valueSet);
+        bundle.addEntry().setResource(conceptMap);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BinaryBundleWriter().write(bundle, output);
+        BinaryBundle read = new BinaryBundleReader().read(new ByteArrayInputStream(output.toByteArray()));
+
+        assertEquals(1, read.getValueSets().size());
+        ValueSetContent valueSetContent = read.getValueSets().get(0);
+        assertEquals("test-refset", valueSetContent.getId());
+        assertEquals(valueSet.getUrl(), valueSetContent.getUrl());
+        assertEquals("2.0.0", valueSetContent.getVersion());
+        assertEquals(3, valueSetContent.getConcepts().size());
+        assertConcept(valueSetContent.getConcepts().get(0), Loinc.SYSTEM_URI, "2951-2", "Sodium", "Na",
+                "Sodium level");
+        assertConcept(valueSetContent.getConcepts().get(1), Loinc.SYSTEM_URI, "2823-3", null);
+        assertConcept(valueSetContent.getConcepts().get(2), SnomedCt.SYSTEM_URI, "3092008",
+                "Staphylococcus aureus");
+
+        assertEquals(1, read.getConceptMaps().size());
+        ConceptMapContent conceptMapContent = read.getConceptMaps().get(0);
+        assertEquals("test-unit-map", conceptMapContent.getId());
+        assertEquals(conceptMap.getUrl(), conceptMapContent.getUrl());
+        assertEquals("1.1.0", conceptMapContent.getVersion());
+        assertEquals(1, conceptMapContent.getMappings().size());
+        Mapping mapping = conceptMapContent.getMappings().get(0);
+        assertEquals(Loinc.SYSTEM_URI, mapping.getSourceSystem());
+        assertEquals("2951-2", mapping.getSourceCode());
+        assertEquals(Ucum.SYSTEM_URI, mapping.getTargetSystem());
+        assertEquals(Arrays.asList("mmol/L", "umol/L"), mapping.getTargetCodes());
+        assertEquals(Arrays.asList("relatedto", null), mapping.getEquivalences());
+    }
+
+    private static void assertConcept(Concept concept, String system, String code, String display,
+            String... synonyms) {
+        assertEquals(system, concept.getSystem());
+        assertEquals(code, concept.getCode());
+        assertEquals(display, concept.getDisplay());
+        assertEquals(synonyms.length == 0 ? Collections.emptyList() : Arrays.asList(synonyms),
+                concept.getSynonyms());
+    }
+
+}
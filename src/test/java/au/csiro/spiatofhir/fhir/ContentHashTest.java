@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import ca.uhn.fhir.context.FhirContext;
+import java.util.Date;
+import junit.framework.TestCase;
+import org.hl7.fhir.dstu3.model.ValueSet;
+
+/**
+ * @author John Grimes
+ */
+public class ContentHashTest extends TestCase {
+
+    private static final FhirContext fhirContext = FhirContext.forDstu3();
+
+    public void testHashIgnoresPublicationElements() {
+        ValueSet first = buildValueSet("display", new Date(0));
+        ValueSet second = buildValueSet("display", new Date(86400000L));
+        second.getExpansion().setIdentifier("urn:uuid:00000000-0000-0000-0000-000000000000");
+        assertEquals(ContentHash.compute(fhirContext, first), ContentHash.compute(fhirContext, second));
+    }
+
+    public void testHashChangesWithContent() {
+        ValueSet first = buildValueSet("display", new Date(0));
+        ValueSet second = buildValueSet("other display", new Date(0));
+        assertFalse(ContentHash.compute(fhirContext, first).equals(ContentHash.compute(fhirContext, second)));
+    }
+
+    private static ValueSet buildValueSet(String display, Date date) {
+        ValueSet valueSet = new ValueSet();
+        valueSet.setId("test");
+        valueSet.setUrl("http://example.com/ValueSet/test");
+        valueSet.setVersion("1.0.0");
+        valueSet.setDate(date);
+        valueSet.getCompose().addInclude().setSystem("http://snomed.info/sct").addConcept()
+                .setCode("123456789").setDisplay(display);
+        SpiaFhirValueSet.addExpansionFromCompose(valueSet, date);
+        return valueSet;
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.hl7.fhir.dstu3.model.ValueSet;
+
+/**
+ * Exercises the publisher against a minimal stand-in FHIR server, which supports reads and batch
+ * submission of updates.
+ *
+ * @author John Grimes
+ */
+public class FhirPublisherTest extends TestCase {
+
+    private static final FhirContext fhirContext = FhirContext.forDstu3();
+    private final Map<String, String> stored = new ConcurrentHashMap<>();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final AtomicInteger failuresToInject = new AtomicInteger();
+    private final Map<String, Integer> entryFailuresToInject = new ConcurrentHashMap<>();
+    private final Map<String, String> entryStatusesToInject = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private IGenericClient client;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/fhir", this::handle);
+        server.start();
+        fhirContext.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+        client = fhirContext.newRestfulGenericClient(
+                "http://localhost:" + server.getAddress().getPort() + "/fhir");
+    }
+
+    public void tearDown() throws Exception {
+        server.stop(0);
+        super.tearDown();
+    }
+
+    public void testPublishUploadsNewResourcesInChunks() throws Exception {
+        FhirPublisher publisher = new FhirPublisher(fhirContext, client, 2, 1, 0);
+        FhirPublisher.PublishResult result = publisher.publish(buildBundle("one", "two", "three"));
+        assertEquals(3, result.getUploaded());
+        assertEquals(0, result.getSkipped());
+        assertEquals(3, batches.get());
+        assertEquals(3, stored.size());
+    }
+
+    public void testPublishSkipsUnchangedResources() throws Exception {
+        FhirPublisher publisher = new FhirPublisher(fhirContext, client, 2, 1024 * 1024, 0);
+        publisher.publish(buildBundle("one", "two"));
+        batches.set(0);
+        FhirPublisher.PublishResult result = publisher.publish(buildBundle("one", "two"));
+        assertEquals(0, result.getUploaded());
+        assertEquals(2, result.getSkipped());
+        assertEquals(0, batches.get());
+    }
+
+    public void testPublishRetriesFailedChunks() throws Exception {
+        failuresToInject.set(1);
+        FhirPublisher publisher = new FhirPublisher(fhirContext, client, 1, 1024 * 1024, 1);
+        FhirPublisher.PublishResult result = publisher.publish(buildBundle("one"));
+        assertEquals(1, result.getUploaded());
+        assertEquals(1, stored.size());
+    }
+
+    public void testPublishRetriesOnlyFailedEntries() throws Exception {
+        FhirPublisher publisher = new FhirPublisher(fhirContext, client, 1, 1024 * 1024, 1);
+        publisher.publish(buildBundle("one", "two"));
+        batches.set(0);
+        entryFailuresToInject.put("ValueSet/two", 1);
+        FhirPublisher.PublishResult result = publisher.publish(buildTitledBundle("v2", "one", "two"));
+        assertEquals(2, result.getUploaded());
+        assertEquals(2, batches.get());
+        assertTrue(stored.get("ValueSet/one").contains("\"versionId\":\"2\""));
+        assertTrue(stored.get("ValueSet/two").contains("\"versionId\":\"2\""));
+    }
+
+    public void testPublishFailsImmediatelyOnConflict() throws Exception {
+        FhirPublisher publisher = new FhirPublisher(fhirContext, client, 1, 1024 * 1024, 3);
+        publisher.publish(buildBundle("one", "two"));
+        batches.set(0);
+        entryStatusesToInject.put("ValueSet/two", "412 Precondition Failed");
+        try {
+            publisher.publish(buildTitledBundle("v2", "one", "two"));
+            fail("Expected a conflict to fail the publish");
+        } catch (FhirPublisher.PublishException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            assertTrue(cause.getMessage(), cause.getMessage().contains("ValueSet/two was modified"));
+        }
+        assertEquals(1, batches.get());
+    }
+
+    public void testPublishFailsImmediatelyOnRejection() throws Exception {
+        FhirPublisher publisher = new FhirPublisher(fhirContext, client, 1, 1024 * 1024, 3);
+        entryStatusesToInject.put("ValueSet/one", "400 Bad Request");
+        try {
+            publisher.publish(buildBundle("one"));
+            fail("Expected a rejected resource to fail the publish");
+        } catch (FhirPublisher.PublishException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            assertTrue(cause.getMessage(), cause.getMessage().contains("ValueSet/one was rejected"));
+        }
+        assertEquals(1, batches.get());
+    }
+
+    public void testPublishRetriesThrottledEntries() throws Exception {
+        FhirPublisher publisher = new FhirPublisher(fhirContext, client, 1, 1024 * 1024, 1);
+        entryStatusesToInject.put("ValueSet/one", "429 Too Many Requests");
+        FhirPublisher.PublishResult result = publisher.publish(buildBundle("one"));
+        assertEquals(1, result.getUploaded());
+        assertEquals(2, batches.get());
+    }
+
+    private static Bundle buildBundle(String... ids) {
+        return buildTitledBundle("v1", ids);
+    }
+
+    private static Bundle buildTitledBundle(String title, String... ids) {
+        Bundle bundle = new Bundle();
+        for (String id : ids) {
+            ValueSet valueSet = new ValueSet();
+            valueSet.setId(id);
+            valueSet.setName(id);
+            valueSet.setTitle(title);
+            ContentHash.apply(fhirContext, valueSet);
+            bundle.addEntry().setResource(valueSet);
+        }
+        return bundle;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().substring("/fhir".length());
+        if (exchange.getRequestMethod().equals("GET")) {
+            String key = path.substring(1);
+            String body = stored.get(key);
+            if (body == null) {
+                respond(exchange, 404, "{\"resourceType\":\"OperationOutcome\"}");
+            } else {
+                respond(exchange, 200, body);
+            }
+        } else if (failuresToInject.getAndDecrement() > 0) {
+            respond(exchange, 500, "{\"resourceType\":\"OperationOutcome\"}");
+        } else {
+            batches.incrementAndGet();
+            Bundle request = fhirContext.newJsonParser().parseResource(Bundle.class,
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+            Bundle response = new Bundle();
+            response.setType(Bundle.BundleType.BATCHRESPONSE);
+            for (BundleEntryComponent entry : request.getEntry()) {
+                String url = entry.getRequest().getUrl();
+                Bundle.BundleEntryResponseComponent entryResponse = response.addEntry().getResponse();
+                String injectedStatus = entryStatusesToInject.remove(url);
+                if (injectedStatus != null) {
+                    entryResponse.setStatus(injectedStatus);
+                    continue;
+                }
+                if (entryFailuresToInject.getOrDefault(url, 0) > 0) {
+                    entryFailuresToInject.merge(url, -1, Integer::sum);
+                    entryResponse.setStatus("500 Internal Server Error");
+                    continue;
+                }
+                int version = 1;
+                String existing = stored.get(url);
+                if (existing != null) {
+                    String existingVersion = fhirContext.newJsonParser()
+                            .parseResource(ValueSet.class, existing).getMeta().getVersionId();
+                    if (!("W/\"" + existingVersion + "\"").equals(entry.getRequest().getIfMatch())) {
+                        entryResponse.setStatus("412 Precondition Failed");
+                        continue;
+                    }
+                    version = Integer.parseInt(existingVersion) + 1;
+                }
+                Resource resource = entry.getResource();
+                resource.setId(url + "/_history/" + version);
+                resource.getMeta().setVersionId(String.valueOf(version));
+                stored.put(url, fhirContext.newJsonParser().encodeResourceToString(resource));
+                entryResponse.setStatus("200 OK");
+            }
+            respond(exchange, 200, fhirContext.newJsonParser().encodeResourceToString(response));
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/fhir+json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import ca.uhn.fhir.context.FhirContext;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import junit.framework.TestCase;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.dstu3.model.Bundle.HTTPVerb;
+import org.hl7.fhir.dstu3.model.ConceptMap;
+import org.hl7.fhir.dstu3.model.ConceptMap.SourceElementComponent;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.hl7.fhir.dstu3.model.ValueSet;
+
+/**
+ * @author John Grimes
+ */
+public class SpiaFhirDeltaTest extends TestCase {
+
+    private static final FhirContext fhirContext = FhirContext.forDstu3();
+    private static final String SNOMED = "http://snomed.info/sct";
+
+    public void testUnchangedResourcesAreOmitted() {
+        Bundle previous = bundleOf(valueSet("vs", new Date(0), "1", "one", "2", "two"));
+        Bundle current = bundleOf(valueSet("vs", new Date(86400000L), "1", "one", "2", "two"));
+        SpiaFhirDelta delta = new SpiaFhirDelta(fhirContext, previous, current);
+        assertEquals(0, delta.getTransaction().getEntry().size());
+        assertEquals(0, delta.getChanges().size());
+        assertEquals("No resources changed.\n", delta.getSummary());
+    }
+
+    public void testAddedRemovedAndRemappedCodes() {
+        Bundle previous = bundleOf(valueSet("vs", new Date(0), "1", "one", "2", "two"),
+                conceptMap("map", "1", "mg", "2", "g"));
+        Bundle current = bundleOf(valueSet("vs", new Date(0), "1", "one", "3", "three"),
+                conceptMap("map", "1", "mg", "2", "kg"));
+        SpiaFhirDelta delta = new SpiaFhirDelta(fhirContext, previous, current);
+
+        assertEquals(2, delta.getTransaction().getEntry().size());
+        for (BundleEntryComponent entry : delta.getTransaction().getEntry()) {
+            assertEquals(HTTPVerb.PUT, entry.getRequest().getMethod());
+        }
+        SpiaFhirDelta.ResourceChanges valueSetChanges = delta.getChanges().get(0);
+        assertEquals("ValueSet/vs", valueSetChanges.getUrl());
+        assertFalse(valueSetChanges.isNewResource());
+        assertEquals(Collections.singletonList(SNOMED + "|3"), valueSetChanges.getAdded());
+        assertEquals(Collections.singletonList(SNOMED + "|2"), valueSetChanges.getRemoved());
+        assertTrue(valueSetChanges.getRemapped().isEmpty());
+
+        SpiaFhirDelta.ResourceChanges conceptMapChanges = delta.getChanges().get(1);
+        assertEquals("ConceptMap/map", conceptMapChanges.getUrl());
+        assertTrue(conceptMapChanges.getAdded().isEmpty());
+        assertTrue(conceptMapChanges.getRemoved().isEmpty());
+        assertEquals(Collections.singletonList(SNOMED + "|2"), conceptMapChanges.getRemapped());
+    }
+
+    public void testAddedAndRemovedResources() {
+        Bundle previous = bundleOf(valueSet("old", new Date(0), "1", "one"));
+        Bundle current = bundleOf(valueSet("new", new Date(0), "2", "two"));
+        SpiaFhirDelta delta = new SpiaFhirDelta(fhirContext, previous, current);
+
+        assertEquals(2, delta.getTransaction().getEntry().size());
+        BundleEntryComponent put = delta.getTransaction().getEntry().get(0);
+        assertEquals(HTTPVerb.PUT, put.getRequest().getMethod());
+        assertEquals("ValueSet/new", put.getRequest().getUrl());
+        BundleEntryComponent delete = delta.getTransaction().getEntry().get(1);
+        assertEquals(HTTPVerb.DELETE, delete.getRequest().getMethod());
+        assertEquals("ValueSet/old", delete.getRequest().getUrl());
+        assertFalse(delete.hasResource());
+
+        SpiaFhirDelta.ResourceChanges added = delta.getChanges().get(0);
+        assertTrue(added.isNewResource());
+        assertEquals(Collections.singletonList(SNOMED + "|2"), added.getAdded());
+        SpiaFhirDelta.ResourceChanges removed = delta.getChanges().get(1);
+        assertTrue(removed.isRemovedResource());
+        assertEquals(Collections.singletonList(SNOMED + "|1"), removed.getRemoved());
+        assertTrue(delta.getSummary().contains("ValueSet/old (removed resource)"));
+    }
+
+    private static Bundle bundleOf(Resource... resources) {
+        Bundle bundle = new Bundle();
+        for (Resource resource : Arrays.asList(resources)) {
+            bundle.addEntry().setResource(resource);
+        }
+        return bundle;
+    }
+
+    private static ValueSet valueSet(String id, Date date, String... codesAndDisplays) {
+        ValueSet valueSet = new ValueSet();
+        valueSet.setId(id);
+        valueSet.setDate(date);
+        ValueSet.ConceptSetComponent include = valueSet.getCompose().addInclude().setSystem(SNOMED);
+        for (int i = 0; i < codesAndDisplays.length; i += 2) {
+            include.addConcept().setCode(codesAndDisplays[i]).setDisplay(codesAndDisplays[i + 1]);
+        }
+        ContentHash.apply(fhirContext, valueSet);
+        return valueSet;
+    }
+
+    private static ConceptMap conceptMap(String id, String... codesAndTargets) {
+        ConceptMap conceptMap = new ConceptMap();
+        conceptMap.setId(id);
+        ConceptMap.ConceptMapGroupComponent group = conceptMap.addGroup().setSource(SNOMED)
+                .setTarget("http://unitsofmeasure.org");
+        for (int i = 0; i < codesAndTargets.length; i += 2) {
+            SourceElementComponent element = group.addElement().setCode(codesAndTargets[i]);
+            element.addTarget().setCode(codesAndTargets[i + 1]);
+        }
+        ContentHash.apply(fhirContext, conceptMap);
+        return conceptMap;
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.fhir;
+
+import au.csiro.spiatofhir.spia.Refset;
+import au.csiro.spiatofhir.spia.RefsetEntries;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import au.csiro.spiatofhir.spia.StringTable;
+import au.csiro.spiatofhir.spia.ValidationException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import junit.framework.TestCase;
+import org.hl7.fhir.dstu3.model.Resource;
+
+/**
+ * @author John Grimes
+ */
+public class SpiaFhirResourceRegistryTest extends TestCase {
+
+    /**
+     * Resources are selected using the ids that they are registered with, so these need to match
+     * the ids of the resources that are actually built.
+     */
+    public void testRegisteredIdsMatchBuiltResources() throws ValidationException {
+        SpiaFhirResourceRegistry registry = SpiaFhirResourceRegistry.getDefault();
+        Refset refset = new EmptyRefset();
+        for (DistributionEntry entry : DistributionEntry.values()) {
+            List<String> ids = registry.getIds(entry);
+            assertEquals(registry.getFactories(entry).size(), ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                Resource resource = SpiaFhirBundle
+                        .buildResource(entry, i, refset, new Date(), false);
+                assertEquals(resource.getIdElement().getIdPart(), ids.get(i));
+            }
+        }
+    }
+
+    public void testGetEntries() {
+        SpiaFhirResourceRegistry registry = SpiaFhirResourceRegistry.getDefault();
+        assertEquals(EnumSet.of(DistributionEntry.CHEMICAL, DistributionEntry.HAEMATOLOGY),
+                registry.getEntries(Arrays.asList("spia-chemical-combining-results-map-1",
+                        "spia-chemical-pathology-unit-map-1", "spia-haematology-refset-2",
+                        "spia-combining-results-flag", "unknown")));
+        assertTrue(registry.getEntries(Arrays.asList("unknown")).isEmpty());
+    }
+
+    private static class EmptyRefset extends Refset {
+
+        EmptyRefset() throws ValidationException {
+            super(null, null, null, null, new StringTable());
+        }
+
+        @Override
+        protected void parse() {
+            refsetEntries = new RefsetEntries.Builder(strings).build();
+        }
+
+    }
+
+}
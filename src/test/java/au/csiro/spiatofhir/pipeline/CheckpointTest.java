@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.pipeline;
+
+import au.csiro.spiatofhir.fhir.TerminologyClient;
+import au.csiro.spiatofhir.fhir.TerminologyLookupCache;
+import au.csiro.spiatofhir.spia.SpiaDistribution;
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import ca.uhn.fhir.context.FhirContext;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import junit.framework.TestCase;
+import org.hl7.fhir.dstu3.model.CodeType;
+import org.hl7.fhir.dstu3.model.Parameters;
+import org.hl7.fhir.dstu3.model.StringType;
+import org.hl7.fhir.dstu3.model.UriType;
+import org.hl7.fhir.dstu3.model.ValueSet;
+
+/**
+ * @author John Grimes
+ */
+public class CheckpointTest extends TestCase {
+
+    private static final FhirContext fhirContext = FhirContext.forDstu3();
+    private static final UriType system = new UriType("http://loinc.org");
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private Path directory;
+    private Path input;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("checkpoint");
+        // An exploded distribution, with a placeholder file for each of the spreadsheets.
+        input = directory.resolve("input");
+        Files.createDirectories(input);
+        for (DistributionEntry entry : DistributionEntry.values()) {
+            Files.write(input.resolve(SpiaDistribution.getFileName(entry)), new byte[]{1, 2, 3});
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    public void testResume() throws Exception {
+        try (Checkpoint checkpoint = open(options("2019-01-01"), false)) {
+            TerminologyLookupCache lookupCache = new TerminologyLookupCache();
+            checkpoint.attach(lookupCache);
+            lookup(lookupCache, "1-8");
+            lookup(lookupCache, "1-8");
+            ValueSet valueSet = new ValueSet();
+            valueSet.setId("test");
+            checkpoint.getResourceCache().put(new EncodedResource(3, valueSet,
+                    fhirContext.newJsonParser().encodeResourceToString(valueSet)));
+        }
+        assertEquals(1, requests.get());
+        // Simulate a lookup that was only partially written when the process was killed.
+        Files.write(directory.resolve("work").resolve("lookups.ndjson"),
+                "http://loinc.org|2-6\t{\"resourceType\":".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (Checkpoint checkpoint = open(options("2019-01-01"), true)) {
+            TerminologyLookupCache lookupCache = new TerminologyLookupCache();
+            checkpoint.attach(lookupCache);
+            assertEquals("1-8", lookup(lookupCache, "1-8"));
+            lookup(lookupCache, "2-6");
+            assertEquals("test",
+                    checkpoint.getResourceCache().get(3).getResource().getIdElement().getIdPart());
+        }
+        assertEquals(2, requests.get());
+
+        try (Checkpoint checkpoint = open(options("2019-01-01"), true)) {
+            TerminologyLookupCache lookupCache = new TerminologyLookupCache();
+            checkpoint.attach(lookupCache);
+            lookup(lookupCache, "1-8");
+            lookup(lookupCache, "2-6");
+            assertEquals(2, lookupCache.size());
+        }
+        assertEquals(2, requests.get());
+    }
+
+    public void testOptionsMismatch() throws Exception {
+        try (Checkpoint checkpoint = open(options("2019-01-01"), false)) {
+            TerminologyLookupCache lookupCache = new TerminologyLookupCache();
+            checkpoint.attach(lookupCache);
+            lookup(lookupCache, "1-8");
+        }
+        try (Checkpoint checkpoint = open(options("2019-02-01"), true)) {
+            TerminologyLookupCache lookupCache = new TerminologyLookupCache();
+            checkpoint.attach(lookupCache);
+            assertEquals(0, lookupCache.size());
+            lookup(lookupCache, "1-8");
+        }
+        assertEquals(2, requests.get());
+    }
+
+    public void testInputChanged() throws Exception {
+        try (Checkpoint checkpoint = open(options("2019-01-01"), false)) {
+            TerminologyLookupCache lookupCache = new TerminologyLookupCache();
+            checkpoint.attach(lookupCache);
+            lookup(lookupCache, "1-8");
+        }
+        Files.write(input.resolve(SpiaDistribution.getFileName(DistributionEntry.CHEMICAL)),
+                new byte[]{1, 2, 3, 4});
+        try (Checkpoint checkpoint = open(options("2019-01-01"), true)) {
+            TerminologyLookupCache lookupCache = new TerminologyLookupCache();
+            checkpoint.attach(lookupCache);
+            assertEquals(0, lookupCache.size());
+        }
+    }
+
+    private Checkpoint open(Properties options, boolean resume) throws Exception {
+        try (SpiaDistribution distribution = SpiaDistribution.open(input.toFile(), null, null)) {
+            return Checkpoint.open(fhirContext, directory.resolve("work"), distribution, options,
+                    resume);
+        }
+    }
+
+    private static Properties options(String publicationDate) {
+        Properties options = new Properties();
+        options.setProperty("publicationDate", publicationDate);
+        return options;
+    }
+
+    /**
+     * Looks up a code using a client that counts its requests, returning the display from the
+     * result.
+     */
+    private String lookup(TerminologyLookupCache lookupCache, String code) {
+        TerminologyClient client = (TerminologyClient) Proxy.newProxyInstance(
+                TerminologyClient.class.getClassLoader(), new Class<?>[]{TerminologyClient.class},
+                (proxy, method, args) -> {
+                    requests.incrementAndGet();
+                    Parameters result = new Parameters();
+                    result.addParameter().setName("display")
+                            .setValue(new StringType(((CodeType) args[1]).getValue()));
+                    return result;
+                });
+        Parameters result = lookupCache.lookup(client, system, new CodeType(code), null);
+        return result.getParameterFirstRep().getValue().primitiveValue();
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.server;
+
+import au.csiro.spiatofhir.WarmContexts;
+import au.csiro.spiatofhir.pipeline.PipelineSettings;
+import au.csiro.spiatofhir.spia.TestDistributions;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import junit.framework.TestCase;
+import org.hl7.fhir.dstu3.model.Bundle;
+
+/**
+ * Exercises the transform server over HTTP, using distributions which do not require any
+ * terminology lookups.
+ *
+ * @author John Grimes
+ */
+public class TransformServerTest extends TestCase {
+
+    private static final int MAX_REQUEST_BYTES = 1024 * 1024;
+    private TransformServer server;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new TransformServer("localhost", 0, "http://localhost:1/fhir", 2, MAX_REQUEST_BYTES,
+                PipelineSettings.defaults());
+        server.start();
+    }
+
+    public void tearDown() throws Exception {
+        server.close();
+        super.tearDown();
+    }
+
+    public void testTransform() throws Exception {
+        Response response = post("/transform?publicationDate=2019-01-01",
+                TestDistributions.zipWithPreferredUnits("mmol/L", "g/L"));
+        assertEquals(200, response.status);
+        Bundle bundle = WarmContexts.getFhirContext().newJsonParser().parseResource(Bundle.class, response.body);
+        assertFalse(bundle.getEntry().isEmpty());
+    }
+
+    public void testInvalidPublicationDate() throws Exception {
+        Response response = post("/transform?publicationDate=01/01/2019",
+                TestDistributions.zipWithPreferredUnits());
+        assertEquals(400, response.status);
+        assertTrue(response.body.contains("publicationDate"));
+    }
+
+    public void testInvalidDistribution() throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(zip)) {
+            zipOutputStream.putNextEntry(new ZipEntry("unexpected.txt"));
+            zipOutputStream.write("unexpected".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+        }
+        Response response = post("/transform?publicationDate=2019-01-01", zip.toByteArray());
+        assertEquals(422, response.status);
+        assertTrue(response.body.contains("OperationOutcome"));
+    }
+
+    public void testRequestTooLarge() throws Exception {
+        Response response = post("/transform?publicationDate=2019-01-01", new byte[MAX_REQUEST_BYTES + 1]);
+        assertEquals(413, response.status);
+    }
+
+    public void testMetrics() throws Exception {
+        byte[] distribution = TestDistributions.zipWithPreferredUnits("kmol/dL");
+        assertEquals(200, post("/transform?publicationDate=2019-01-01", distribution).status);
+        assertEquals(200, post("/transform?publicationDate=2019-01-01", distribution).status);
+
+        Response response = get("/metrics");
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.startsWith("{\"requests\":2,\"failures\":0,"));
+        // The most recent request is listed first, and the unit is answered from the cache that was
+        // populated by the first request.
+        int second = response.body.indexOf("{\"id\":2,");
+        int first = response.body.indexOf("{\"id\":1,");
+        assertTrue(second >= 0 && first > second);
+        String secondMetrics = response.body.substring(second, first);
+        assertTrue(secondMetrics, secondMetrics.contains("\"ucumHits\":1,\"ucumMisses\":0"));
+        assertTrue(secondMetrics, secondMetrics.contains("\"lookupHits\":0,\"lookupMisses\":0"));
+    }
+
+    private Response post(String path, byte[] body) throws IOException {
+        HttpURLConnection connection = connect(path);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            outputStream.write(body);
+        } catch (IOException e) {
+            // The server may stop reading a request that is too large before it has all been sent.
+        }
+        return read(connection);
+    }
+
+    private Response get(String path) throws IOException {
+        return read(connect(path));
+    }
+
+    private HttpURLConnection connect(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+    }
+
+    private static Response read(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (inputStream != null) {
+            try (InputStream stream = inputStream) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+            }
+        }
+        return new Response(status, new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static class Response {
+
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+    }
+
+}
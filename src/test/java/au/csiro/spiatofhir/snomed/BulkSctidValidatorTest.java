@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.snomed;
+
+import au.csiro.spiatofhir.utils.CodeSyntax;
+import java.util.BitSet;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * @author John Grimes
+ */
+public class BulkSctidValidatorTest extends TestCase {
+
+    private static final long[] edgeCases =
+            {Long.MIN_VALUE, -21433011000036107L, 0, 100000, 100001, 21433011000036107L,
+                    21433011000036106L, 1000000000000000000L, 1000000000000000001L, Long.MAX_VALUE};
+
+    public void testMatchesStringValidation() {
+        Random random = new Random(42);
+        long[] sctids = new long[200000];
+        for (int i = 0; i < sctids.length; i++) {
+            sctids[i] = i < edgeCases.length
+                    ? edgeCases[i]
+                    : Math.abs(random.nextLong() >>> random.nextInt(64));
+        }
+        // Make sure that some of the random identifiers are valid, by fixing up their check digits.
+        for (int i = edgeCases.length; i < sctids.length; i += 2) {
+            long withoutCheckDigit = sctids[i] / 10 / 1000 * 1000 + (i % 3) * 10;
+            for (int checkDigit = 0; checkDigit < 10; checkDigit++) {
+                if (CodeSyntax.isValidSctid(Long.toString(withoutCheckDigit + checkDigit))) {
+                    sctids[i] = withoutCheckDigit + checkDigit;
+                }
+            }
+        }
+        BitSet valid = BulkSctidValidator.validate(sctids);
+        int validCount = 0;
+        for (int i = 0; i < sctids.length; i++) {
+            boolean expected = sctids[i] >= 0 && CodeSyntax.isValidSctid(Long.toString(sctids[i]));
+            assertEquals("Unexpected result for: " + sctids[i], expected, valid.get(i));
+            validCount += expected ? 1 : 0;
+        }
+        assertTrue(validCount > 10000);
+    }
+
+}
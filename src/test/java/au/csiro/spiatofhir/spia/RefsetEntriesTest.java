@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.spia;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.TreeSet;
+import junit.framework.TestCase;
+
+/**
+ * @author John Grimes
+ */
+public class RefsetEntriesTest extends TestCase {
+
+    public void testColumns() {
+        StringTable strings = new StringTable();
+        RefsetEntries.Builder builder = new RefsetEntries.Builder(strings);
+        for (int i = 0; i < 100; i++) {
+            builder.add("code " + i, "term " + i,
+                    i % 3 == 0 ? new HashSet<>(Arrays.asList("b " + i, "a " + i)) : null,
+                    i % 2 == 0 ? new TreeSet<>(Arrays.asList("mmol/L", "g/L")) : new TreeSet<>(),
+                    i % 4 == 0 ? CombiningResultsFlag.values()[i % 3] : null);
+        }
+        RefsetEntries entries = builder.build();
+
+        assertEquals(100, entries.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("code " + i, entries.getCode(i));
+            assertEquals("term " + i, entries.getRcpaPreferredTerm(i));
+            if (i % 3 == 0) {
+                assertEquals(2, entries.getRcpaSynonymCount(i));
+                assertEquals("a " + i, entries.getRcpaSynonym(i, 0));
+                assertEquals("b " + i, entries.getRcpaSynonym(i, 1));
+            } else {
+                assertEquals(0, entries.getRcpaSynonymCount(i));
+            }
+            if (i % 2 == 0) {
+                assertEquals(2, entries.getUnitCodeCount(i));
+                assertEquals("g/L", entries.getUnitCode(i, 0));
+                assertEquals("mmol/L", entries.getUnitCode(i, 1));
+            } else {
+                assertEquals(0, entries.getUnitCodeCount(i));
+            }
+            assertEquals(i % 4 == 0 ? CombiningResultsFlag.values()[i % 3] : null,
+                    entries.getCombiningResultsFlag(i));
+        }
+
+        // The unit codes of each entry should be the same instances.
+        assertSame(entries.getUnitCode(0, 1), entries.getUnitCode(98, 1));
+        assertEquals(102, strings.size());
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.spia;
+
+import au.csiro.spiatofhir.spia.SpiaDistribution.DistributionEntry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Builds minimal SPIA distributions for use within tests, containing each of the expected
+ * spreadsheets with the correct sheet names and headers.
+ *
+ * @author John Grimes
+ */
+public class TestDistributions {
+
+    private static final Map<DistributionEntry, String> sheetNames = new EnumMap<>(DistributionEntry.class);
+    private static final Map<DistributionEntry, String[]> headers = new EnumMap<>(DistributionEntry.class);
+
+    static {
+        sheetNames.put(DistributionEntry.REQUESTING, "SPIA Requesting terms v3.1");
+        headers.put(DistributionEntry.REQUESTING, RequestingRefset.expectedHeaders);
+        sheetNames.put(DistributionEntry.CHEMICAL, "Chemical Pathology Terms v3.1");
+        headers.put(DistributionEntry.CHEMICAL, ChemicalPathologyRefset.expectedHeaders);
+        sheetNames.put(DistributionEntry.HAEMATOLOGY, "Haem Term Ref Set v3.1");
+        headers.put(DistributionEntry.HAEMATOLOGY, HaematologyRefset.expectedHeaders);
+        sheetNames.put(DistributionEntry.IMMUNOPATHOLOGY, "Immunopathology Terms v3.1");
+        headers.put(DistributionEntry.IMMUNOPATHOLOGY, ImmunopathologyRefset.expectedHeaders);
+        sheetNames.put(DistributionEntry.MICROBIOLOGY_SEROLOGY_MOLECULAR, "Term Micro Sero Molec v3.1");
+        headers.put(DistributionEntry.MICROBIOLOGY_SEROLOGY_MOLECULAR,
+                MicrobiologySerologyMolecularRefset.expectedHeaders);
+        sheetNames.put(DistributionEntry.MICROBIOLOGY_ORGANISMS, "Organisms v3.1");
+        headers.put(DistributionEntry.MICROBIOLOGY_ORGANISMS, MicrobiologySubsetOfOrganismsRefset.expectedHeaders);
+        sheetNames.put(DistributionEntry.PREFERRED_UNITS, "Preferred units v1.1");
+        headers.put(DistributionEntry.PREFERRED_UNITS, PreferredUnitsRefset.expectedHeaders);
+    }
+
+    /**
+     * Returns a distribution ZIP archive, within which the reference sets contain no rows other
+     * than their headers, and the preferred units table contains a single row for each of the
+     * supplied UCUM units.
+     */
+    public static byte[] zipWithPreferredUnits(String... units) throws IOException {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(zip)) {
+            for (DistributionEntry entry : DistributionEntry.values()) {
+                try (Workbook workbook = new XSSFWorkbook()) {
+                    Sheet sheet = workbook.createSheet(sheetNames.get(entry));
+                    Row headerRow = sheet.createRow(0);
+                    String[] entryHeaders = headers.get(entry);
+                    for (int i = 0; i < entryHeaders.length; i++) {
+                        headerRow.createCell(i).setCellValue(entryHeaders[i]);
+                    }
+                    if (entry == DistributionEntry.PREFERRED_UNITS) {
+                        for (int i = 0; i < units.length; i++) {
+                            Row row = sheet.createRow(i + 1);
+                            row.createCell(0).setCellValue("Unit " + (i + 1));
+                            row.createCell(1).setCellValue(units[i]);
+                            row.createCell(2).setCellValue(units[i]);
+                        }
+                    }
+                    zipOutputStream.putNextEntry(new ZipEntry(SpiaDistribution.getFileName(entry)));
+                    workbook.write(zipOutputStream);
+                    zipOutputStream.closeEntry();
+                }
+            }
+        }
+        return zip.toByteArray();
+    }
+
+}
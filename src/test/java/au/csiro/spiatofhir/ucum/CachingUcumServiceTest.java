@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.ucum;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+import org.fhir.ucum.UcumEssenceService;
+import org.fhir.ucum.UcumService;
+
+/**
+ * Checks that the caching UCUM service returns the same results as the service it wraps, when
+ * called concurrently.
+ *
+ * @author John Grimes
+ */
+public class CachingUcumServiceTest extends TestCase {
+
+    private static final List<String> units = Arrays.asList("mmol/L", "g/L", "U/L", "%",
+            "10*9/L", "mL/min/{1.73_m2}", "mmol/", "xyz", "[degF]", "umol/L");
+
+    public void testConcurrentValidation() throws Exception {
+        UcumService expected = new UcumEssenceService(essence());
+        CachingUcumService cache = new CachingUcumService(new UcumEssenceService(essence()));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    List<String> results = new ArrayList<>();
+                    for (int j = 0; j < 100; j++) {
+                        for (String unit : units) {
+                            results.add(cache.validate(unit));
+                        }
+                    }
+                    return results;
+                }));
+            }
+            for (Future<List<String>> future : futures) {
+                List<String> results = future.get();
+                for (int i = 0; i < results.size(); i++) {
+                    String unit = units.get(i % units.size());
+                    assertEquals("Unexpected result for: " + unit, expected.validate(unit),
+                            results.get(i));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(8 * 100 * units.size(), cache.getHitCount() + cache.getMissCount());
+        // Each unit is validated at least once, and most calls are answered from the cache.
+        assertTrue(cache.getMissCount() >= units.size());
+        assertTrue(cache.getHitRate() > 0.9);
+    }
+
+    public void testCanonicalUnits() throws Exception {
+        CachingUcumService cache = new CachingUcumService(new UcumEssenceService(essence()));
+        String first = cache.getCanonicalUnits("mmol/L");
+        assertEquals(first, cache.getCanonicalUnits("mmol/L"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    private static InputStream essence() {
+        return CachingUcumServiceTest.class.getClassLoader()
+                .getResourceAsStream("ucum-essence.xml");
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.ucum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.fhir.ucum.BaseUnit;
+import org.fhir.ucum.Concept;
+import org.fhir.ucum.Decimal;
+import org.fhir.ucum.DefinedUnit;
+import org.fhir.ucum.DefinitionParser;
+import org.fhir.ucum.Pair;
+import org.fhir.ucum.Prefix;
+import org.fhir.ucum.UcumEssenceService;
+import org.fhir.ucum.UcumException;
+import org.fhir.ucum.UcumModel;
+import org.fhir.ucum.UcumService;
+
+/**
+ * Checks that the model and service loaded from a snapshot are the same as those parsed from the
+ * UCUM essence file.
+ *
+ * @author John Grimes
+ */
+public class UcumSnapshotTest extends TestCase {
+
+    private static final List<String> expressions = Arrays.asList("mmol/L", "10*9/L",
+            "mL/min/{1.73_m2}", "kg.m-2", "[in_i]", "Cel", "[degF]", "%{HbA1c}", "mmol/mol", "g/dL",
+            "No unit", "mmol/", "xyz", "10*", "[pH]");
+
+    private UcumModel parsed;
+    private UcumModel loaded;
+
+    @Override
+    protected void setUp() throws Exception {
+        parsed = new DefinitionParser().parse(essence());
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        UcumSnapshot.write(essence(), snapshot);
+        loaded = UcumSnapshot.read(new ByteArrayInputStream(snapshot.toByteArray()));
+    }
+
+    public void testModelIsEquivalent() {
+        assertEquals(parsed.getVersion(), loaded.getVersion());
+        assertEquals(parsed.getRevision(), loaded.getRevision());
+        assertEquals(parsed.getRevisionDate(), loaded.getRevisionDate());
+        assertEquals(parsed.getPrefixes().size(), loaded.getPrefixes().size());
+        for (int i = 0; i < parsed.getPrefixes().size(); i++) {
+            Prefix expected = parsed.getPrefixes().get(i);
+            Prefix actual = loaded.getPrefixes().get(i);
+            assertConceptEquals(expected, actual);
+            assertDecimalEquals(expected.getValue(), actual.getValue());
+        }
+        assertEquals(parsed.getBaseUnits().size(), loaded.getBaseUnits().size());
+        for (int i = 0; i < parsed.getBaseUnits().size(); i++) {
+            BaseUnit expected = parsed.getBaseUnits().get(i);
+            BaseUnit actual = loaded.getBaseUnits().get(i);
+            assertConceptEquals(expected, actual);
+            assertEquals(expected.getProperty(), actual.getProperty());
+            assertEquals(expected.getDim(), actual.getDim());
+        }
+        assertEquals(parsed.getDefinedUnits().size(), loaded.getDefinedUnits().size());
+        for (int i = 0; i < parsed.getDefinedUnits().size(); i++) {
+            DefinedUnit expected = parsed.getDefinedUnits().get(i);
+            DefinedUnit actual = loaded.getDefinedUnits().get(i);
+            assertConceptEquals(expected, actual);
+            assertEquals(expected.getProperty(), actual.getProperty());
+            assertEquals(expected.isMetric(), actual.isMetric());
+            assertEquals(expected.isSpecial(), actual.isSpecial());
+            assertEquals(expected.getClass_(), actual.getClass_());
+            assertEquals(expected.getValue().getUnit(), actual.getValue().getUnit());
+            assertEquals(expected.getValue().getUnitUC(), actual.getValue().getUnitUC());
+            assertEquals(expected.getValue().getText(), actual.getValue().getText());
+            assertDecimalEquals(expected.getValue().getValue(), actual.getValue().getValue());
+        }
+    }
+
+    public void testServiceIsEquivalent() throws Exception {
+        UcumService expected = new UcumEssenceService(essence());
+        UcumService actual = new UcumModelService(loaded);
+        List<String> codes = new ArrayList<>(expressions);
+        for (DefinedUnit definedUnit : parsed.getDefinedUnits()) {
+            codes.add(definedUnit.getCode());
+        }
+        for (String code : codes) {
+            assertEquals("Unexpected result for: " + code, expected.validate(code),
+                    actual.validate(code));
+            if (expected.validate(code) == null) {
+                assertEquals("Unexpected result for: " + code, canonicalUnits(expected, code),
+                        canonicalUnits(actual, code));
+            }
+        }
+        assertEquals(expected.ucumIdentification().getVersion(),
+                actual.ucumIdentification().getVersion());
+        assertEquals(expected.ucumIdentification().getReleaseDate(),
+                actual.ucumIdentification().getReleaseDate());
+        assertEquals(expected.getProperties(), actual.getProperties());
+        assertEquals(expected.validateUCUM(), actual.validateUCUM());
+    }
+
+    public void testServiceAnalysisIsEquivalent() throws Exception {
+        UcumService expected = new UcumEssenceService(essence());
+        UcumService actual = new UcumModelService(loaded);
+        for (String code : expressions) {
+            assertEquals("Unexpected result for: " + code, analyse(expected, code),
+                    analyse(actual, code));
+            assertEquals("Unexpected result for: " + code,
+                    expected.validateInProperty(code, "concentration"),
+                    actual.validateInProperty(code, "concentration"));
+            assertEquals("Unexpected result for: " + code,
+                    expected.validateCanonicalUnits(code, "mol/m3"),
+                    actual.validateCanonicalUnits(code, "mol/m3"));
+        }
+        assertEquals(names(expected.getDefinedForms("g")), names(actual.getDefinedForms("g")));
+        Decimal value = new Decimal("5.5");
+        assertEquals(expected.convert(value, "mmol/L", "umol/mL").asDecimal(),
+                actual.convert(value, "mmol/L", "umol/mL").asDecimal());
+        assertEquals(expected.getCanonicalForm(new Pair(value, "g/dL")).toString(),
+                actual.getCanonicalForm(new Pair(value, "g/dL")).toString());
+        assertEquals(expected.isComparable("mg/dL", "g/L"), actual.isComparable("mg/dL", "g/L"));
+    }
+
+    private static void assertConceptEquals(Concept expected, Concept actual) {
+        assertEquals(expected.getKind(), actual.getKind());
+        assertEquals(expected.getCode(), actual.getCode());
+        assertEquals(expected.getCodeUC(), actual.getCodeUC());
+        assertEquals(expected.getPrintSymbol(), actual.getPrintSymbol());
+        assertEquals(expected.getNames(), actual.getNames());
+    }
+
+    private static void assertDecimalEquals(Decimal expected, Decimal actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        // The scientific form reflects the precision of the value.
+        assertEquals(expected.asDecimal(), actual.asDecimal());
+        assertEquals(expected.asScientific(), actual.asScientific());
+    }
+
+    /**
+     * Returns the canonical form of the unit, or the error if it cannot be converted (such as for
+     * some special units).
+     */
+    private static String canonicalUnits(UcumService service, String code) {
+        try {
+            return service.getCanonicalUnits(code);
+        } catch (UcumException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static String analyse(UcumService service, String code) {
+        try {
+            return service.analyse(code);
+        } catch (UcumException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static List<String> names(List<DefinedUnit> definedUnits) {
+        List<String> names = new ArrayList<>();
+        for (DefinedUnit definedUnit : definedUnits) {
+            names.add(definedUnit.getCode());
+        }
+        return names;
+    }
+
+    private static InputStream essence() {
+        return UcumSnapshotTest.class.getClassLoader().getResourceAsStream("ucum-essence.xml");
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Compares the single-scan normalisation of cell values against the trim and split based
+ * implementation that it replaced, over edge cases and a large number of random inputs.
+ *
+ * @author John Grimes
+ */
+public class CellNormaliserTest extends TestCase {
+
+    private static final String[] edgeCases =
+            {"", " ", ";", ";;", " ; ", "a", " a ", "a;b", "a; b", "a;;b", ";a", "a;", "a;;",
+                    "a; ;", "\u00A0a\u00A0", "a\u00A0b", "a;\u00A0b", "\ta;b\n", "a ; b ; c"};
+
+    public void testEdgeCases() {
+        CellNormaliser normaliser = new CellNormaliser();
+        for (String value : edgeCases) {
+            assertMatchesReference(normaliser, value);
+        }
+    }
+
+    public void testRandomValues() {
+        Random random = new Random(42);
+        char[] chars = "ab ;;\u00A0\t|".toCharArray();
+        CellNormaliser normaliser = new CellNormaliser();
+        for (int i = 0; i < 200000; i++) {
+            char[] value = new char[random.nextInt(12)];
+            for (int j = 0; j < value.length; j++) {
+                value[j] = chars[random.nextInt(chars.length)];
+            }
+            assertMatchesReference(normaliser, new String(value));
+        }
+    }
+
+    public void testUnchangedValueIsReturned() {
+        String value = "mmol/L";
+        assertSame(value, new CellNormaliser().scan(value).getValue());
+    }
+
+    private static void assertMatchesReference(CellNormaliser normaliser, String value) {
+        String trimmed = Strings.trim(value);
+        normaliser.scan(value);
+        assertEquals("Unexpected value for: " + value, trimmed, normaliser.getValue());
+        assertEquals("Unexpected whitespace for: " + value, !value.equals(trimmed),
+                normaliser.hasExtraneousWhitespace());
+
+        normaliser.scan(value, ';');
+        assertEquals("Unexpected whitespace for: " + value, !value.equals(trimmed),
+                normaliser.hasExtraneousWhitespace());
+        List<String> expectedParts = new ArrayList<>();
+        List<String> expectedUntrimmed = new ArrayList<>();
+        for (String part : trimmed.split(";")) {
+            if (!part.equals(Strings.trim(part))) {
+                expectedUntrimmed.add(part);
+            }
+            expectedParts.add(Strings.trim(part));
+        }
+        List<String> parts = new ArrayList<>();
+        List<String> untrimmed = new ArrayList<>();
+        for (int i = 0; i < normaliser.getPartCount(); i++) {
+            if (normaliser.partHasExtraneousWhitespace(i)) {
+                untrimmed.add(normaliser.getUntrimmedPart(i));
+            }
+            parts.add(normaliser.getPart(i));
+        }
+        assertEquals("Unexpected parts for: " + value, expectedParts, parts);
+        assertEquals("Unexpected untrimmed parts for: " + value, expectedUntrimmed, untrimmed);
+
+        normaliser.scan(value, '|');
+        String[] terms = trimmed.split("\\|");
+        if (terms.length > 0) {
+            assertEquals("Unexpected code for: " + value, Strings.trim(terms[0]),
+                    normaliser.getPart(0));
+        } else {
+            assertEquals("Unexpected parts for: " + value, 0, normaliser.getPartCount());
+        }
+    }
+
+}
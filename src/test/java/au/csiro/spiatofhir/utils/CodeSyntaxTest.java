@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 Australian e-Health Research Centre, CSIRO
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.spiatofhir.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+
+/**
+ * Compares the single-pass syntax checks against the regular expression based implementations
+ * that they replaced, over edge cases and a large number of random inputs.
+ *
+ * @author John Grimes
+ */
+public class CodeSyntaxTest extends TestCase {
+
+    private static final String[] sctidEdgeCases =
+            {"", "0", "100000", "100001", "0000000000021433011000036107", "1000000000000000000",
+                    "1000000000000000001", "2000000000000000000", "9999999999999999999",
+                    "99999999999999999999", "21433011000036107 ", "-21433011000036107", "+123456789"};
+    private static final String[] loincEdgeCases =
+            {"", "-", "-1", "1-", "1-1", "a-1", "_-1", "ll1001-8", "LL1001-8", "26924--1", "26924-12",
+                    "26924 -1", "26924-a", "é26924-1"};
+
+    public void testSctidEdgeCases() {
+        for (String code : sctidEdgeCases) {
+            assertEquals("Unexpected result for: " + code, referenceSctid(code),
+                    CodeSyntax.isValidSctid(code));
+        }
+    }
+
+    public void testLoincEdgeCases() {
+        for (String code : loincEdgeCases) {
+            assertEquals("Unexpected result for: " + code, referenceLoinc(code),
+                    CodeSyntax.isValidLoincCode(code));
+        }
+    }
+
+    public void testRandomCodes() {
+        Random random = new Random(42);
+        char[] sctidChars = "0000000000123456789a ".toCharArray();
+        char[] loincChars = "0123456789ABCXYZabz-_".toCharArray();
+        int validSctids = 0;
+        int validLoincCodes = 0;
+        for (int i = 0; i < 200000; i++) {
+            String sctid = randomString(random, sctidChars, 1 + random.nextInt(21));
+            boolean expected = referenceSctid(sctid);
+            assertEquals("Unexpected result for: " + sctid, expected, CodeSyntax.isValidSctid(sctid));
+            validSctids += expected ? 1 : 0;
+            String loinc = randomString(random, loincChars, 1 + random.nextInt(8)) + "-"
+                    + random.nextInt(10);
+            expected = referenceLoinc(loinc);
+            assertEquals("Unexpected result for: " + loinc, expected, CodeSyntax.isValidLoincCode(loinc));
+            validLoincCodes += expected ? 1 : 0;
+        }
+        // Make sure that the random inputs exercise both outcomes.
+        assertTrue(validSctids > 100);
+        assertTrue(validLoincCodes > 100);
+    }
+
+    private static String randomString(Random random, char[] chars, int length) {
+        char[] result = new char[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = chars[random.nextInt(chars.length)];
+        }
+        return new String(result);
+    }
+
+    /**
+     * The SNOMED CT identifier validation previously used by SnomedCodeValidator, with exact
+     * integer comparisons of the range.
+     */
+    private static boolean referenceSctid(String code) {
+        if (!Pattern.compile("\\d+").matcher(code).matches()) {
+            return false;
+        }
+        long number;
+        try {
+            number = Long.parseLong(code, 10);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (number <= 100000L || number > 1000000000000000000L) {
+            return false;
+        }
+        String partitionId = code.substring(code.length() - 3, code.length() - 1);
+        if (!Arrays.asList("00", "01", "02", "10", "11", "12").contains(partitionId)) {
+            return false;
+        }
+        return Verhoeff.validateVerhoeff(code);
+    }
+
+    /**
+     * The LOINC code validation previously used by LoincCodeValidator.
+     */
+    private static boolean referenceLoinc(String code) {
+        Matcher matcher = Pattern.compile("([A-Za-z\\d]+)-(\\d)").matcher(code);
+        if (!matcher.matches()) {
+            return false;
+        }
+        String id = matcher.group(1).toUpperCase();
+        int sum = 0;
+        for (int i = 0; i < id.length(); i++) {
+            int digit = (int) id.charAt(id.length() - i - 1) - 48;
+            sum += i % 2 == 0 ? (2 * digit) - (digit / 5) * 9 : digit;
+        }
+        sum = Math.abs(sum) + 10;
+        return matcher.group(2).equals(Integer.toString((10 - (sum % 10)) % 10));
+    }
+
+}